@@ -0,0 +1,72 @@
+package sashas_erikh.subwaysim.main;
+
+import rmacdonald_kingsu.util.ConfigFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+/**
+ * Benchmarks SubwaySim.step() throughput on the shipped configs, with each engine.
+ * A fresh sim is created for each iteration, so every iteration starts from an empty system.
+ * @author Erik H
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SubwaySimBenchmark {
+	@Param({"small_60wait", "medium_60wait", "large_60wait"})
+	public String config;
+
+	@Param({"step", "event", "parallel", "actor"})
+	public String engine;
+
+	private SubwaySim sim;
+
+	@Setup(Level.Iteration)
+	public void setup() throws FileNotFoundException {
+		sim = createSim(config, engine);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		sim.closeOutputWriters();
+	}
+
+	@Benchmark
+	public double step() {
+		sim.step();
+		return sim.getTime();
+	}
+
+	/**
+	 * Create a sim with logging off that writes its output to a temporary directory.
+	 * @param config the config's base name
+	 * @param engine the engine to use
+	 * @return the sim
+	 * @throws FileNotFoundException if the config or output files can't be opened
+	 */
+	static SubwaySim createSim(String config, String engine) throws FileNotFoundException {
+		Map<String, String> overrides = new HashMap<String, String>();
+		overrides.put("engine", engine);
+		overrides.put("logLevel", "OFF");
+		ConfigFile configFile = SubwaySim.loadConfig(SubwaySimRunner.INPUTDIR + config + SubwaySim.CONFIGSUFFIX, overrides);
+		SubwaySim.applyLogLevel(configFile);
+		String outDir = System.getProperty("java.io.tmpdir") + File.separator + "subwaysim-jmh";
+		return new SubwaySim(config, configFile, outDir);
+	}
+}
@@ -0,0 +1,45 @@
+package sashas_erikh.subwaysim.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Benchmarks a whole run, end to end: the time it takes SubwaySimRunner's
+ * default stop conditions to be met (6000 Passengers served, or a day passing).
+ * @author Erik H
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimeToPassengersBenchmark {
+	@Param({"small_60wait", "medium_60wait", "large_60wait"})
+	public String config;
+
+	@Param({"step", "event"})
+	public String engine;
+
+	private SubwaySim sim;
+
+	@Setup(Level.Invocation)
+	public void setup() throws FileNotFoundException {
+		sim = SubwaySimBenchmark.createSim(config, engine);
+	}
+
+	@Benchmark
+	public int run() {
+		SubwaySimRunner.run(sim);
+		sim.closeOutputWriters();
+		return sim.getNumPassengers();
+	}
+}
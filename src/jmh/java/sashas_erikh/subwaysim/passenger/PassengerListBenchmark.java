@@ -0,0 +1,64 @@
+package sashas_erikh.subwaysim.passenger;
+
+import sashas_erikh.subwaysim.station.Station;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks PassengerList.removeForStation() on a Train with 20 Stations on
+ * its line, at various occupancies. The removed Passengers are put back on
+ * after each removal so that the occupancy stays the same.
+ * @author Erik H
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PassengerListBenchmark {
+	private static final int NUMSTATIONS = 20;
+	private static final int CAPACITY = 160;
+
+	@Param({"0", "40", "80", "160"})
+	public int occupancy;
+
+	private Station[] stations;
+	private PassengerList passengers;
+	private PassengerBuffer removed;
+	private int nextStation;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		stations = new Station[NUMSTATIONS];
+		for (int i = 0; i < NUMSTATIONS; i++) {
+			stations[i] = new Station("S" + i, i, 60.0, 1);
+		}
+		Random rng = new Random(4321);
+		passengers = new PassengerList(CAPACITY);
+		removed = new PassengerBuffer(CAPACITY);
+		for (int i = 0; i < occupancy; i++) {
+			passengers.add(new Passenger(0.0, stations[0], stations[rng.nextInt(NUMSTATIONS)]));
+		}
+		nextStation = 0;
+	}
+
+	@Benchmark
+	public int removeForStation() {
+		Station station = stations[nextStation];
+		nextStation = (nextStation + 1) % NUMSTATIONS;
+		int numRemoved = passengers.removeForStation(station, removed);
+		for (int i = 0; i < numRemoved; i++) {
+			passengers.add(removed.getSpawnTime(i), removed.getBoardTime(i), removed.getOrigin(i), removed.getDestination(i));
+		}
+		return numRemoved;
+	}
+}
@@ -0,0 +1,40 @@
+package sashas_erikh.subwaysim.random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks drawing one arrival time with each of the Stations' arrival generators.
+ * @author Erik H
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArrivalGeneratorBenchmark {
+	@Param({"legacy", "fast"})
+	public String generator;
+
+	private ArrivalGenerator arrivals;
+	private double t;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		arrivals = generator.equals("fast") ? new FastArrivalGenerator(60.0, 1) : new ArrivalTimeRNG(60.0, 1);
+		t = 0.0;
+	}
+
+	@Benchmark
+	public double nextArrival() {
+		t = arrivals.nextArrival(t);
+		return t;
+	}
+}
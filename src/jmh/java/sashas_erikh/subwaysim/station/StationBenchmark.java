@@ -0,0 +1,47 @@
+package sashas_erikh.subwaysim.station;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Station.enqueuePassenger(). A Passenger is taken off the front
+ * of the queue each time, so the queue length stays constant.
+ * @author Erik H
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StationBenchmark {
+	private static final int QUEUELENGTH = 100;
+
+	private Station station;
+	private Station dest;
+	private double t;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		station = new Station("A", 0, 60.0, 1);
+		dest = new Station("B", 1, 60.0, 1);
+		t = 0.0;
+		for (int i = 0; i < QUEUELENGTH; i++) {
+			station.enqueuePassenger(t, dest);
+		}
+	}
+
+	@Benchmark
+	public double enqueuePassenger() {
+		t += 1.0;
+		station.enqueuePassenger(t, dest);
+		double spawnTime = station.getStationQueue().peekSpawnTime();
+		station.getStationQueue().remove();
+		return spawnTime;
+	}
+}
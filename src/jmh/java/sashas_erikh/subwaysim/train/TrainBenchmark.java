@@ -0,0 +1,100 @@
+package sashas_erikh.subwaysim.train;
+
+import sashas_erikh.subwaysim.output.OutputSink;
+import sashas_erikh.subwaysim.passenger.Passenger;
+import sashas_erikh.subwaysim.station.Destination;
+import sashas_erikh.subwaysim.station.Station;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one time step of Train.run() in each TrainState.
+ * The Train is put in its state by running it through the real transitions,
+ * with times long enough that it stays there for the whole iteration:
+ * <ul>
+ * <li>TRAVELLING: on its way to a Station that is very far away.
+ * <li>DISEMBARKING: letting off a Passenger who takes a very long time.
+ * <li>BOARDING: waiting a very long time, with one new Passenger to board each time step.
+ * Once the Train is full, it drops that Passenger instead, just like in the sim.
+ * </ul>
+ * @author Erik H
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrainBenchmark {
+	/**
+	 * Long enough that nothing finishes during an iteration, in seconds.
+	 */
+	private static final double FOREVER = 1e15;
+
+	@Param({"TRAVELLING", "DISEMBARKING", "BOARDING"})
+	public TrainState state;
+
+	private Destination[] track; // Indexed by Station id
+	private Station from;
+	private Station to;
+	private Train train;
+	private double t;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		from = new Station("A", 0, 60.0, 1);
+		to = new Station("B", 1, 60.0, 1);
+		double travelTime = (state == TrainState.TRAVELLING) ? FOREVER : 1.0;
+		track = new Destination[] {new Destination(to, travelTime), new Destination(from, travelTime)};
+
+		double boardTime = (state == TrainState.DISEMBARKING) ? FOREVER : 1.0;
+		double maxWaitTime = (state == TrainState.BOARDING) ? FOREVER : 0.0;
+		train = new Train("Benchy", 160, from, track[from.getId()], boardTime, maxWaitTime, new NullOutputSink());
+		from.tryReserve(0, train.getId());
+		t = 0.0;
+
+		if (state == TrainState.DISEMBARKING) {
+			// Give the Train someone to let off at the next Station
+			train.passengers.add(new Passenger(0.0, from, to));
+		}
+		// Leave the first Station, and arrive at the next one if it's close
+		while (train.getState() != state) {
+			t += 1.0;
+			train.run(t, track);
+		}
+	}
+
+	@Benchmark
+	public Object run() {
+		if (state == TrainState.BOARDING) {
+			from.enqueuePassenger(t, to);
+		}
+		t += 1.0;
+		return train.run(t, track);
+	}
+
+	/**
+	 * An OutputSink that throws its records away.
+	 */
+	private static class NullOutputSink implements OutputSink {
+		public int addTrain(String name) {
+			return 0;
+		}
+
+		public void writeTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation) {
+		}
+
+		public void writeDeparture(int train, int numPassengers, int fromStation, int toStation, double t) {
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package sashas_erikh.subwaysim.actor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Something in the sim that only changes by handling the messages sent to it,
+ * one at a time, in the order they were sent.
+ * Messages wait in a mailbox, which never fills up, since actors send each
+ * other messages from the same threads that would have to empty it. An actor
+ * doesn't have a thread of its own: when it has mail, it's handed to the
+ * VirtualClock's threads, which work through its mailbox and then move on to
+ * another actor, so there can be far more actors than threads.
+ * @author Erik H
+ */
+public abstract class Actor<M> {
+	private VirtualClock clock;
+	private int index; // The index of the Station or Train this actor belongs to
+	private Queue<M> mailbox;
+	private AtomicBoolean scheduled; // Whether a thread has been asked to work through the mailbox
+	private Runnable drain = this::drain;
+
+	/**
+	 * @param clock the clock that coordinates this actor
+	 * @param index the index of the Station or Train this actor belongs to
+	 */
+	protected Actor(VirtualClock clock, int index) {
+		this.clock = clock;
+		this.index = index;
+		mailbox = new ConcurrentLinkedQueue<M>();
+		scheduled = new AtomicBoolean(false);
+	}
+
+	/**
+	 * Send this actor a message.
+	 * @param message the message
+	 */
+	public void send(M message) {
+		clock.sent();
+		mailbox.add(message);
+		schedule();
+	}
+
+	/**
+	 * Ask for a thread to work through the mailbox, unless one already has been.
+	 */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			clock.execute(drain);
+		}
+	}
+
+	/**
+	 * Handle every message in the mailbox.
+	 * Anything a message throws, Errors included, goes back to the clock as a
+	 * Reply, so the clock finds out about it once the actors have gone quiet.
+	 */
+	private void drain() {
+		try {
+			M message;
+			while ((message = mailbox.poll()) != null) {
+				try {
+					receive(message);
+				}
+				catch (Throwable e) {
+					clock.reply(new Reply(index, e));
+				}
+				finally {
+					clock.handled();
+				}
+			}
+		}
+		finally {
+			scheduled.set(false);
+		}
+		// Something may have been sent between the last poll and giving up the mailbox
+		if (!mailbox.isEmpty()) {
+			schedule();
+		}
+	}
+
+	/**
+	 * Handle a message.
+	 * @param message the message
+	 */
+	protected abstract void receive(M message);
+
+	/**
+	 * @return the clock that coordinates this actor
+	 */
+	protected VirtualClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return the index of the Station or Train this actor belongs to
+	 */
+	public int getIndex() {
+		return index;
+	}
+}
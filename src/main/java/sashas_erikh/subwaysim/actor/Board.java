@@ -0,0 +1,34 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * What a TrainActor sends a Station's actor after its Train has run, to
+ * take the Passengers it boarded (or turned away) off the front of a line's queue.
+ * @author Erik H
+ */
+public class Board implements StationMessage {
+	private int line;
+	private int count;
+
+	/**
+	 * @param line the line's number
+	 * @param count how many Passengers to take off the queue
+	 */
+	public Board(int line, int count) {
+		this.line = line;
+		this.count = count;
+	}
+
+	/**
+	 * @return the line's number
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return how many Passengers to take off the queue
+	 */
+	public int getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,44 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * What a TrainActor sends a Station's actor when its Train has left, to
+ * record when it left and give up its platform.
+ * @author Erik H
+ */
+public class Depart implements StationMessage {
+	private int line;
+	private int id;
+	private double t;
+
+	/**
+	 * @param line the line's number
+	 * @param id the Train's id
+	 * @param t when it left, in seconds
+	 */
+	public Depart(int line, int id, double t) {
+		this.line = line;
+		this.id = id;
+		this.t = t;
+	}
+
+	/**
+	 * @return the line's number
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return the Train's id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return when it left, in seconds
+	 */
+	public double getTime() {
+		return t;
+	}
+}
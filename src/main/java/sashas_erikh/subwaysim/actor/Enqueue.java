@@ -0,0 +1,98 @@
+package sashas_erikh.subwaysim.actor;
+
+import java.util.Arrays;
+
+/**
+ * Passengers for a Station's actor to add to its queues, in order: the ones
+ * that spawned there, from the sim, or the ones transferring there, from a
+ * TrainActor whose Train just arrived.
+ * @author Erik H
+ */
+public class Enqueue implements StationMessage {
+	private int[] lines;
+	private double[] spawnTimes;
+	private double[] boardTimes;
+	private int[] origins;
+	private int[] destinations;
+	private int size;
+
+	public Enqueue() {
+		lines = new int[4];
+		spawnTimes = new double[4];
+		boardTimes = new double[4];
+		origins = new int[4];
+		destinations = new int[4];
+		size = 0;
+	}
+
+	/**
+	 * Add a Passenger to the end of the list.
+	 * @param line the number of the line they're waiting for
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param boardTime when the Passenger first boarded a Train, or -1 if they haven't yet
+	 * @param origin the id of the Station where the Passenger spawned
+	 * @param dest the id of the Passenger's destination Station
+	 */
+	public void add(int line, double spawnTime, double boardTime, int origin, int dest) {
+		if (size == lines.length) {
+			lines = Arrays.copyOf(lines, 2 * size);
+			spawnTimes = Arrays.copyOf(spawnTimes, 2 * size);
+			boardTimes = Arrays.copyOf(boardTimes, 2 * size);
+			origins = Arrays.copyOf(origins, 2 * size);
+			destinations = Arrays.copyOf(destinations, 2 * size);
+		}
+		lines[size] = line;
+		spawnTimes[size] = spawnTime;
+		boardTimes[size] = boardTime;
+		origins[size] = origin;
+		destinations[size] = dest;
+		size++;
+	}
+
+	/**
+	 * @return how many Passengers there are
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return the number of the line the Passenger is waiting for
+	 */
+	public int getLine(int i) {
+		return lines[i];
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return when the Passenger spawned, in seconds
+	 */
+	public double getSpawnTime(int i) {
+		return spawnTimes[i];
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return when the Passenger first boarded a Train, or -1 if they haven't yet
+	 */
+	public double getBoardTime(int i) {
+		return boardTimes[i];
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return the id of the Station where the Passenger spawned
+	 */
+	public int getOrigin(int i) {
+		return origins[i];
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return the id of the Passenger's destination Station
+	 */
+	public int getDestination(int i) {
+		return destinations[i];
+	}
+}
@@ -0,0 +1,34 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * A Station's answer to a Visit: the front of the queue has been copied,
+ * and this is everything else the Train needs to know about the platform.
+ * @author Erik H
+ */
+public class Offer implements TrainMessage {
+	private int numWaiting;
+	private double lastDeparture;
+
+	/**
+	 * @param numWaiting how many Passengers are waiting for the line, copied or not
+	 * @param lastDeparture when a Train last left the line's platform, or NaN if none has yet
+	 */
+	public Offer(int numWaiting, double lastDeparture) {
+		this.numWaiting = numWaiting;
+		this.lastDeparture = lastDeparture;
+	}
+
+	/**
+	 * @return how many Passengers are waiting for the line
+	 */
+	public int getNumWaiting() {
+		return numWaiting;
+	}
+
+	/**
+	 * @return when a Train last left the line's platform, or NaN if none has yet
+	 */
+	public double getLastDeparture() {
+		return lastDeparture;
+	}
+}
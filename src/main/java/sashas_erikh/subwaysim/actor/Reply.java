@@ -0,0 +1,60 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * The message an actor sends back to the VirtualClock when it's done with a Tick.
+ * @author Erik H
+ */
+public class Reply {
+	private int index;
+	private int count;
+	private double nextTime;
+	private Throwable error;
+
+	/**
+	 * @param index the index of the Station or Train the actor belongs to
+	 * @param count how many Passengers spawned, or got off at their destination
+	 * @param nextTime when the actor next has something to do, in seconds, if it knows
+	 */
+	public Reply(int index, int count, double nextTime) {
+		this.index = index;
+		this.count = count;
+		this.nextTime = nextTime;
+	}
+
+	/**
+	 * @param index the index of the Station or Train the actor belongs to
+	 * @param error what went wrong
+	 */
+	public Reply(int index, Throwable error) {
+		this.index = index;
+		this.error = error;
+	}
+
+	/**
+	 * @return the index of the Station or Train the actor belongs to
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return how many Passengers spawned, or got off at their destination
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return when the actor next has something to do, in seconds
+	 */
+	public double getNextTime() {
+		return nextTime;
+	}
+
+	/**
+	 * @return what went wrong, or null if nothing did
+	 */
+	public Throwable getError() {
+		return error;
+	}
+}
@@ -0,0 +1,23 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * A Station's answer to a Reserve.
+ * @author Erik H
+ */
+public class Reservation implements TrainMessage {
+	private boolean granted;
+
+	/**
+	 * @param granted whether the Train has the platform now
+	 */
+	public Reservation(boolean granted) {
+		this.granted = granted;
+	}
+
+	/**
+	 * @return whether the Train has the platform now
+	 */
+	public boolean isGranted() {
+		return granted;
+	}
+}
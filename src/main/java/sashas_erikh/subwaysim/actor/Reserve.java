@@ -0,0 +1,45 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * What a TrainActor sends the actor of the Station its Train is heading for
+ * when the Train is ready to leave, to reserve the line's platform there.
+ * The Station answers with a Reservation.
+ * @author Erik H
+ */
+public class Reserve implements StationMessage {
+	private TrainActor train;
+	private int line;
+	private int id;
+
+	/**
+	 * @param train the Train's actor, where the Reservation goes
+	 * @param line the line's number
+	 * @param id the Train's id, which it reserves platforms under
+	 */
+	public Reserve(TrainActor train, int line, int id) {
+		this.train = train;
+		this.line = line;
+		this.id = id;
+	}
+
+	/**
+	 * @return the Train's actor
+	 */
+	public TrainActor getTrain() {
+		return train;
+	}
+
+	/**
+	 * @return the line's number
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return the Train's id
+	 */
+	public int getId() {
+		return id;
+	}
+}
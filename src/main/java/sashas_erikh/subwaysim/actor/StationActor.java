@@ -0,0 +1,108 @@
+package sashas_erikh.subwaysim.actor;
+
+import sashas_erikh.subwaysim.station.Station;
+
+import java.util.Arrays;
+
+/**
+ * The actor for a Station. It's the only thing that touches the Station
+ * while the sim runs: Trains board from its queues and reserve its platforms
+ * by sending it messages.
+ * On each Tick it works out which Passengers spawn, and replies with how many
+ * and when the next one will. Picking the Passengers' destinations is left to
+ * the sim, in Station order, since every Station draws them from the same RNG;
+ * the sim sends them back in an Enqueue.
+ * @author Erik H
+ */
+public class StationActor extends Actor<StationMessage> {
+	private Station station;
+	private double[] spawnTimes; // Reused every Tick
+	private int numSpawned;
+
+	/**
+	 * @param clock the clock that coordinates this actor
+	 * @param index the Station's index
+	 * @param station the Station
+	 */
+	public StationActor(VirtualClock clock, int index, Station station) {
+		super(clock, index);
+		this.station = station;
+		spawnTimes = new double[4];
+	}
+
+	protected void receive(StationMessage message) {
+		if (message instanceof Tick) {
+			spawn(((Tick)message).getTime());
+		}
+		else if (message instanceof Enqueue) {
+			Enqueue passengers = (Enqueue)message;
+			for (int i = 0; i < passengers.size(); i++) {
+				station.enqueuePassenger(passengers.getLine(i), passengers.getSpawnTime(i), passengers.getBoardTime(i),
+					passengers.getOrigin(i), passengers.getDestination(i));
+			}
+		}
+		else if (message instanceof Visit) {
+			Visit visit = (Visit)message;
+			if (station.hasWaiting(visit.getLine())) {
+				station.getStationQueue(visit.getLine()).copyFront(visit.getCopy(), visit.getMax());
+			}
+			else {
+				visit.getCopy().clear();
+			}
+			visit.getTrain().send(new Offer(station.getNumWaiting(visit.getLine()), station.getLastDeparture(visit.getLine())));
+		}
+		else if (message instanceof Board) {
+			Board board = (Board)message;
+			station.getStationQueue(board.getLine()).remove(board.getCount());
+		}
+		else if (message instanceof Reserve) {
+			Reserve reserve = (Reserve)message;
+			reserve.getTrain().send(new Reservation(station.tryReserve(reserve.getLine(), reserve.getId())));
+		}
+		else if (message instanceof Depart) {
+			Depart depart = (Depart)message;
+			station.setLastDeparture(depart.getLine(), depart.getTime());
+			station.release(depart.getLine(), depart.getId());
+		}
+		else {
+			throw new RuntimeException("Error: " + station.getName() + " can't handle a " + message.getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * Draw the spawn times before a time, and reply to the clock.
+	 * @param t the global time
+	 */
+	private void spawn(double t) {
+		numSpawned = 0;
+		for (double tnext = station.getNextTime(); tnext < t; tnext = station.drawNextTime(tnext)) {
+			if (numSpawned == spawnTimes.length) {
+				spawnTimes = Arrays.copyOf(spawnTimes, 2 * numSpawned);
+			}
+			spawnTimes[numSpawned++] = tnext;
+		}
+		getClock().reply(new Reply(getIndex(), numSpawned, station.getNextTime()));
+	}
+
+	/**
+	 * @return the Station
+	 */
+	public Station getStation() {
+		return station;
+	}
+
+	/**
+	 * @return how many Passengers spawned on the last Tick
+	 */
+	public int getNumSpawned() {
+		return numSpawned;
+	}
+
+	/**
+	 * @param i which of the Passengers that spawned on the last Tick
+	 * @return when they spawned, in seconds
+	 */
+	public double getSpawnTime(int i) {
+		return spawnTimes[i];
+	}
+}
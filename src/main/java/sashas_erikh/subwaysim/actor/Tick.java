@@ -0,0 +1,23 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * The message the VirtualClock sends an actor to have it do its work for a time step.
+ * @author Erik H
+ */
+public class Tick implements StationMessage, TrainMessage {
+	private double t;
+
+	/**
+	 * @param t the global time, in seconds
+	 */
+	public Tick(double t) {
+		this.t = t;
+	}
+
+	/**
+	 * @return the global time, in seconds
+	 */
+	public double getTime() {
+		return t;
+	}
+}
@@ -0,0 +1,200 @@
+package sashas_erikh.subwaysim.actor;
+
+import sashas_erikh.subwaysim.passenger.PassengerBuffer;
+import sashas_erikh.subwaysim.passenger.PassengerQueue;
+import sashas_erikh.subwaysim.station.Destination;
+import sashas_erikh.subwaysim.station.Station;
+import sashas_erikh.subwaysim.train.StationAccess;
+import sashas_erikh.subwaysim.train.Train;
+import sashas_erikh.subwaysim.train.TrainState;
+
+/**
+ * The actor for a Train. On each Tick it runs the Train's state machine, and
+ * replies with how many Passengers got off at their destination and when the
+ * Train next has something to do.
+ * The Train never touches a Station itself. Before a Train that's boarding
+ * (or about to start) runs, its actor sends the Station a Visit, and runs it
+ * on the copy of the front of the queue in the Offer it gets back; if the
+ * Train is ready to leave, it asks the next Station for a Reservation first.
+ * Once it has run, the actor tells the Stations what it did: who it took off
+ * the queue (Board), that it left (Depart), and who got off to transfer (Enqueue).
+ * @author Erik H
+ */
+public class TrainActor extends Actor<TrainMessage> {
+	private Train train;
+	private Destination[] track; // Indexed by Station id
+	private StationActor[] stations; // Indexed by Station id
+	private double t; // The time of the Tick being handled
+	private Messages messages;
+
+	/**
+	 * @param clock the clock that coordinates this actor
+	 * @param index the Train's index
+	 * @param train the Train
+	 * @param track the track of the Train's line, indexed by Station id
+	 * @param stations the Stations' actors, indexed by Station id
+	 */
+	public TrainActor(VirtualClock clock, int index, Train train, Destination[] track, StationActor[] stations) {
+		super(clock, index);
+		this.train = train;
+		this.track = track;
+		this.stations = stations;
+		messages = new Messages();
+		train.setStationAccess(messages);
+	}
+
+	protected void receive(TrainMessage message) {
+		if (message instanceof Tick) {
+			t = ((Tick)message).getTime();
+			messages.reset();
+			TrainState state = train.getState();
+			if (state == TrainState.TRAVELLING || (state == TrainState.DISEMBARKING && !train.isDoneDisembarking(t))) {
+				run(); // Nothing to look at yet
+			}
+			else {
+				// One more than there's room for, since a full Train still takes someone off the queue
+				int max = train.getCapacity() - train.getNumPassengers() + 1;
+				stations[train.getLastVisited().getId()].send(new Visit(this, train.getLine(), max, messages.copy));
+			}
+		}
+		else if (message instanceof Offer) {
+			messages.offer((Offer)message);
+			if (train.isReadyToLeave(t)) {
+				stations[train.getCurrentDestination().getDestStation().getId()].send(new Reserve(this, train.getLine(), train.getId()));
+			}
+			else {
+				run();
+			}
+		}
+		else if (message instanceof Reservation) {
+			messages.reserved(((Reservation)message).isGranted());
+			run();
+		}
+		else {
+			throw new RuntimeException("Error: " + train.getName() + " can't handle a " + message.getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * Run the Train, tell the Stations what it did, and reply to the clock.
+	 */
+	private void run() {
+		PassengerBuffer disembarked = train.run(t, track);
+		double nextTime = train.getNextEventTime(t);
+		messages.send();
+		getClock().reply(new Reply(getIndex(), (disembarked == null) ? 0 : disembarked.size(), nextTime));
+	}
+
+	/**
+	 * @return the Train
+	 */
+	public Train getTrain() {
+		return train;
+	}
+
+	/**
+	 * What the Train sees of the Stations while it runs: what the last Offer
+	 * and Reservation said, and what it's done, to be sent once it's run.
+	 */
+	private class Messages implements StationAccess {
+		private PassengerQueue copy = new PassengerQueue(); // The front of the queue, from the last Offer
+		private boolean offered;
+		private int numCopied;
+		private int numWaiting;
+		private double lastDeparture;
+		private boolean asked; // Whether the next Station has been asked for its platform
+		private boolean granted;
+		private Station departedFrom;
+		private double departureTime;
+		private Station transferStation;
+		private Enqueue transfers;
+
+		void reset() {
+			offered = false;
+			asked = false;
+			departedFrom = null;
+			transferStation = null;
+			transfers = null;
+		}
+
+		void offer(Offer offer) {
+			offered = true;
+			numCopied = copy.size();
+			numWaiting = offer.getNumWaiting();
+			lastDeparture = offer.getLastDeparture();
+		}
+
+		void reserved(boolean granted) {
+			asked = true;
+			this.granted = granted;
+		}
+
+		/**
+		 * Tell the Stations what the Train did.
+		 */
+		void send() {
+			int taken = offered ? numCopied - copy.size() : 0;
+			if (taken > 0) {
+				stations[train.getLastVisited().getId()].send(new Board(train.getLine(), taken));
+			}
+			if (departedFrom != null) {
+				stations[departedFrom.getId()].send(new Depart(train.getLine(), train.getId(), departureTime));
+			}
+			if (transfers != null) {
+				stations[transferStation.getId()].send(transfers);
+			}
+		}
+
+		/**
+		 * @throws RuntimeException if the Train looks at a Station it hasn't had an Offer from
+		 */
+		private void checkOffered(Station station) throws RuntimeException {
+			if (!offered || station != train.getLastVisited()) {
+				throw new RuntimeException("Error: " + train.getName() + " looked at " + station.getName() + " without visiting it");
+			}
+		}
+
+		public PassengerQueue getStationQueue(Station station, int line) {
+			checkOffered(station);
+			return copy;
+		}
+
+		public int getNumWaiting(Station station, int line) {
+			checkOffered(station);
+			return numWaiting - (numCopied - copy.size());
+		}
+
+		public double getLastDeparture(Station station, int line) {
+			checkOffered(station);
+			return lastDeparture;
+		}
+
+		/**
+		 * As far as the Train knows: only if it was just turned down. Otherwise
+		 * it'll find out by asking on its next time step.
+		 */
+		public boolean isOccupied(Station station, int line) {
+			return asked && !granted;
+		}
+
+		public boolean tryReserve(Station station, int line, int id) throws RuntimeException {
+			if (!asked) {
+				throw new RuntimeException("Error: " + train.getName() + " tried to reserve " + station.getName() + " without asking");
+			}
+			return granted;
+		}
+
+		public void depart(Station station, int line, int id, double t) {
+			departedFrom = station;
+			departureTime = t;
+		}
+
+		public void enqueuePassenger(Station station, int line, double spawnTime, double boardTime, int origin, int dest) {
+			if (transfers == null) {
+				transferStation = station;
+				transfers = new Enqueue();
+			}
+			transfers.add(line, spawnTime, boardTime, origin, dest);
+		}
+	}
+}
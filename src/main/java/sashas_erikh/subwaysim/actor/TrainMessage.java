@@ -0,0 +1,8 @@
+package sashas_erikh.subwaysim.actor;
+
+/**
+ * A message a TrainActor knows how to handle.
+ * @author Erik H
+ */
+public interface TrainMessage {
+}
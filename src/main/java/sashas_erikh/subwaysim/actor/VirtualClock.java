@@ -0,0 +1,191 @@
+package sashas_erikh.subwaysim.actor;
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the actors in step with each other. The sim runs each time step in
+ * phases: it starts a phase, sends Ticks to the actors that have work to do,
+ * and then waits for the phase to go quiet, collecting the actors' Replies.
+ * A phase is quiet once every message sent in it has been handled, including
+ * the ones the actors sent each other, so no actor gets ahead of the global time.
+ * Runs the actors' work on the sim's own thread while it waits, the same way
+ * WorkerPool has the calling thread do the first chunk, plus stepThreads - 1
+ * helper threads; so with one thread, nothing is ever handed between threads.
+ * The helpers are daemons that die off after a second of not being used, so a
+ * finished sim doesn't need to shut them down.
+ * @author Erik H
+ */
+public class VirtualClock {
+	/**
+	 * What to do with each Reply.
+	 */
+	public interface ReplyHandler {
+		void handle(Reply reply);
+	}
+
+	/**
+	 * Put in with the Replies when a phase goes quiet.
+	 */
+	private static final Reply QUIET = new Reply(-1, 0, 0.0);
+
+	private int numHelpers;
+	private ThreadPoolExecutor executor; // null if there are no helpers
+	private AtomicInteger numHelping; // How many helpers are working through the ready queue
+	private Runnable help = this::help;
+
+	/**
+	 * The actors' work waiting for a thread, first come, first served.
+	 */
+	private Queue<Runnable> ready;
+
+	private BlockingQueue<Reply> replies;
+
+	/**
+	 * How many messages have been sent and not handled yet, plus one while
+	 * the sim is still sending a phase's Ticks.
+	 */
+	private AtomicInteger pending;
+
+	/**
+	 * @param numThreads how many threads the actors run on, including the sim's own
+	 */
+	public VirtualClock(int numThreads) {
+		numHelpers = Math.max(numThreads, 1) - 1;
+		if (numHelpers > 0) {
+			executor = new ThreadPoolExecutor(numHelpers, numHelpers, 1, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "subwaysim-actor");
+					thread.setDaemon(true);
+					return thread;
+				});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		numHelping = new AtomicInteger(0);
+		ready = new ConcurrentLinkedQueue<Runnable>();
+		replies = new LinkedBlockingQueue<Reply>();
+		pending = new AtomicInteger(0);
+	}
+
+	/**
+	 * Run an actor's work on one of the threads.
+	 */
+	void execute(Runnable work) {
+		ready.add(work);
+		startHelper();
+	}
+
+	/**
+	 * Get another helper working through the ready queue, unless they all are already.
+	 */
+	private void startHelper() {
+		int helping;
+		while ((helping = numHelping.get()) < numHelpers) {
+			if (numHelping.compareAndSet(helping, helping + 1)) {
+				executor.execute(help);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A helper's work: everything in the ready queue.
+	 */
+	private void help() {
+		try {
+			Runnable work;
+			while ((work = ready.poll()) != null) {
+				work.run();
+			}
+		}
+		finally {
+			numHelping.decrementAndGet();
+		}
+		// Something may have been added after the last poll, while every helper was still busy
+		if (!ready.isEmpty()) {
+			startHelper();
+		}
+	}
+
+	/**
+	 * Count a message being sent.
+	 */
+	void sent() {
+		pending.incrementAndGet();
+	}
+
+	/**
+	 * Count a message being handled; if that was the last one, the phase is quiet.
+	 * Anything the message sent was counted before this, so it can't go quiet early.
+	 */
+	void handled() {
+		if (pending.decrementAndGet() == 0) {
+			replies.add(QUIET);
+		}
+	}
+
+	/**
+	 * Send a Reply back to the clock.
+	 * @param reply the Reply
+	 */
+	void reply(Reply reply) {
+		replies.add(reply);
+	}
+
+	/**
+	 * Start a phase. Until awaitQuiet(...), the phase can't go quiet, however
+	 * quickly the actors handle what they're sent.
+	 */
+	public void beginPhase() {
+		pending.incrementAndGet();
+	}
+
+	/**
+	 * Wait for the phase to go quiet, working through the ready queue in the
+	 * meantime, and handling the Replies in whatever order they come. If an
+	 * actor failed, the phase is still waited out, so the next one starts
+	 * clean, and then the first failure is passed on.
+	 * @param handler what to do with each Reply
+	 * @throws RuntimeException if an actor failed, or the wait was interrupted
+	 */
+	public void awaitQuiet(ReplyHandler handler) throws RuntimeException {
+		handled(); // Done sending
+		RuntimeException failure = null;
+		while (true) {
+			Runnable work = ready.poll();
+			if (work != null) {
+				work.run();
+				continue;
+			}
+			// Anything left to do is being done by a helper
+			Reply reply;
+			try {
+				reply = replies.take();
+			}
+			catch (InterruptedException e) {
+				throw new RuntimeException("Error: interrupted while waiting for the actors");
+			}
+			if (reply == QUIET) {
+				break;
+			}
+			Throwable error = reply.getError();
+			if (error == null) {
+				if (failure == null) {
+					handler.handle(reply);
+				}
+			}
+			else if (failure == null) {
+				failure = (error instanceof RuntimeException) ? (RuntimeException)error
+					: new RuntimeException("Error: actor " + reply.getIndex() + " failed: " + error, error);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package sashas_erikh.subwaysim.actor;
+
+import sashas_erikh.subwaysim.passenger.PassengerQueue;
+
+/**
+ * What a TrainActor sends a Station's actor when its Train is about to look
+ * at a line's queue, to board from it or to decide how long to dwell. The
+ * Station copies the front of the queue into the Train's own PassengerQueue
+ * and answers with an Offer.
+ * @author Erik H
+ */
+public class Visit implements StationMessage {
+	private TrainActor train;
+	private int line;
+	private int max;
+	private PassengerQueue copy;
+
+	/**
+	 * @param train the Train's actor, where the Offer goes
+	 * @param line the line's number
+	 * @param max the most Passengers the Train could take off the queue
+	 * @param copy where to copy them to
+	 */
+	public Visit(TrainActor train, int line, int max, PassengerQueue copy) {
+		this.train = train;
+		this.line = line;
+		this.max = max;
+		this.copy = copy;
+	}
+
+	/**
+	 * @return the Train's actor
+	 */
+	public TrainActor getTrain() {
+		return train;
+	}
+
+	/**
+	 * @return the line's number
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return the most Passengers the Train could take off the queue
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * @return where to copy them to
+	 */
+	public PassengerQueue getCopy() {
+		return copy;
+	}
+}
@@ -0,0 +1,78 @@
+package sashas_erikh.subwaysim.event;
+
+/**
+ * Something that needs to happen on a particular time step of the simulation.
+ * Events are ordered by time step, then by type, then by the index of the
+ * Station or Train they belong to. This matches the order in which the fixed
+ * time step loop visits the Stations and Trains.
+ * @author Erik H
+ */
+public class Event implements Comparable<Event> {
+	/**
+	 * The time step this Event happens on.
+	 */
+	private long step;
+	/**
+	 * What kind of Event this is.
+	 */
+	private EventType type;
+	/**
+	 * The index of the Station or Train this Event belongs to.
+	 */
+	private int index;
+
+	/**
+	 * Create an Event.
+	 * @param step the time step this Event happens on
+	 * @param type the kind of Event
+	 * @param index the index of the Station or Train this Event belongs to
+	 */
+	public Event(long step, EventType type, int index) {
+		this.step = step;
+		this.type = type;
+		this.index = index;
+	}
+
+	/**
+	 * @return the time step this Event happens on
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	/**
+	 * @return the kind of Event
+	 */
+	public EventType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the index of the Station or Train this Event belongs to
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Compare Events by time step, then type, then index.
+	 * @param other the Event to compare to
+	 * @return a negative number, zero, or a positive number if this Event happens before, with, or after the other
+	 */
+	public int compareTo(Event other) {
+		if (step != other.step) {
+			return Long.compare(step, other.step);
+		}
+		if (type != other.type) {
+			return type.compareTo(other.type);
+		}
+		return Integer.compare(index, other.index);
+	}
+
+	/**
+	 * @return a String representation of this Event
+	 */
+	public String toString() {
+		return "<" + type + " " + index + " @ step " + step + ">";
+	}
+}
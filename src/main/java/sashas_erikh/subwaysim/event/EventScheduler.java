@@ -0,0 +1,83 @@
+package sashas_erikh.subwaysim.event;
+
+import java.util.PriorityQueue;
+
+/**
+ * A priority queue of Events, keyed by the time step they happen on.
+ * Times are converted to time steps conservatively: an Event may be woken a
+ * step early (the Station or Train will just find it has nothing to do yet
+ * and reschedule itself), but never late. This keeps the results identical
+ * to the fixed time step loop even when the clock has floating point error.
+ * @author Erik H
+ */
+public class EventScheduler {
+	/**
+	 * The pending Events, soonest first.
+	 */
+	private PriorityQueue<Event> events;
+	/**
+	 * The size of the time step.
+	 */
+	private double dt;
+
+	/**
+	 * Create an empty scheduler.
+	 * @param dt the size of the simulation's time step
+	 */
+	public EventScheduler(double dt) {
+		this.dt = dt;
+		events = new PriorityQueue<Event>();
+	}
+
+	/**
+	 * Schedule an Event on a specific time step.
+	 * @param step the time step
+	 * @param type the kind of Event
+	 * @param index the index of the Station or Train the Event belongs to
+	 */
+	public void schedule(long step, EventType type, int index) {
+		events.add(new Event(step, type, index));
+	}
+
+	/**
+	 * Schedule an Event for a time, on the latest time step that can't be too late for it.
+	 * The Event is never scheduled before the time step following the current one.
+	 * @param time the time, in seconds
+	 * @param currentStep the current time step
+	 * @param type the kind of Event
+	 * @param index the index of the Station or Train the Event belongs to
+	 */
+	public void scheduleAt(double time, long currentStep, EventType type, int index) {
+		long step = (long)Math.ceil(time / dt) - 1;
+		schedule(Math.max(step, currentStep + 1), type, index);
+	}
+
+	/**
+	 * @return whether there are no pending Events
+	 */
+	public boolean isEmpty() {
+		return events.isEmpty();
+	}
+
+	/**
+	 * @return the time step of the soonest pending Event
+	 */
+	public long peekStep() {
+		return events.peek().getStep();
+	}
+
+	/**
+	 * Remove the soonest pending Event.
+	 * @return the Event
+	 */
+	public Event poll() {
+		return events.poll();
+	}
+
+	/**
+	 * @return the number of pending Events
+	 */
+	public int size() {
+		return events.size();
+	}
+}
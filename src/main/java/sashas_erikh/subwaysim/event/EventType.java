@@ -0,0 +1,12 @@
+package sashas_erikh.subwaysim.event;
+
+/**
+ * This enum is used to define the kinds of Events the scheduler can hold.
+ * The order matters: at any given time step, Passenger spawns are handled
+ * before the Trains run, just like in SubwaySim's fixed time step loop.
+ * @author Erik H
+ */
+public enum EventType {
+	SPAWN,
+	TRAIN,
+}
@@ -0,0 +1,98 @@
+package sashas_erikh.subwaysim.log;
+
+import java.io.PrintStream;
+
+/**
+ * A minimal, level-gated logger for the simulation.
+ * Messages at a level below the current one are dropped before they are
+ * written. Callers on the hot path should check isEnabled(...) first so that
+ * disabled messages don't even get built:
+ * <pre>
+ * if (Log.isEnabled(LogLevel.TRACE)) {
+ *     Log.trace("Passengers: " + passengers);
+ * }
+ * </pre>
+ * The level and output are shared by every simulation in the JVM, and are
+ * meant to be set once before the simulations start.
+ * @author Erik H
+ */
+public class Log {
+	/**
+	 * The least verbose level that still gets written.
+	 */
+	private static LogLevel level = LogLevel.INFO;
+	/**
+	 * Where log messages are written.
+	 */
+	private static PrintStream out = System.err;
+
+	private Log() {
+	}
+
+	/**
+	 * Set the log level.
+	 * @param level the least verbose level that will still be written
+	 */
+	public static void setLevel(LogLevel level) {
+		Log.level = level;
+	}
+
+	/**
+	 * @return the current log level
+	 */
+	public static LogLevel getLevel() {
+		return level;
+	}
+
+	/**
+	 * Set where log messages are written.
+	 * @param out the PrintStream for log messages
+	 */
+	public static void setOutput(PrintStream out) {
+		Log.out = out;
+	}
+
+	/**
+	 * Check if messages at a level will be written.
+	 * @param messageLevel the level of the message
+	 * @return whether messages at that level are written
+	 */
+	public static boolean isEnabled(LogLevel messageLevel) {
+		return messageLevel.compareTo(level) >= 0;
+	}
+
+	/**
+	 * Write a message if its level is enabled.
+	 * @param messageLevel the level of the message
+	 * @param message the message
+	 */
+	public static void log(LogLevel messageLevel, String message) {
+		if (isEnabled(messageLevel)) {
+			out.println("[" + messageLevel + "] " + message);
+		}
+	}
+
+	/**
+	 * Write a TRACE message; these are for things that happen every time step.
+	 * @param message the message
+	 */
+	public static void trace(String message) {
+		log(LogLevel.TRACE, message);
+	}
+
+	/**
+	 * Write a DEBUG message; these are for Train and Station state changes.
+	 * @param message the message
+	 */
+	public static void debug(String message) {
+		log(LogLevel.DEBUG, message);
+	}
+
+	/**
+	 * Write an INFO message.
+	 * @param message the message
+	 */
+	public static void info(String message) {
+		log(LogLevel.INFO, message);
+	}
+}
@@ -0,0 +1,13 @@
+package sashas_erikh.subwaysim.log;
+
+/**
+ * This enum is used to define the levels of log messages, from most to least verbose.
+ * Setting the log level to OFF disables all log messages.
+ * @author Erik H
+ */
+public enum LogLevel {
+	TRACE,
+	DEBUG,
+	INFO,
+	OFF,
+}
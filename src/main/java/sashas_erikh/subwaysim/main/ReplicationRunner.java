@@ -0,0 +1,208 @@
+package sashas_erikh.subwaysim.main;
+
+import sashas_erikh.subwaysim.stats.RunningStats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+/**
+ * A class for running independent replications of one Subway Simulation,
+ * at the same time on a fixed size thread pool, and reporting confidence
+ * intervals for the results.
+ *
+ * Usage: <code>ReplicationRunner &lt;basename&gt; [replications=R] [minReplications=M] [threads=N]
+ * [confidence=C] [targetHalfWidth=H] [seed=S] [key=value]...</code>
+ *
+ * Each replication gets its own passengerSpawnSeed and stationPickerSeed, drawn
+ * from its own split of a SplittableRandom seeded with S, and runs with
+ * rngStreams split so that its Stations don't share a stream either. Any other
+ * key=value arguments override config parameters for every replication.
+ *
+ * Replications are looked at in order as they finish. Once at least M are done
+ * and the confidence interval for the mean trip time is within H (as a fraction
+ * of the mean) no more are started; ones that are already running are finished
+ * and counted too. With H = 0 all R are run.
+ *
+ * Output goes to data/&lt;basename&gt;_replications/: each replication's usual
+ * files, a &lt;basename&gt;_summary.csv of every replication, and a
+ * &lt;basename&gt;_ci.csv of the confidence intervals.
+ * @author Erik H
+ */
+public class ReplicationRunner {
+	public static final String REPLICATIONSUFFIX = "_replications/";
+	public static final String CISUFFIX = "_ci.csv";
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("[FATAL] please specify the filename prefix.");
+			System.exit(1);
+		}
+
+		String fileBaseName = args[0];
+		int numReplications = 10;
+		int minReplications = 3;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		double confidence = 0.95;
+		double targetHalfWidth = 0.0;
+		long seed = -1;
+
+		Map<String, String> overrides = new HashMap<String, String>();
+		for (int i = 1; i < args.length; i++) {
+			String[] argParts = args[i].split("=", 2);
+			if (argParts.length != 2) {
+				System.err.println("[FATAL] arguments must look like key=value; got: " + args[i]);
+				System.exit(1);
+			}
+			try {
+				switch (argParts[0]) {
+				case "replications":
+					numReplications = Integer.parseInt(argParts[1]);
+					break;
+				case "minReplications":
+					minReplications = Integer.parseInt(argParts[1]);
+					break;
+				case "threads":
+					numThreads = Integer.parseInt(argParts[1]);
+					break;
+				case "confidence":
+					confidence = Double.parseDouble(argParts[1]);
+					break;
+				case "targetHalfWidth":
+					targetHalfWidth = Double.parseDouble(argParts[1]);
+					break;
+				case "seed":
+					seed = Long.parseLong(argParts[1]);
+					break;
+				default:
+					overrides.put(argParts[0], argParts[1]);
+				}
+			}
+			catch (NumberFormatException e) {
+				System.err.println("[FATAL] bad argument " + args[i] + ": " + e);
+				System.exit(1);
+			}
+		}
+		if (numReplications < 2 || minReplications < 2 || !(confidence > 0 && confidence < 1)) {
+			System.err.println("[FATAL] need at least 2 replications and a confidence between 0 and 1.");
+			System.exit(1);
+		}
+		overrides.put("rngStreams", "split");
+
+		String outDir = SubwaySimRunner.OUTPUTDIR + fileBaseName + REPLICATIONSUFFIX;
+		new File(outDir).mkdirs();
+
+		// The log level is shared by all the runs, so set it once up front
+		try {
+			SubwaySim.applyLogLevel(SubwaySim.loadConfig(SubwaySimRunner.INPUTDIR + fileBaseName + SubwaySim.CONFIGSUFFIX, overrides));
+		}
+		catch (Exception e) {
+			System.err.println("[FATAL] error loading config: " + e);
+			System.exit(1);
+		}
+
+		System.out.println("[INFO] Running up to " + numReplications + " replications on " + numThreads + " threads, writing output to " + outDir);
+		SplittableRandom streams = (seed > 0) ? new SplittableRandom(seed) : new SplittableRandom();
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+
+		// Keep numThreads replications going, starting them in order
+		Queue<Future<SweepRunner.Result>> running = new ArrayDeque<Future<SweepRunner.Result>>();
+		int numStarted = 0;
+		while (numStarted < Math.min(numThreads, numReplications)) {
+			running.add(pool.submit(replicationTask(fileBaseName, numStarted++, streams.split(), overrides, outDir)));
+		}
+
+		List<SweepRunner.Result> results = new ArrayList<SweepRunner.Result>();
+		RunningStats throughputs = new RunningStats();
+		RunningStats tripTimes = new RunningStats();
+		RunningStats waitTimes = new RunningStats();
+		boolean targetMet = false;
+		while (!running.isEmpty()) {
+			SweepRunner.Result result = null;
+			try {
+				result = running.remove().get();
+			}
+			catch (InterruptedException | ExecutionException e) {
+				System.err.println("[FATAL] error waiting for sim: " + e);
+				System.exit(1);
+			}
+			results.add(result);
+			if (result.error == null) {
+				throughputs.add(result.numPassengers / result.time);
+				tripTimes.add(result.meanTripTime);
+				waitTimes.add(result.meanWaitTime);
+			}
+
+			if (!targetMet && targetHalfWidth > 0 && tripTimes.getCount() >= minReplications
+					&& tripTimes.getHalfWidth(confidence) <= targetHalfWidth * tripTimes.getMean()) {
+				targetMet = true;
+				System.out.println("[INFO] Mean trip time is within " + targetHalfWidth + " of the mean after " + tripTimes.getCount() + " replications.");
+			}
+			if (!targetMet && numStarted < numReplications) {
+				running.add(pool.submit(replicationTask(fileBaseName, numStarted++, streams.split(), overrides, outDir)));
+			}
+		}
+		pool.shutdown();
+
+		File summaryFile = new File(outDir + fileBaseName + SweepRunner.SUMMARYSUFFIX);
+		File ciFile = new File(outDir + fileBaseName + CISUFFIX);
+		System.out.println("[INFO] Writing replication summary to " + summaryFile + " and confidence intervals to " + ciFile);
+		try {
+			SweepRunner.writeSummary(results, Arrays.asList("passengerSpawnSeed", "stationPickerSeed"), summaryFile);
+			PrintWriter ciWriter = new PrintWriter(ciFile);
+			String header = "Statistic,Replications,Confidence,Mean,Half width,Lower,Upper";
+			ciWriter.println(header);
+			System.out.println(header);
+			writeInterval(ciWriter, "Passengers/second", throughputs, confidence);
+			writeInterval(ciWriter, "Mean trip time (seconds)", tripTimes, confidence);
+			writeInterval(ciWriter, "Mean wait time (seconds)", waitTimes, confidence);
+			ciWriter.close();
+		}
+		catch (FileNotFoundException e) {
+			System.err.println("[FATAL] Error writing summary file: " + e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Create the task for one replication, with its own seeds.
+	 * @param fileBaseName the base name of the config file
+	 * @param replication the replication's number
+	 * @param stream the replication's own random stream, for its seeds
+	 * @param overrides the config parameters for every replication
+	 * @param outDir the directory for the output files
+	 * @return the task, which returns the replication's results
+	 */
+	private static Callable<SweepRunner.Result> replicationTask(String fileBaseName, int replication, SplittableRandom stream,
+			Map<String, String> overrides, String outDir) {
+		Map<String, String> replicationOverrides = new HashMap<String, String>(overrides);
+		replicationOverrides.put("passengerSpawnSeed", "" + stream.nextInt(1, Integer.MAX_VALUE));
+		replicationOverrides.put("stationPickerSeed", "" + stream.nextInt(1, Integer.MAX_VALUE));
+		return SweepRunner.runTask(fileBaseName, fileBaseName + "_rep" + replication, replicationOverrides, outDir, null, false);
+	}
+
+	/**
+	 * Write one line of the confidence interval table, to a file and to stdout.
+	 */
+	private static void writeInterval(PrintWriter writer, String name, RunningStats stats, double confidence) {
+		double halfWidth = stats.getHalfWidth(confidence);
+		String line = name + "," + stats.getCount() + "," + confidence + "," + stats.getMean() + "," + halfWidth
+			+ "," + (stats.getMean() - halfWidth) + "," + (stats.getMean() + halfWidth);
+		writer.println(line);
+		System.out.println(line);
+	}
+}
@@ -0,0 +1,133 @@
+package sashas_erikh.subwaysim.main;
+
+import sashas_erikh.subwaysim.stop.AnyOf;
+import sashas_erikh.subwaysim.stop.StopCondition;
+
+import rmacdonald_kingsu.util.ConfigFile;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Checks that a sim restored from a saved state carries on exactly the way
+ * the sim it was saved from does, under every dispatch policy.
+ *
+ * Usage: <code>RestoreCheck &lt;basename&gt; [key=value]... [interval=T]</code>
+ *
+ * For each policy, one sim runs until its stop conditions are met, saving its
+ * state every T seconds of sim time (600 by default). Each saved state is
+ * restored into a new sim, which is run up to the next save; its state then
+ * has to be byte for byte the same as the original's. Only the statistics are
+ * kept, so no output files are written. The other arguments override config
+ * parameters, as for SubwaySimRunner, so e.g. engine=parallel checks that engine.
+ * @author Erik H
+ */
+public class RestoreCheck {
+	/**
+	 * The dispatch policies that are checked.
+	 */
+	public static final String[] POLICIES = {"fixed", "holding", "full", "skip"};
+	public static final double DEFAULTINTERVAL = 600.0;
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("[FATAL] please specify the filename prefix.");
+			System.exit(1);
+		}
+
+		String fileBaseName = args[0];
+		double interval = DEFAULTINTERVAL;
+		Map<String, String> overrides = new HashMap<String, String>();
+		overrides.put("logLevel", "OFF");
+		for (int i = 1; i < args.length; i++) {
+			String[] argParts = args[i].split("=", 2);
+			if (argParts.length != 2) {
+				System.err.println("[FATAL] config overrides must look like key=value; got: " + args[i]);
+				System.exit(1);
+			}
+			if (argParts[0].equals("interval")) {
+				interval = Double.parseDouble(argParts[1]);
+			}
+			else {
+				overrides.put(argParts[0], argParts[1]);
+			}
+		}
+		if (!(interval > 0)) {
+			System.err.println("[FATAL] interval has to be more than 0; got: " + interval);
+			System.exit(1);
+		}
+		// Nothing but the state is compared, and the sims all have the same name
+		overrides.put("outputFormat", "none");
+		overrides.put("metrics", "off");
+
+		boolean allSame = true;
+		for (String policy : POLICIES) {
+			overrides.put("dispatchPolicy", policy);
+			try {
+				allSame &= check(fileBaseName, overrides, interval);
+			}
+			catch (FileNotFoundException | RuntimeException e) {
+				System.err.println("[ERROR] " + policy + ": " + e);
+				allSame = false;
+			}
+		}
+		if (!allSame) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Run one sim, checking each state it saves against a sim restored from the one before.
+	 * @param fileBaseName the base name of the config file
+	 * @param overrides the config parameters to override
+	 * @param interval how often to save the state, in sim seconds
+	 * @return whether every restored sim matched
+	 * @throws FileNotFoundException if the config file can't be opened
+	 */
+	private static boolean check(String fileBaseName, Map<String, String> overrides, double interval) throws FileNotFoundException {
+		String policy = overrides.get("dispatchPolicy");
+		ConfigFile config = SubwaySim.loadConfig(SubwaySimRunner.INPUTDIR + fileBaseName + SubwaySim.CONFIGSUFFIX, overrides);
+		SubwaySim.applyLogLevel(config);
+		SubwaySim original = new SubwaySim(fileBaseName, config, SubwaySimRunner.OUTPUTDIR);
+		StopCondition stop = AnyOf.fromConfig(config);
+
+		byte[] saved = original.saveState();
+		double savedTime = original.getTime();
+		int numChecked = 0;
+		try {
+			while (!stop.isMet(original)) {
+				double nextSave = savedTime + interval;
+				original.setNextCheckTime(Math.min(stop.getNextCheckTime(), nextSave));
+				original.step();
+				if (original.getTime() < nextSave && !stop.isMet(original)) {
+					continue;
+				}
+
+				byte[] state = original.saveState();
+				SubwaySim restored = new SubwaySim(fileBaseName, config, SubwaySimRunner.OUTPUTDIR, saved);
+				restored.setNextCheckTime(original.getTime());
+				while (restored.getTime() < original.getTime()) {
+					restored.step();
+				}
+				byte[] restoredState = restored.saveState();
+				restored.closeOutputWriters();
+				if (!Arrays.equals(state, restoredState)) {
+					System.err.println("[ERROR] " + policy + ": the sim restored at t = " + savedTime
+						+ " doesn't match the original by t = " + original.getTime());
+					return false;
+				}
+				saved = state;
+				savedTime = original.getTime();
+				numChecked++;
+			}
+		}
+		finally {
+			original.closeOutputWriters();
+		}
+		System.out.println("[INFO] " + policy + ": " + numChecked + " restored states matched, up to t = " + original.getTime());
+		return true;
+	}
+}
@@ -1,9 +1,48 @@
 package sashas_erikh.subwaysim.main;
 
-import sashas_erikh.subwaysim.passenger.PassengerList;
+import sashas_erikh.subwaysim.actor.Enqueue;
+import sashas_erikh.subwaysim.actor.StationActor;
+import sashas_erikh.subwaysim.actor.Tick;
+import sashas_erikh.subwaysim.actor.TrainActor;
+import sashas_erikh.subwaysim.actor.VirtualClock;
+import sashas_erikh.subwaysim.passenger.PassengerBuffer;
 import sashas_erikh.subwaysim.station.Station;
 import sashas_erikh.subwaysim.station.Destination;
+import sashas_erikh.subwaysim.train.DispatchPolicy;
+import sashas_erikh.subwaysim.train.FixedDwell;
+import sashas_erikh.subwaysim.train.HeadwayHolding;
+import sashas_erikh.subwaysim.train.LeaveWhenFull;
+import sashas_erikh.subwaysim.train.SkipStop;
 import sashas_erikh.subwaysim.train.Train;
+import sashas_erikh.subwaysim.train.TrainState;
+import sashas_erikh.subwaysim.event.Event;
+import sashas_erikh.subwaysim.event.EventScheduler;
+import sashas_erikh.subwaysim.event.EventType;
+import sashas_erikh.subwaysim.log.Log;
+import sashas_erikh.subwaysim.log.LogLevel;
+import sashas_erikh.subwaysim.metrics.MetricsServer;
+import sashas_erikh.subwaysim.metrics.SimMetrics;
+import sashas_erikh.subwaysim.output.BinaryOutputSink;
+import sashas_erikh.subwaysim.output.CsvOutputSink;
+import sashas_erikh.subwaysim.output.DeferredOutputSink;
+import sashas_erikh.subwaysim.output.OutputSink;
+import sashas_erikh.subwaysim.output.StatsOutputSink;
+import sashas_erikh.subwaysim.stats.SimStats;
+import sashas_erikh.subwaysim.stream.EventConsumer;
+import sashas_erikh.subwaysim.stream.EventStreamSink;
+import sashas_erikh.subwaysim.stream.GnuplotExporter;
+import sashas_erikh.subwaysim.stream.SinkConsumer;
+import sashas_erikh.subwaysim.network.DemandProfile;
+import sashas_erikh.subwaysim.network.DestinationSampler;
+import sashas_erikh.subwaysim.network.NetworkModel;
+import sashas_erikh.subwaysim.network.RouteTable;
+import sashas_erikh.subwaysim.random.ArrivalGenerator;
+import sashas_erikh.subwaysim.random.ArrivalTimeRNG;
+import sashas_erikh.subwaysim.random.CapturableRandom;
+import sashas_erikh.subwaysim.random.FastArrivalGenerator;
+import sashas_erikh.subwaysim.random.InversionArrivalGenerator;
+import sashas_erikh.subwaysim.random.PiecewiseRate;
+import sashas_erikh.subwaysim.random.ThinningArrivalGenerator;
 
 import rmacdonald_kingsu.util.ConfigFile;
 
@@ -13,12 +52,25 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.Random;
-import java.util.Set;
+import java.util.SplittableRandom;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.management.JMException;
 
 /**
  * Simulation of a subway system.
@@ -30,39 +82,186 @@ import java.io.PrintWriter;
 public class SubwaySim {
 
 	public static final String CONFIGSUFFIX = "_config.txt";
+	public static final String CHECKPOINTSUFFIX = "_checkpoint.bin";
+	public static final int CHECKPOINTMAGIC = 0x53554243; // "SUBC"
+	public static final int CHECKPOINTVERSION = 6;
+	/**
+	 * The config parameters that pick the Stations' spawn generators and the
+	 * destination RNG, so changing any of them only means something for a
+	 * sim started from a saved state if it's reseeded.
+	 */
+	public static final String[] RANDOMKEYS = {"passengerSpawnSeed", "stationPickerSeed", "rngStreams", "arrivalGenerator", "demandProfileMethod"};
 	private ConfigFile config; // The simulation options
 
 	/**
 	 * Used for drawing random destinations for each Passenger.
-	 * NOTE: since Random is uniform, we're assuming all Stations are equally desirable/
-	 * likely to be travelled to.
 	 */
-	private Random stationRNG;
+	private CapturableRandom stationRNG;
+
+	/**
+	 * Draws each Passenger's destination, weighted by the network's demand.
+	 */
+	private DestinationSampler destinationSampler;
 
 	private String fileBaseName; // The prefix or base name for the config and output files
 	private String outDir; // The output file directory
 	private String outFileBase; // The prefix for the output files, including directory
-	private PrintWriter passengerWriter; // The PrintWriter for passenger data
-	public static final String PASSENGERSUFFIX = "_passenger.csv";
-	public static final String TRAINSUFFIX = "_train.csv";
+	private OutputSink outputSink; // Where the passenger and train data go
+	private SimStats stats; // Summary statistics, updated as the passenger and train data are written
+	public static final String PASSENGERSUFFIX = CsvOutputSink.PASSENGERSUFFIX;
+	public static final String TRAINSUFFIX = CsvOutputSink.TRAINSUFFIX;
 
 	/**
-	 * The subway track.
+	 * The subway track (of the first line, if there's more than one).
 	 * The keys are the stations, and the values are objects which detail what
 	 * the next station on the track is, and how long it takes to get there.
 	 */
 	private Map<Station, Destination> track;
 
 	/**
-	 * A Map relating station names to their instances.
+	 * Each line's track, indexed by line and then Station id, for the Trains
+	 * to look up where to go next; null where a line doesn't stop.
+	 */
+	private Destination[][] destinations;
+
+	/**
+	 * The compiled layout of the Stations and Trains.
+	 */
+	private NetworkModel network;
+
+	/**
+	 * Which line Passengers take and where they transfer; null if there's only one line.
 	 */
-	private Map<String, Station> stationMap;
+	private RouteTable routes;
+
+	/**
+	 * The Stations, indexed by id; also the order they're visited each time step.
+	 */
+	private List<Station> stations;
 
 	/**
 	 * The trains on the track.
 	 */
 	private List<Train> trains;
 
+	/**
+	 * Whether the sim skips ahead between Events instead of ticking every time step.
+	 */
+	private boolean eventDriven;
+
+	/**
+	 * The pending Passenger spawns and Train wake-ups; only used when event or actor driven.
+	 */
+	private EventScheduler scheduler;
+
+	/**
+	 * Whether each time step's Stations and Trains are split up between several threads.
+	 */
+	private boolean parallel;
+
+	/**
+	 * The threads for the parallel engine; only used when parallel.
+	 */
+	private WorkerPool workers;
+
+	/**
+	 * The Passengers spawned on a time step, one list per chunk of Stations; only used when parallel.
+	 */
+	private SpawnList[] spawnLists;
+
+	/**
+	 * Whether each Station and Train is an actor, kept in step by a VirtualClock.
+	 */
+	private boolean actorDriven;
+
+	/**
+	 * The actors and the clock that coordinates them; only used when actor driven.
+	 */
+	private VirtualClock clock;
+	private StationActor[] stationActors;
+	private TrainActor[] trainActors;
+
+	/**
+	 * The Stations and Trains ticked on this time step, the time step each
+	 * Train was last ticked on, and what each Train was doing before it was
+	 * and when it said it next has something to do; only used when actor driven.
+	 */
+	private int[] tickedStations;
+	private int numTickedStations;
+	private int[] tickedTrains;
+	private int numTickedTrains;
+	private int[] trainTickSteps;
+	private TrainState[] trainStates;
+	private double[] trainNextTimes;
+
+	/**
+	 * The Trains stopped at each Station, and the Trains that can't leave
+	 * until a platform at each Station is vacated; only used when actor driven.
+	 */
+	private TrainLists dockedTrains;
+	private TrainLists blockedTrains;
+
+	/**
+	 * The indices of all the Trains, for levelling them all; only used when parallel.
+	 */
+	private int[] allTrains;
+
+	/**
+	 * Each Train's own OutputSink, flushed in Train order after every time step; only used when parallel or actor driven.
+	 */
+	private List<DeferredOutputSink> trainSinks;
+
+	/**
+	 * How many Passengers got off each Train at their destination this time step; only used when parallel or actor driven.
+	 */
+	private int[] trainArrivals;
+
+	/**
+	 * The Trains' indices sorted by level (see levelTrains(...)), and where each
+	 * level starts; only used when parallel or actor driven.
+	 */
+	private int[] trainOrder;
+	private int[] levelStarts;
+
+	/**
+	 * The highest level of a Train touching each Station this time step, and
+	 * the time step it was set on (older ones count as 0); only used when parallel or actor driven.
+	 */
+	private int[] stationLevels;
+	private int[] stationLevelSteps;
+
+	/**
+	 * The next time something outside the sim needs to look at it, such as
+	 * the end of the run; a step that skips idle time steps won't skip past it.
+	 */
+	private double nextCheckTime;
+
+	/**
+	 * Live counts of what the sim is doing, or null if the config doesn't ask for them.
+	 */
+	private SimMetrics metrics;
+
+	/**
+	 * Whether the fixed time step loop skips over time steps where no Train has anything to do.
+	 */
+	private boolean fastForward;
+
+	/**
+	 * The most time steps skipped in one go, so a sim where every Train is
+	 * stuck still comes back to its caller now and then.
+	 */
+	public static final int MAXSKIPPEDSTEPS = 4096;
+
+	/**
+	 * The times of the time steps being skipped, the Passengers spawned on
+	 * them, and which time step each one spawned on; reused by every skip.
+	 */
+	private double[] skippedTimes;
+	private SpawnList skippedSpawns;
+	private int[] skippedSpawnSteps;
+	private int[] skippedStepCounts;
+	private int[] skippedOrder;
+
 	private double dt; // The size of the time step.
 	private double t; // The current time.
 	private int numSteps; // The total number of time steps completed
@@ -77,47 +276,132 @@ public class SubwaySim {
 	 * @throws RuntimeException if something goes wrong while setting up the track
 	 */
 	public SubwaySim(String fileBaseName, String configDir, String outDir) throws FileNotFoundException, RuntimeException {
+		this(fileBaseName, configDir, outDir, new HashMap<String, String>());
+	}
+
+	/**
+	 * Sets up the subway stations and opens up the output files, overriding
+	 * some of the config file's parameters.
+	 * @param fileBaseName the base name (prefix) for the config and output files
+	 * @param configDir the directory in which to look for the config file
+	 * @param outDir the directory for the output files
+	 * @param overrides config keys mapped to the (space separated) parameters that replace the config file's
+	 * @throws FileNotFoundException if there is an error opening any output files
+	 * @throws RuntimeException if something goes wrong while setting up the track
+	 */
+	public SubwaySim(String fileBaseName, String configDir, String outDir, Map<String, String> overrides) throws FileNotFoundException, RuntimeException {
+		this(fileBaseName, loadConfig(withSlash(configDir) + fileBaseName + CONFIGSUFFIX, overrides), outDir);
+	}
+
+	/**
+	 * Sets up the subway stations and opens up the output files, using an
+	 * already loaded config.
+	 * Each SubwaySim only touches its own state, so several of them can be
+	 * run at once on different threads as long as they have their own
+	 * ConfigFiles and output file names.
+	 * @param fileBaseName the base name (prefix) for the output files
+	 * @param config the simulation options, as returned by loadConfig(...)
+	 * @param outDir the directory for the output files
+	 * @throws FileNotFoundException if there is an error opening any output files
+	 * @throws RuntimeException if something goes wrong while setting up the track
+	 */
+	public SubwaySim(String fileBaseName, ConfigFile config, String outDir) throws FileNotFoundException, RuntimeException {
+		this(fileBaseName, config, outDir, null);
+	}
+
+	/**
+	 * Sets up the subway stations and opens up the output files, using an
+	 * already loaded config, and then carries on from a state saved by
+	 * saveState() instead of starting at time 0.
+	 * The saved state is only read, so any number of sims can start from the
+	 * same one, each with its own parameters.
+	 * @param fileBaseName the base name (prefix) for the output files
+	 * @param config the simulation options, as returned by loadConfig(...)
+	 * @param outDir the directory for the output files
+	 * @param state the state to start from, or null to start from scratch
+	 * @throws FileNotFoundException if there is an error opening any output files
+	 * @throws RuntimeException if something goes wrong while setting up the track, or the state is for a different network
+	 */
+	public SubwaySim(String fileBaseName, ConfigFile config, String outDir, byte[] state) throws FileNotFoundException, RuntimeException {
+		this(fileBaseName, config, outDir, state, false);
+	}
+
+	/**
+	 * Sets up the subway stations and opens up the output files, using an
+	 * already loaded config, and then carries on from a state saved by
+	 * saveState(), optionally with fresh RNGs.
+	 * When reseeded, the Stations' spawn generators and the destination RNG
+	 * are the ones this sim's own config sets up (see RANDOMKEYS), rather
+	 * than the saved ones, and each Station draws its next spawn time again.
+	 * Everyone already spawned, and everything else, is still as saved.
+	 * @param fileBaseName the base name (prefix) for the output files
+	 * @param config the simulation options, as returned by loadConfig(...)
+	 * @param outDir the directory for the output files
+	 * @param state the state to start from, or null to start from scratch
+	 * @param reseed whether to use this config's RNGs instead of the saved ones
+	 * @throws FileNotFoundException if there is an error opening any output files
+	 * @throws RuntimeException if something goes wrong while setting up the track, or the state is for a different network
+	 */
+	public SubwaySim(String fileBaseName, ConfigFile config, String outDir, byte[] state, boolean reseed) throws FileNotFoundException, RuntimeException {
 		this.fileBaseName = fileBaseName;
+		this.config = config;
 
-		if (!configDir.endsWith("/")) {
-			configDir += "/";
-		}
-		if (!outDir.endsWith("/")) {
-			outDir += "/";
-		}
+		outDir = withSlash(outDir);
 		this.outDir = outDir;
 		outFileBase = outDir + fileBaseName;
 
-		loadConfig(configDir + fileBaseName + CONFIGSUFFIX);
 		int stationPickerSeed = config.getInt("stationPickerSeed");
 
 		// Set up the RNG for picking random Passenger destinations.
 		// If the config gives us a negative seed, us the default Random seed.
 		if (stationPickerSeed > 0) {
-			stationRNG = new Random(stationPickerSeed);
+			stationRNG = new CapturableRandom(stationPickerSeed);
 		}
 		else {
-			stationRNG = new Random();
+			stationRNG = new CapturableRandom();
 		}
 
-		// Create the PrintWriters for storing passenger and train output.
-		setupOutputFiles();
+		String engine = config.get("engine");
+		if (engine.equals("event")) {
+			eventDriven = true;
+		}
+		else if (engine.equals("parallel")) {
+			parallel = true;
+		}
+		else if (engine.equals("actor")) {
+			actorDriven = true;
+		}
+		else if (!engine.equals("step")) {
+			throw new RuntimeException("Error: unknown engine: " + engine);
+		}
+		String fastForwardParam = config.get("fastForward");
+		if (!fastForwardParam.equals("true") && !fastForwardParam.equals("false")) {
+			throw new RuntimeException("Error: fastForward should be true or false, not " + fastForwardParam);
+		}
+		fastForward = fastForwardParam.equals("true");
+		if (fastForward) {
+			skippedTimes = new double[16];
+			skippedSpawns = new SpawnList();
+			skippedSpawnSteps = new int[16];
+			skippedOrder = new int[16];
+		}
 
-		// Populate the track with stations and place the trains at their starting station.
+		// Populate the track with stations, create the OutputSink for storing
+		// passenger and train output, and place the trains at their starting station.
+		network = loadNetwork(config);
+		destinationSampler = new DestinationSampler(network);
+		if (network.getNumLines() > 1) {
+			routes = new RouteTable(network);
+		}
 		setupTrack();
+		setupOutputFiles();
 		setupTrains();
 
-		// Write the headers for the output files
-		writeTimesHeader();
-		writeManifestHeader();
-
-		System.err.println("[DEBUG] the track looks like: " + track);
-		System.err.println("[DEBUG] the trains List looks like: " + trains);
-		getStations().forEach(
-			(station) -> {
-				System.err.println("\tStation " + station + ": " + (station.isOccupied() ? "occupied" : "unoccupied"));
-			}
-		);
+		if (Log.isEnabled(LogLevel.DEBUG)) {
+			Log.debug("the track looks like: " + track);
+			Log.debug("the trains List looks like: " + trains);
+			logStations(LogLevel.DEBUG);
+		}
 
 		//
 		// Set up the clock
@@ -127,9 +411,87 @@ public class SubwaySim {
 
 		numSteps = 0;
 		numPassengers = 0;
+		nextCheckTime = Double.POSITIVE_INFINITY;
 
 		// Set when the first Passenger spawns at each Station
 		initFirstPassengers();
+
+		// Pick up where an earlier run (or a warm-up) left off
+		if (state != null) {
+			try {
+				readState(new DataInputStream(new ByteArrayInputStream(state)), reseed);
+			}
+			catch (IOException e) {
+				throw new RuntimeException("Error: problem reading saved state: " + e);
+			}
+		}
+		else if (config.containsKey("restore")) {
+			restoreCheckpoint(new File(config.get("restore")));
+		}
+
+		if (eventDriven) {
+			initScheduler();
+		}
+		else if (parallel) {
+			initWorkers();
+		}
+		else if (actorDriven) {
+			initActors();
+		}
+
+		initMetrics(fileBaseName);
+	}
+
+	/**
+	 * Start counting metrics, and show them through JMX and/or HTTP, if the config's metrics parameter says to.
+	 * @param name the name to show them under
+	 * @throws RuntimeException if the metrics parameter has something other than off, jmx or http in it
+	 */
+	private void initMetrics(String name) throws RuntimeException {
+		List<String> outlets = config.getParamList("metrics");
+		boolean jmx = outlets.contains("jmx");
+		boolean http = outlets.contains("http");
+		for (String outlet : outlets) {
+			if (!outlet.equals("off") && !outlet.equals("jmx") && !outlet.equals("http")) {
+				throw new RuntimeException("Error: unknown metrics outlet: " + outlet);
+			}
+		}
+		if (!jmx && !http) {
+			return;
+		}
+
+		metrics = new SimMetrics(name, stations, trains, numSteps, t);
+		for (Station station : stations) {
+			station.setMetrics(metrics);
+		}
+		for (Train train : trains) {
+			train.setMetrics(metrics);
+		}
+		// Carry on without them if they can't be shown; the run matters more
+		if (jmx) {
+			try {
+				metrics.registerMBean();
+			}
+			catch (JMException e) {
+				System.err.println("[ERROR] couldn't register metrics with JMX: " + e);
+			}
+		}
+		if (http) {
+			try {
+				MetricsServer.add(metrics, config.getInt("metricsPort"));
+			}
+			catch (IOException e) {
+				System.err.println("[ERROR] couldn't start the metrics server: " + e);
+			}
+		}
+	}
+
+	/**
+	 * @param dir a directory
+	 * @return the directory, ending in a slash
+	 */
+	private static String withSlash(String dir) {
+		return dir.endsWith("/") ? dir : dir + "/";
 	}
 
 	/**
@@ -139,31 +501,62 @@ public class SubwaySim {
 		// Ensure the output directory exists
 		File fOutDir = new File(outDir);
 		if (!fOutDir.exists()) {
-			System.err.println("[INFO] Creating " + fOutDir + " directory for output.");
-			fOutDir.mkdir();
+			Log.info("Creating " + fOutDir + " directory for output.");
+			fOutDir.mkdirs();
 		}
 
-		File passengerFile = new File(outFileBase + PASSENGERSUFFIX);
+		// The sinks store Stations by id, so they need the names in id order
+		String[] stationNames = new String[stations.size()];
+		for (Station station : stations) {
+			stationNames[station.getId()] = station.getName();
+		}
+
+		// The output files are written by consumers of an event stream, each on a thread of its own
+		List<EventConsumer> consumers = new ArrayList<EventConsumer>();
+		for (String outputFormat : config.getParamList("outputFormat")) {
+			if (outputFormat.equals("csv")) {
+				Log.info("Writing passenger data to: " + outFileBase + CsvOutputSink.PASSENGERSUFFIX);
+				consumers.add(new SinkConsumer(new CsvOutputSink(outFileBase, Arrays.asList(stationNames))));
+				Log.info("Writing train data files to directory: " + outFileBase);
+			}
+			else if (outputFormat.equals("binary")) {
+				Log.info("Writing binary passenger and train data to: " + outFileBase + BinaryOutputSink.PASSENGERSUFFIX + " and " + BinaryOutputSink.TRAINSUFFIX);
+				consumers.add(new SinkConsumer(new BinaryOutputSink(outFileBase, Arrays.asList(stationNames))));
+			}
+			else if (outputFormat.equals("gnuplot")) {
+				Log.info("Writing gnuplot train data and script to: " + outFileBase + GnuplotExporter.DATASUFFIX + " and " + GnuplotExporter.SCRIPTSUFFIX);
+				consumers.add(new GnuplotExporter(outFileBase, config.getInt("trainCapacity")));
+			}
+			else if (!outputFormat.equals("none")) {
+				throw new RuntimeException("Error: unknown outputFormat: " + outputFormat);
+			}
+		}
+		OutputSink rawSink = null;
+		if (consumers.isEmpty()) {
+			Log.info("Not writing passenger or train data; only the statistics will be logged.");
+		}
+		else {
+			rawSink = new EventStreamSink(config.getInt("eventBufferSize"), consumers);
+		}
 
-		System.err.println("[INFO] Writing passenger data to: " + passengerFile);
-		passengerWriter = new PrintWriter(passengerFile);
-		System.err.println("[INFO] Writing train data files to directory: " + outFileBase);
+		// The statistics see every record on the sim's thread, since the stop conditions read them every time step
+		stats = new SimStats(Arrays.asList(stationNames), config.getInt("trainCapacity"));
+		outputSink = new StatsOutputSink(stats, rawSink);
 	}
 
 	/**
-	 * Close the output PrintWriters.
+	 * Flush and close the output files, waiting for them to be written, and stop showing metrics.
+	 * @throws RuntimeException if any of the output couldn't be written
 	 */
-	public void closeOutputWriters() {
-		if (passengerWriter != null) {
-			passengerWriter.close();
+	public void closeOutputWriters() throws RuntimeException {
+		try {
+			if (outputSink != null) {
+				outputSink.close();
+			}
 		}
-		//
-		// Close each Train's PrintWriter
-		//
-		for (Train t : trains) {
-			PrintWriter tw = t.getTrainWriter();
-			if (tw != null) {
-				tw.close();
+		finally {
+			if (metrics != null) {
+				metrics.unregister();
 			}
 		}
 	}
@@ -175,111 +568,344 @@ public class SubwaySim {
 		//
 		// Set when the first Passenger spawns at each Station
 		//
-		for (Station station : stationMap.values()) {
+		for (Station station : stations) {
 			station.drawNextTime(t);
-			System.err.println("[DEBUG] " + station + " has first arrival time at: " + station.getNextTime() + " seconds");
+			if (Log.isEnabled(LogLevel.DEBUG)) {
+				Log.debug(station + " has first arrival time at: " + station.getNextTime() + " seconds");
+			}
 		}
 	}
 
 	/**
-	 * Set up the track with Stations from the config file.
+	 * Schedule each Station's first Passenger spawn and each Train's first wake-up.
 	 */
-	private void setupTrack() throws RuntimeException {
-		track = new LinkedHashMap<Station, Destination>();
-		Set<String> keys = config.getKeySubset("station:"); // Get just the keys that represent subway stations
+	private void initScheduler() {
+		scheduler = new EventScheduler(dt);
+		for (int i = 0; i < stations.size(); i++) {
+			scheduler.scheduleAt(stations.get(i).getNextTime(), numSteps, EventType.SPAWN, i);
+		}
+		for (int i = 0; i < trains.size(); i++) {
+			scheduleTrain(i);
+		}
+	}
+
+	/**
+	 * Start the worker threads and set up the per chunk and per Train bookkeeping for the parallel engine.
+	 */
+	private void initWorkers() {
+		int numThreads = getNumStepThreads();
+		Log.info("Running each time step on " + numThreads + " threads.");
+		workers = new WorkerPool(numThreads);
 
-		stationMap = new HashMap<String, Station>();
+		spawnLists = new SpawnList[workers.getMaxChunks()];
+		for (int i = 0; i < spawnLists.length; i++) {
+			spawnLists[i] = new SpawnList();
+		}
+		allTrains = new int[trains.size()];
+		for (int i = 0; i < trains.size(); i++) {
+			allTrains[i] = i;
+		}
+		initLevels();
+	}
 
-		//
-		// Create a map of _all_ the stations. We need to do this
-		// before we actually create the track because we need all of the Station
-		// objects to be created.
-		//
-		for (String key : keys) {
-			String[] keyParts = key.split(":"); // Key format is station:name
-			String name = keyParts[1];
-			double timeBetweenSpawns = config.getDouble(key, 2);
-			int seed = config.getInt("passengerSpawnSeed");
+	/**
+	 * Create an actor for every Station and Train, and the clock to keep them
+	 * in step. Every actor gets a Tick on the first time step, and says when
+	 * it next has something to do, so the sim never has to look at a Station itself.
+	 */
+	private void initActors() {
+		int numThreads = getNumStepThreads();
+		Log.info("Running " + stations.size() + " Station and " + trains.size() + " Train actors on " + numThreads + " threads.");
+		clock = new VirtualClock(numThreads);
+		scheduler = new EventScheduler(dt);
 
-			stationMap.put(name, new Station(name, timeBetweenSpawns, seed));
+		stationActors = new StationActor[stations.size()];
+		tickedStations = new int[stations.size()];
+		for (int i = 0; i < stations.size(); i++) {
+			stationActors[i] = new StationActor(clock, i, stations.get(i));
+			scheduler.schedule(numSteps + 1, EventType.SPAWN, i);
+		}
+		trainActors = new TrainActor[trains.size()];
+		tickedTrains = new int[trains.size()];
+		trainTickSteps = new int[trains.size()];
+		trainStates = new TrainState[trains.size()];
+		trainNextTimes = new double[trains.size()];
+		dockedTrains = new TrainLists(stations.size(), trains.size());
+		blockedTrains = new TrainLists(stations.size(), trains.size());
+		for (int i = 0; i < trains.size(); i++) {
+			Train train = trains.get(i);
+			trainActors[i] = new TrainActor(clock, i, train, destinations[train.getLine()], stationActors);
+			trainTickSteps[i] = -1;
+			if (train.getState() != TrainState.TRAVELLING) {
+				dockedTrains.add(train.getLastVisited().getId(), i);
+			}
+			scheduler.schedule(numSteps + 1, EventType.TRAIN, i);
 		}
+		initLevels();
+	}
 
-		//
-		// Loop through the station keys again, this time building the track
-		// by grabbing instances of the Station class that match the destination name.
-		//
-		for (String key : keys) {
-			String[] keyParts = key.split(":"); // Key format is station:name
-			String name = keyParts[1];
-			String destName = config.get(key, 0); // Get the destination name
-			if (destName == null) {
-				throw new RuntimeException("Error: destination station not found for key: " + key);
+	/**
+	 * @return how many threads the parallel and actor engines use
+	 */
+	private int getNumStepThreads() {
+		int numThreads = config.getInt("stepThreads");
+		if (numThreads <= 0) {
+			numThreads = Runtime.getRuntime().availableProcessors();
+		}
+		return numThreads;
+	}
+
+	/**
+	 * Set up the bookkeeping for sorting the Trains into levels.
+	 */
+	private void initLevels() {
+		trainArrivals = new int[trains.size()];
+		trainOrder = new int[trains.size()];
+		levelStarts = new int[trains.size() + 2];
+		stationLevels = new int[stations.size()];
+		stationLevelSteps = new int[stations.size()];
+	}
+
+	/**
+	 * Load the network from the snapshot file given by the config's network
+	 * key, or else compile it from the config's station: and train: keys.
+	 * @param config the config
+	 * @return the network
+	 * @throws RuntimeException if the snapshot can't be read, or the network doesn't make sense
+	 */
+	public static NetworkModel loadNetwork(ConfigFile config) throws RuntimeException {
+		if (!config.containsKey("network")) {
+			return NetworkModel.fromConfig(config);
+		}
+		File snapshot = new File(config.get("network"));
+		Log.info("Loading network snapshot: " + snapshot);
+		try {
+			return NetworkModel.read(snapshot);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem reading network snapshot: " + e);
+		}
+	}
+
+	/**
+	 * Set up the track with Stations from the network.
+	 * With rngStreams shared, every Station's spawn RNG gets passengerSpawnSeed,
+	 * so they all draw the same sequence of times; with split, each Station gets
+	 * its own seed from a SplittableRandom seeded with passengerSpawnSeed.
+	 * @throws RuntimeException if rngStreams is neither
+	 */
+	private void setupTrack() throws RuntimeException {
+		int seed = config.getInt("passengerSpawnSeed");
+		int numStations = network.getNumStations();
+		int numLines = network.getNumLines();
+
+		String rngStreams = config.get("rngStreams");
+		SplittableRandom seeds = null;
+		if (rngStreams.equals("split")) {
+			seeds = (seed > 0) ? new SplittableRandom(seed) : new SplittableRandom();
+		}
+		else if (!rngStreams.equals("shared")) {
+			throw new RuntimeException("Error: unknown rngStreams: " + rngStreams);
+		}
+
+		String arrivalGenerator = config.get("arrivalGenerator");
+		if (!arrivalGenerator.equals("legacy") && !arrivalGenerator.equals("fast")) {
+			throw new RuntimeException("Error: unknown arrivalGenerator: " + arrivalGenerator);
+		}
+		// Stations with a demand profile spawn at a rate that changes over the day
+		DemandProfile profile = DemandProfile.fromConfig(config, network);
+		String profileMethod = config.get("demandProfileMethod");
+		if (!profileMethod.equals("inversion") && !profileMethod.equals("thinning")) {
+			throw new RuntimeException("Error: unknown demandProfileMethod: " + profileMethod);
+		}
+		if (seeds == null && seed <= 0 && (arrivalGenerator.equals("fast") || profile != null)) {
+			// Unlike java.util.Random, the other generators don't pick their own seeds
+			seeds = new SplittableRandom();
+		}
+
+		stations = new ArrayList<Station>(numStations);
+		for (int i = 0; i < numStations; i++) {
+			long stationSeed = (seeds != null) ? seeds.nextLong(1, Long.MAX_VALUE) : seed;
+			double timeBetweenSpawns = network.getTimeBetweenSpawns(i);
+			PiecewiseRate rates = (profile != null) ? profile.getRates(i, 1.0 / timeBetweenSpawns) : null;
+			ArrivalGenerator arrivals;
+			if (rates != null && profileMethod.equals("thinning")) {
+				arrivals = new ThinningArrivalGenerator(rates, stationSeed);
+			}
+			else if (rates != null) {
+				arrivals = new InversionArrivalGenerator(rates, stationSeed);
 			}
-			int travelTime = config.getInt(key, 1); // Get the travel time to that station, in seconds
-			if (travelTime == -1) {
-				throw new RuntimeException("Error: travel time not found for key: " + key);
+			else if (arrivalGenerator.equals("fast")) {
+				arrivals = new FastArrivalGenerator(timeBetweenSpawns, stationSeed);
 			}
+			else {
+				arrivals = new ArrivalTimeRNG(timeBetweenSpawns, stationSeed);
+			}
+			stations.add(new Station(network.getStationName(i), i, timeBetweenSpawns, arrivals, numLines));
+		}
 
-			/*
-			 * Grab both the `from` and `to` stations from our Map of all the stations along with the travel time.
-			 * We use these three things to insert a portion of the subway track.
-			 */
-			track.put(stationMap.get(name), new Destination(stationMap.get(destName), travelTime));
+		// Now that all the Stations exist, connect each one to the next on each line
+		destinations = new Destination[numLines][numStations];
+		for (int line = 0; line < numLines; line++) {
+			for (int i = 0; i < numStations; i++) {
+				if (network.isOnLine(line, i)) {
+					destinations[line][i] = new Destination(stations.get(network.getNextStation(line, i)), network.getTravelTime(line, i));
+				}
+			}
+		}
+		track = new LinkedHashMap<Station, Destination>();
+		for (int i = 0; i < numStations; i++) {
+			if (destinations[0][i] != null) {
+				track.put(stations.get(i), destinations[0][i]);
+			}
 		}
 	}
 
 	/**
-	 * Set up the Trains List from the config file, "placing" the Trains on the track.
+	 * Set up the Trains List from the network, "placing" the Trains on the track.
 	 */
-	private void setupTrains() throws RuntimeException {
+	private void setupTrains() {
 		trains = new ArrayList<Train>();
-		Set<String> keys = config.getKeySubset("train:"); // Get just the keys that represent the trains
+		trainSinks = new ArrayList<DeferredOutputSink>();
 		double boardTime = config.getDouble("boardTime");
 		double maxWaitTime = config.getDouble("trainWaitTime");
 		int capacity = config.getInt("trainCapacity");
+		int doors = config.getInt("doors");
+		double alightTime = config.getDouble("alightTime");
+		if (doors < 0) {
+			throw new RuntimeException("Error: doors can't be negative: " + doors);
+		}
+		// With doors, Passengers board in parallel, so the holding policy's estimate of boarding time goes down
+		DispatchPolicy dispatchPolicy = createDispatchPolicy((doors > 0) ? boardTime / doors : boardTime, maxWaitTime);
 
-		for (String key : keys) {
-			String[] keyParts = key.split(":"); // Key format is train:name
-			String name = keyParts[1];
+		for (int i = 0; i < network.getNumTrains(); i++) {
+			int start = network.getTrainStartStation(i);
+			int line = network.getTrainLine(i);
+			Station startStation = stations.get(start);
 
-			String startStationName = config.get(key);
-			if (startStationName == null) {
-				throw new RuntimeException("Error: start station not found for key: " + key);
+			// When the Trains run in parallel, each one holds on to its output until the end of the time step
+			OutputSink trainSink = outputSink;
+			if (parallel || actorDriven) {
+				DeferredOutputSink deferredSink = new DeferredOutputSink(outputSink);
+				trainSinks.add(deferredSink);
+				trainSink = deferredSink;
 			}
-			// Ensure that there isn't already a Train starting at that Station
-			if (trains.stream().anyMatch(train -> train.getLastVisited().getName().equals(startStationName))) {
-				throw new RuntimeException("Error: can't have multiple trains start at same station; error found on key: " + key);
-			}
-			Station startStation = stationMap.get(startStationName);
 
 			// Set up the train's initial station and destination
-			Train train;
-			try {
-				train = new Train(name, capacity, startStation, track.get(startStation), boardTime, maxWaitTime, passengerWriter, outFileBase);
-			}
-			catch (FileNotFoundException e) {
-				throw new RuntimeException("Error: problem creating Train output file: " + e);
+			Train train = new Train(network.getTrainName(i), capacity, startStation, destinations[line][start], boardTime, maxWaitTime, trainSink,
+				line, routes);
+			if (doors > 0) {
+				train.setDoors(doors, alightTime);
 			}
+			train.setDispatchPolicy(dispatchPolicy);
 			trains.add(train);
-			startStation.setOccupied(true);
+			if (!startStation.tryReserve(line, train.getId())) {
+				throw new RuntimeException("Error: train " + train.getName() + " can't start at " + startStation.getName() + "; it's already taken");
+			}
+		}
+	}
+
+	/**
+	 * Create the DispatchPolicy the config asks for, which all the Trains share.
+	 * @param boardTime how long it takes one Passenger to board, in seconds, counting all the doors
+	 * @param maxWaitTime the trainWaitTime, in seconds
+	 * @return the policy
+	 * @throws RuntimeException if there's no such policy
+	 */
+	private DispatchPolicy createDispatchPolicy(double boardTime, double maxWaitTime) throws RuntimeException {
+		String policy = config.get("dispatchPolicy");
+		if (policy.equals("fixed")) {
+			return new FixedDwell(maxWaitTime);
+		}
+		else if (policy.equals("full")) {
+			return new LeaveWhenFull(maxWaitTime);
+		}
+		else if (policy.equals("skip")) {
+			return new SkipStop(maxWaitTime);
+		}
+		else if (!policy.equals("holding")) {
+			throw new RuntimeException("Error: unknown dispatchPolicy: " + policy);
+		}
+
+		// Without a target headway, spread each line's Trains evenly over the time it takes to go around it
+		int numLines = network.getNumLines();
+		double[] targetHeadways = new double[numLines];
+		double targetHeadway = config.getDouble("targetHeadway");
+		for (int line = 0; line < numLines; line++) {
+			if (targetHeadway > 0) {
+				targetHeadways[line] = targetHeadway;
+				continue;
+			}
+			double loopTime = 0.0;
+			for (int station = 0; station < network.getNumStations(); station++) {
+				if (network.isOnLine(line, station)) {
+					loopTime += network.getTravelTime(line, station) + maxWaitTime;
+				}
+			}
+			int numTrains = 0;
+			for (int i = 0; i < network.getNumTrains(); i++) {
+				if (network.getTrainLine(i) == line) {
+					numTrains++;
+				}
+			}
+			targetHeadways[line] = loopTime / numTrains;
+			Log.info("target headway on line " + network.getLineName(line) + " is " + targetHeadways[line] + " seconds");
 		}
+		return new HeadwayHolding(maxWaitTime, boardTime, targetHeadways);
 	}
 
 	/**
-	 * Load parameters from the config file.
+	 * Load parameters from the config file, filling in defaults for any that are missing.
 	 * @param filename the config filename
+	 * @param overrides config keys mapped to the (space separated) parameters that replace the config file's
+	 * @return the loaded config
+	 * @throws FileNotFoundException if the config file can't be opened
 	 */
-	private void loadConfig(String filename) throws FileNotFoundException {
+	public static ConfigFile loadConfig(String filename, Map<String, String> overrides) throws FileNotFoundException {
         // Load and parse the config file.
-        config = new ConfigFile(filename);
+        ConfigFile config = new ConfigFile(filename);
+
+		// Replace (or add) any overridden parameters before filling in the defaults
+		for (Map.Entry<String, String> override : overrides.entrySet()) {
+			List<String> params = Arrays.asList(override.getValue().trim().split("\\s+"));
+			if (config.containsKey(override.getKey())) {
+				config.getParamList(override.getKey()).clear();
+				config.getParamList(override.getKey()).addAll(params);
+			}
+			else {
+				config.setDefault(override.getKey(), new ArrayList<String>(params));
+			}
+		}
 
         // Set default values for any missing keys.
 		config.setDefault("boardTime", 10.0); // (seconds)
-		config.setDefault("timeStep", config.getDouble("boardTime")); // The time step = amount of time to do smallest thing (board the train)
+		config.setDefault("timeStep", config.getDouble("boardTime")); // The time step = amount of time to do smallest thing (board the train); with doors, it can be anything
+		config.setDefault("doors", 0); // How many doors Passengers board and alight through at once; 0 to board one Passenger per time step
+		config.setDefault("alightTime", config.getDouble("boardTime")); // How long it takes one Passenger to get off through one door, in seconds
 		config.setDefault("trainWaitTime", 120.0); // How long a train will wait for people if no one is boarding
 		config.setDefault("trainCapacity", 160);
 		config.setDefault("passengerSpawnSeed", -1); // Use the default seed (probably current time)
 		config.setDefault("stationPickerSeed", -1); // Use the default seed (probably current time)
+		config.setDefault("arrivalGenerator", "legacy"); // "legacy" for java.util.Random's numbers, or "fast" for xoshiro256** with a ziggurat
+		config.setDefault("demandProfilePeriod", 60*60*24.0); // How long a demand profile lasts before it repeats, in seconds
+		config.setDefault("demandProfileMethod", "inversion"); // How Stations with a demand profile draw spawns: "inversion" or "thinning"
+		config.setDefault("rngStreams", "shared"); // "shared" gives every Station passengerSpawnSeed; "split" gives each its own seed drawn from it
+		config.setDefault("dispatchPolicy", "fixed"); // When Trains leave: "fixed" after trainWaitTime, "holding" to even out headways, "full" early when full, "skip" straight away from Stations with nobody getting on or off
+		config.setDefault("targetHeadway", 0.0); // The time the holding dispatchPolicy keeps between Trains, in seconds; 0 to spread each line's Trains evenly
+		config.setDefault("fastForward", "true"); // Whether the step engine skips over time steps where no Train has anything to do
+		config.setDefault("metrics", "off"); // Where to show live metrics: "off", or any of "jmx" and "http"
+		config.setDefault("metricsPort", 9464); // The localhost port the http metrics are served on
+		config.setDefault("engine", "step"); // "step" ticks every time step, "event" skips ahead between events, "parallel" splits each time step between threads, "actor" makes each Station and Train an actor
+		config.setDefault("stepThreads", 0); // How many threads the parallel and actor engines use; 0 for one per processor
+		config.setDefault("maxTime", 60*60*24.0); // Stop the run after this many seconds of sim time...
+		config.setDefault("maxPassengers", 6000); // ... or once this many Passengers have reached their destinations...
+		config.setDefault("steadyStateEpsilon", 0.0); // ... or once the mean trip time changes by less than this fraction over a window; 0 to never
+		config.setDefault("steadyStateWindow", 3600.0); // The length of that window, in sim seconds
+		config.setDefault("maxWallTime", 0.0); // ... or after this many real seconds; 0 for no limit
+		config.setDefault("checkpointInterval", 0.0); // How often SubwaySimRunner writes a checkpoint, in sim seconds; 0 for never
+		config.setDefault("logLevel", "INFO"); // One of TRACE, DEBUG, INFO, or OFF
+		config.setDefault("outputFormat", "csv"); // Any of "csv", "binary" for BinaryOutputSink's compact files, and "gnuplot" for Train graphs; or "none" for just the statistics
+		config.setDefault("eventBufferSize", 65536); // How many events can wait for the output files to be written; a power of two
 
 		/*
         config.setDefault("itemTime", 0.1);
@@ -292,6 +918,21 @@ public class SubwaySim {
         config.setDefault("arrivalTimeSeed", -1);
         config.setDefault("cartSizeSeed", -1);
 		*/
+		return config;
+	}
+
+	/**
+	 * Set the (JVM wide) log level from a config's logLevel parameter.
+	 * @param config the config
+	 * @throws RuntimeException if the log level isn't one of LogLevel's
+	 */
+	public static void applyLogLevel(ConfigFile config) throws RuntimeException {
+		try {
+			Log.setLevel(LogLevel.valueOf(config.get("logLevel").toUpperCase()));
+		}
+		catch (IllegalArgumentException e) {
+			throw new RuntimeException("Error: unknown logLevel: " + config.get("logLevel"));
+		}
 	}
 
 
@@ -299,76 +940,654 @@ public class SubwaySim {
 	 * This method is used as the time step system of the simulation. it updates the simulation.
 	 */
 	public void step() {
-		t += dt;
-		numSteps++;
-
-		// Possibly add Passengers waiting at stations
-		for (Station station : stationMap.values()) {
-			// System.err.println("[DEBUG] Queue for " + station + ":");
-			// System.err.println(station.getStationQueue());
-			double tnext = station.getNextTime();
-
-			// Make sure this Passenger's start Station is different than its
-			// desired destination Station.
-			while (tnext < t) {
-
-				System.err.println("[DEBUG] SPAWNED A PERSON AT STATION: " + station);
-				Station randomDest = drawRandomStation();
+		if (eventDriven) {
+			stepToNextEvent();
+		}
+		else if (parallel) {
+			stepInParallel();
+		}
+		else if (actorDriven) {
+			stepActors();
+		}
+		else {
+			stepEveryStation();
+		}
+		if (metrics != null) {
+			metrics.stepped(numSteps, t);
+		}
+	}
 
-				// Ensure that the Passenger's destination is not the same as its spawn location
-				while (randomDest.getName().equals(station.getName())) {
-					randomDest = drawRandomStation();
-				}
+	/**
+	 * Do one time step by going through every Station and Train, after
+	 * skipping any idle time steps before it if fastForward is on.
+	 */
+	private void stepEveryStation() {
+		if (fastForward && !Log.isEnabled(LogLevel.TRACE) && skipIdleSteps()) {
+			return;
+		}
+
+		t += dt;
+		numSteps++;
+
+		// Possibly add Passengers waiting at stations
+		for (Station station : stations) {
+			// System.err.println("[DEBUG] Queue for " + station + ":");
+			// System.err.println(station.getStationQueue());
+			spawnPassengers(station);
+		}
+
+		if (Log.isEnabled(LogLevel.TRACE)) {
+			Log.trace("here are Station status' for t = " + t + " after adding people.");
+			logStations(LogLevel.TRACE);
+		}
 
-				// Add the Passenger to this Station's queue
-				station.enqueuePassenger(tnext, randomDest);
-				// Draw another spawn time for this Station
-				tnext = station.drawNextTime(tnext);
+		for (Train train : trains) {
+			runTrain(train);
+		}
+	}
+
+	/**
+	 * Skip over the time steps before the next one where a Train could have
+	 * something to do, only spawning the Passengers that arrive on them. A
+	 * Station's spawns all get drawn in one go, then they're put in the queues
+	 * in time step order, and in Station order within each time step, so the
+	 * destinations picked are the same as when ticking through every step.
+	 * Like the event driven step, the clock still adds up dt one step at a
+	 * time so the times are identical.
+	 * @return true if this used up the whole step, because it stopped at nextCheckTime
+	 * or MAXSKIPPEDSTEPS; false if the next time step still needs doing
+	 */
+	private boolean skipIdleSteps() {
+		long busyStep = nextBusyStep();
+		int numSkipped = 0;
+		double time = t;
+		while (numSteps + numSkipped + 1 < busyStep && time < nextCheckTime && numSkipped < MAXSKIPPEDSTEPS) {
+			time += dt;
+			if (numSkipped == skippedTimes.length) {
+				skippedTimes = Arrays.copyOf(skippedTimes, 2 * numSkipped);
 			}
+			skippedTimes[numSkipped++] = time;
+		}
+		if (numSkipped == 0) {
+			return false;
 		}
 
-		System.err.println("[DEBUG] here are Station status' for t = " + t + " after adding people.");
-		getStations().forEach(
-			(station) -> {
-				System.err.println("\tStation " + station + ": " + (station.isOccupied() ? "occupied" : "unoccupied") + "; has " + station.getStationQueue().size() + " people.");
+		// Draw each Station's spawns, noting the first skipped step whose time is after each one
+		skippedSpawns.size = 0;
+		for (int i = 0; i < stations.size(); i++) {
+			Station station = stations.get(i);
+			for (double tnext = station.getNextTime(); tnext < time; tnext = station.drawNextTime(tnext)) {
+				if (skippedSpawns.size == skippedSpawnSteps.length) {
+					skippedSpawnSteps = Arrays.copyOf(skippedSpawnSteps, 2 * skippedSpawns.size);
+				}
+				skippedSpawnSteps[skippedSpawns.size] = firstStepAfter(tnext, numSkipped);
+				skippedSpawns.add(i, tnext);
 			}
-		);
+		}
+
+		// Counting sort them by step; each step's are already in Station order
+		if (skippedStepCounts == null || skippedStepCounts.length < numSkipped + 1) {
+			skippedStepCounts = new int[Math.max(numSkipped + 1, 2 * skippedTimes.length)];
+		}
+		Arrays.fill(skippedStepCounts, 0, numSkipped + 1, 0);
+		for (int k = 0; k < skippedSpawns.size; k++) {
+			skippedStepCounts[skippedSpawnSteps[k] + 1]++;
+		}
+		for (int step = 1; step <= numSkipped; step++) {
+			skippedStepCounts[step] += skippedStepCounts[step - 1];
+		}
+		if (skippedOrder.length < skippedSpawns.size) {
+			skippedOrder = new int[skippedSpawnSteps.length];
+		}
+		for (int k = 0; k < skippedSpawns.size; k++) {
+			skippedOrder[skippedStepCounts[skippedSpawnSteps[k]]++] = k;
+		}
+		for (int j = 0; j < skippedSpawns.size; j++) {
+			int k = skippedOrder[j];
+			enqueueSpawn(stations.get(skippedSpawns.stations[k]), skippedSpawns.times[k]);
+		}
+
+		t = time;
+		numSteps += numSkipped;
+		return numSteps + 1 < busyStep;
+	}
 
+	/**
+	 * @return the earliest time step on which any Train could do something, counting
+	 * Passengers spawning where Trains are boarding; never before the next time step
+	 */
+	private long nextBusyStep() {
+		long busyStep = Long.MAX_VALUE;
 		for (Train train : trains) {
-			/*
-			 * If any Passengers got off, Train.run(...) will return them in a
-			 * PassengerList.
-			 */
-			PassengerList disembarked = train.run(t, track);
-			// Count the passengers that got off
-			if (disembarked != null) {
-				numPassengers += disembarked.size();
+			double next = train.getNextEventTime(t);
+			if (train.getState() == TrainState.BOARDING) {
+				next = Math.min(next, train.getLastVisited().getNextTime());
+			}
+			// Conservatively, like the EventScheduler: maybe a step early, never late
+			busyStep = Math.min(busyStep, Math.max((long)Math.ceil(next / dt) - 1, numSteps + 1));
+			if (busyStep == numSteps + 1) {
+				break;
+			}
+		}
+		return busyStep;
+	}
+
+	/**
+	 * @param time a spawn time, before the last skipped step's time
+	 * @param numSkipped the number of skipped steps
+	 * @return the index in skippedTimes of the first skipped step whose time is after it
+	 */
+	private int firstStepAfter(double time, int numSkipped) {
+		int low = 0;
+		int high = numSkipped - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (time < skippedTimes[mid]) {
+				high = mid;
+			}
+			else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Do one time step with the Stations and Trains split up between the worker threads.
+	 * The results are the same as step()'s, whatever the number of threads:
+	 * spawn times are drawn for chunks of Stations at the same time, but
+	 * destinations are drawn afterwards in Station order, since they share one
+	 * RNG; and Trains that touch the same Station run in List order (see
+	 * levelTrains(...)), with their output flushed in List order at the end.
+	 */
+	private void stepInParallel() {
+		t += dt;
+		numSteps++;
+
+		for (SpawnList spawns : spawnLists) {
+			spawns.size = 0;
+		}
+		workers.forEachChunk(stations.size(), (chunk, from, to) -> {
+			SpawnList spawns = spawnLists[chunk];
+			for (int i = from; i < to; i++) {
+				Station station = stations.get(i);
+				for (double tnext = station.getNextTime(); tnext < t; tnext = station.drawNextTime(tnext)) {
+					spawns.add(i, tnext);
+				}
+			}
+		});
+		for (SpawnList spawns : spawnLists) {
+			for (int i = 0; i < spawns.size; i++) {
+				enqueueSpawn(stations.get(spawns.stations[i]), spawns.times[i]);
+			}
+		}
+
+		if (Log.isEnabled(LogLevel.TRACE)) {
+			Log.trace("here are Station status' for t = " + t + " after adding people.");
+			logStations(LogLevel.TRACE);
+		}
+
+		int numLevels = levelTrains(allTrains, trains.size());
+		for (int level = 0; level < numLevels; level++) {
+			int start = levelStarts[level];
+			workers.forEachChunk(levelStarts[level + 1] - start, (chunk, from, to) -> {
+				for (int k = start + from; k < start + to; k++) {
+					Train train = trains.get(trainOrder[k]);
+					PassengerBuffer disembarked = train.run(t, destinations[train.getLine()]);
+					trainArrivals[trainOrder[k]] = (disembarked == null) ? 0 : disembarked.size();
+				}
+			});
+		}
+
+		collectTrainOutput();
+	}
+
+	/**
+	 * Skip ahead to the next time step where an actor has work to do, and
+	 * send Ticks to just those actors, with the same results as step().
+	 * Like the event driven step, the Stations and Trains say when they next
+	 * have something to do, and the clock still adds up dt one step at a time.
+	 * The Stations that have someone spawning all get their Ticks at once, then
+	 * the Passengers' destinations are picked in Station order and sent back to
+	 * them. Then the Trains that are due, and any Train whose Station a due
+	 * Train could change, get their Ticks one level (see levelTrains(...)) at
+	 * a time. Ticking a Train that turns out to have nothing to do is harmless,
+	 * since step() runs every Train every time step.
+	 */
+	private void stepActors() {
+		long nextStep = scheduler.peekStep();
+		do {
+			t += dt;
+			numSteps++;
+		} while (numSteps < nextStep && t < nextCheckTime);
+
+		if (numSteps < nextStep) {
+			// We hit the end time before anything else happened
+			return;
+		}
+
+		// Spawns come out of the queue first, in Station order, then the Train wake-ups
+		Tick tick = new Tick(t);
+		numTickedStations = 0;
+		numTickedTrains = 0;
+		clock.beginPhase();
+		while (!scheduler.isEmpty() && scheduler.peekStep() == numSteps) {
+			Event event = scheduler.poll();
+			if (event.getType() == EventType.SPAWN) {
+				stationActors[event.getIndex()].send(tick);
+				tickedStations[numTickedStations++] = event.getIndex();
+			}
+			else {
+				tickTrain(event.getIndex());
+			}
+		}
+		clock.awaitQuiet(reply -> scheduler.scheduleAt(reply.getNextTime(), numSteps, EventType.SPAWN, reply.getIndex()));
+
+		// The Passengers go in with the first level of Trains, since they're ahead of its Visits in the Stations' mailboxes
+		clock.beginPhase();
+		for (int k = 0; k < numTickedStations; k++) {
+			StationActor actor = stationActors[tickedStations[k]];
+			if (actor.getNumSpawned() == 0) {
+				continue;
+			}
+			Station station = actor.getStation();
+			Enqueue spawned = new Enqueue();
+			for (int i = 0; i < actor.getNumSpawned(); i++) {
+				double spawnTime = actor.getSpawnTime(i);
+				int dest = drawDestination(station, spawnTime);
+				spawned.add(getFirstLine(station, dest), spawnTime, -1, station.getId(), dest);
+			}
+			actor.send(spawned);
+			// Any Train boarding at this Station has someone new to pick up
+			tickBoardingTrains(station.getId());
+		}
+
+		if (Log.isEnabled(LogLevel.TRACE)) {
+			clock.awaitQuiet(reply -> { });
+			Log.trace("here are Station status' for t = " + t + " after adding people.");
+			logStations(LogLevel.TRACE);
+			clock.beginPhase();
+		}
+
+		/*
+		 * A Train arriving at a Station can leave Passengers there to transfer
+		 * to the Trains boarding there, and a Train leaving one lets the Trains
+		 * waiting for its platform go; those Trains then do the same in turn.
+		 */
+		for (int k = 0; k < numTickedTrains; k++) {
+			Train train = trains.get(tickedTrains[k]);
+			if (train.getState() == TrainState.TRAVELLING) {
+				tickBoardingTrains(train.getCurrentDestination().getDestStation().getId());
+			}
+			else if (train.getState() == TrainState.BOARDING || train.isDoneDisembarking(t)) {
+				int here = train.getLastVisited().getId();
+				tickBoardingTrains(here);
+				for (int j = blockedTrains.getFirst(here); j != TrainLists.NONE; j = blockedTrains.getNext(j)) {
+					if (trains.get(j).getLine() == train.getLine()) {
+						tickTrain(j);
+					}
+				}
+			}
+		}
+
+		Arrays.sort(tickedTrains, 0, numTickedTrains);
+		for (int k = 0; k < numTickedTrains; k++) {
+			trainStates[tickedTrains[k]] = trains.get(tickedTrains[k]).getState();
+		}
+		int numLevels = levelTrains(tickedTrains, numTickedTrains);
+		int level = 0;
+		do {
+			if (level > 0) {
+				clock.beginPhase();
+			}
+			for (int k = levelStarts[level]; k < levelStarts[level + 1]; k++) {
+				trainActors[trainOrder[k]].send(tick);
+			}
+			clock.awaitQuiet(reply -> {
+				trainArrivals[reply.getIndex()] = reply.getCount();
+				trainNextTimes[reply.getIndex()] = reply.getNextTime();
+			});
+			level++;
+		} while (level < numLevels);
+
+		for (int k = 0; k < numTickedTrains; k++) {
+			afterTick(tickedTrains[k]);
+		}
+	}
+
+	/**
+	 * Tick a Train on this time step, if it isn't being already.
+	 * @param i the index of the Train
+	 */
+	private void tickTrain(int i) {
+		if (trainTickSteps[i] != numSteps) {
+			trainTickSteps[i] = numSteps;
+			tickedTrains[numTickedTrains++] = i;
+		}
+	}
+
+	/**
+	 * Tick every Train boarding at a Station on this time step.
+	 * @param station the Station's id
+	 */
+	private void tickBoardingTrains(int station) {
+		for (int j = dockedTrains.getFirst(station); j != TrainLists.NONE; j = dockedTrains.getNext(j)) {
+			if (trains.get(j).getState() == TrainState.BOARDING) {
+				tickTrain(j);
+			}
+		}
+	}
+
+	/**
+	 * Once a Train has been ticked: count the Passengers who got off it and
+	 * flush its output, wake up anyone who needs to look at what it did on the
+	 * next time step, and schedule its next Tick. The ticked Trains are done
+	 * in List order, so the output is in the same order as step()'s.
+	 * @param i the index of the Train
+	 */
+	private void afterTick(int i) {
+		Train train = trains.get(i);
+		numPassengers += trainArrivals[i];
+		trainSinks.get(i).flush();
+
+		int here = train.getLastVisited().getId();
+		if (trainStates[i] == TrainState.BOARDING && train.getState() == TrainState.TRAVELLING) {
+			// Anyone on our line waiting for the platform we just left, who tried before we left, tries again
+			for (int j = blockedTrains.getFirst(here); j != TrainLists.NONE; j = blockedTrains.getNext(j)) {
+				if (trains.get(j).getLine() == train.getLine()) {
+					scheduler.schedule(numSteps + 1, EventType.TRAIN, j);
+				}
+			}
+		}
+		else if (trainStates[i] == TrainState.TRAVELLING && train.getState() != TrainState.TRAVELLING && train.getNumTransferred() > 0) {
+			// Anyone who boarded here before we arrived has someone transferring to pick up
+			for (int j = dockedTrains.getFirst(here); j != TrainLists.NONE; j = dockedTrains.getNext(j)) {
+				if (trains.get(j).getState() == TrainState.BOARDING) {
+					scheduler.schedule(numSteps + 1, EventType.TRAIN, j);
+				}
+			}
+		}
+
+		if (train.getState() == TrainState.TRAVELLING) {
+			dockedTrains.remove(i);
+		}
+		else {
+			dockedTrains.add(here, i);
+		}
+		if (trainNextTimes[i] == Double.POSITIVE_INFINITY) {
+			// Waiting for the next Station's platform to be vacated
+			blockedTrains.add(train.getCurrentDestination().getDestStation().getId(), i);
+		}
+		else {
+			blockedTrains.remove(i);
+			scheduler.scheduleAt(trainNextTimes[i], numSteps, EventType.TRAIN, i);
+		}
+	}
+
+	/**
+	 * Count the Passengers who got off each Train this time step, and flush
+	 * the Trains' output, in Train order.
+	 */
+	private void collectTrainOutput() {
+		for (int i = 0; i < trains.size(); i++) {
+			numPassengers += trainArrivals[i];
+			trainSinks.get(i).flush();
+		}
+	}
+
+	/**
+	 * Sort the Trains into levels, so that Trains on the same level can run
+	 * at the same time, and running the levels in order gives the same results
+	 * as running the Trains one at a time in List order.
+	 * A Train touches the Station it's travelling to, and the Station it's
+	 * boarding at, or starting to board at once it's done disembarking (the
+	 * dispatch policy and the doors model look at the queue right away); it
+	 * goes on the level after the highest level of any earlier Train that
+	 * touches the same Stations. Usually nearly every Train ends up on the
+	 * first level.
+	 * Fills in trainOrder and levelStarts.
+	 * @param candidates the indices of the Trains to sort, in List order
+	 * @param numCandidates how many of them there are
+	 * @return the number of levels
+	 */
+	private int levelTrains(int[] candidates, int numCandidates) {
+		int numLevels = 0;
+		Arrays.fill(levelStarts, 0, numCandidates + 2, 0);
+		for (int k = 0; k < numCandidates; k++) {
+			int i = candidates[k];
+			Train train = trains.get(i);
+			int here = train.getLastVisited().getId();
+			int next = train.getCurrentDestination().getDestStation().getId();
+			boolean touchesHere = train.getState() == TrainState.BOARDING || train.isDoneDisembarking(t);
+			boolean touchesNext = train.getState() != TrainState.DISEMBARKING;
+
+			int level = 1;
+			if (touchesHere) {
+				level = Math.max(level, stationLevel(here) + 1);
+			}
+			if (touchesNext) {
+				level = Math.max(level, stationLevel(next) + 1);
+			}
+			if (touchesHere) {
+				setStationLevel(here, level);
+			}
+			if (touchesNext) {
+				setStationLevel(next, level);
+			}
+
+			// Stash the level here until they're all known
+			trainArrivals[i] = level;
+			levelStarts[level + 1]++;
+			numLevels = Math.max(numLevels, level);
+		}
+
+		// Count the Trains before each level, then slot each Train in; slotting
+		// moves each level's start along to the next level's, which leaves
+		// levelStarts[k] as the start of the k-th level counting from 0
+		for (int level = 1; level <= numLevels + 1; level++) {
+			levelStarts[level] += levelStarts[level - 1];
+		}
+		for (int k = 0; k < numCandidates; k++) {
+			trainOrder[levelStarts[trainArrivals[candidates[k]]]++] = candidates[k];
+		}
+		return numLevels;
+	}
+
+	/**
+	 * @return the highest level of a Train touching a Station this time step, or 0 if none has
+	 */
+	private int stationLevel(int station) {
+		return (stationLevelSteps[station] == numSteps) ? stationLevels[station] : 0;
+	}
+
+	private void setStationLevel(int station, int level) {
+		stationLevels[station] = level;
+		stationLevelSteps[station] = numSteps;
+	}
+
+	/**
+	 * Skip ahead to the next time step that has an Event on it, and handle
+	 * everything that happens on that time step.
+	 * The clock still advances by dt one time step at a time so that the times
+	 * are identical to the fixed time step loop's; only the polling of idle
+	 * Stations and Trains is skipped.
+	 */
+	private void stepToNextEvent() {
+		long nextStep = scheduler.peekStep();
+		do {
+			t += dt;
+			numSteps++;
+		} while (numSteps < nextStep && t < nextCheckTime);
+
+		if (numSteps < nextStep) {
+			// We hit the end time before anything else happened
+			return;
+		}
+
+		// Spawns come out of the queue first, in Station order, then the Train wake-ups
+		boolean[] due = new boolean[trains.size()];
+		while (!scheduler.isEmpty() && scheduler.peekStep() == numSteps) {
+			Event event = scheduler.poll();
+			if (event.getType() == EventType.SPAWN) {
+				Station station = stations.get(event.getIndex());
+				if (spawnPassengers(station) > 0) {
+					// Any Train boarding at this Station has someone new to pick up
+					for (int i = 0; i < trains.size(); i++) {
+						Train train = trains.get(i);
+						if (train.getState() == TrainState.BOARDING && train.getLastVisited() == station) {
+							due[i] = true;
+						}
+					}
+				}
+				scheduler.scheduleAt(station.getNextTime(), numSteps, EventType.SPAWN, event.getIndex());
+			}
+			else {
+				due[event.getIndex()] = true;
+			}
+		}
+
+		for (int i = 0; i < trains.size(); i++) {
+			if (!due[i]) {
+				continue;
+			}
+			Train train = trains.get(i);
+			TrainState previousState = train.getState();
+			runTrain(train);
+
+			if (previousState == TrainState.BOARDING && train.getState() == TrainState.TRAVELLING) {
+				/*
+				 * We just left a Station, so wake up anyone on our line who
+				 * was waiting for it to be vacated. Trains after us in the List
+				 * get to try on this time step, the rest on the next one.
+				 */
+				Station vacated = train.getLastVisited();
+				for (int j = 0; j < trains.size(); j++) {
+					Train other = trains.get(j);
+					if (other.getState() == TrainState.BOARDING && other.getLine() == train.getLine()
+							&& other.getCurrentDestination().getDestStation() == vacated) {
+						wakeTrain(i, j, due);
+					}
+				}
 			}
+			else if (previousState == TrainState.TRAVELLING && train.getNumTransferred() > 0) {
+				// Anyone boarding here may have someone transferring to pick up
+				Station arrived = train.getLastVisited();
+				for (int j = 0; j < trains.size(); j++) {
+					Train other = trains.get(j);
+					if (other.getState() == TrainState.BOARDING && other.getLastVisited() == arrived) {
+						wakeTrain(i, j, due);
+					}
+				}
+			}
+			scheduleTrain(i);
+		}
+	}
+
+	/**
+	 * Wake up a Train because of something another Train did. If it comes
+	 * after that Train in the List, it would have seen it on this time step,
+	 * otherwise on the next one.
+	 * @param i the index of the Train that did something
+	 * @param j the index of the Train to wake up
+	 * @param due which Trains are due on this time step
+	 */
+	private void wakeTrain(int i, int j, boolean[] due) {
+		if (j > i) {
+			due[j] = true;
+		}
+		else {
+			scheduler.schedule(numSteps + 1, EventType.TRAIN, j);
+		}
+	}
+
+	/**
+	 * Schedule the next time a Train has something to do on its own.
+	 * @param i the index of the Train
+	 */
+	private void scheduleTrain(int i) {
+		double next = trains.get(i).getNextEventTime(t);
+		if (next != Double.POSITIVE_INFINITY) {
+			scheduler.scheduleAt(next, numSteps, EventType.TRAIN, i);
+		}
+	}
+
+	/**
+	 * Spawn all the Passengers that arrive at a Station before the current time.
+	 * @param station the Station
+	 * @return the number of Passengers spawned
+	 */
+	private int spawnPassengers(Station station) {
+		int spawned = 0;
+		double tnext = station.getNextTime();
+
+		while (tnext < t) {
+			enqueueSpawn(station, tnext);
+			// Draw another spawn time for this Station
+			tnext = station.drawNextTime(tnext);
+			spawned++;
+		}
+		return spawned;
+	}
+
+	/**
+	 * Pick a destination for a Passenger who just spawned, and add them to the queue for their first line.
+	 * @param station the Station they spawned at
+	 * @param spawnTime when they spawned
+	 */
+	private void enqueueSpawn(Station station, double spawnTime) {
+		int dest = drawDestination(station, spawnTime);
+		station.enqueuePassenger(getFirstLine(station, dest), spawnTime, -1, station.getId(), dest);
+	}
+
+	/**
+	 * Pick a destination for a Passenger who just spawned, and write down that they spawned.
+	 * @param station the Station they spawned at
+	 * @param spawnTime when they spawned
+	 * @return the id of their destination Station
+	 */
+	private int drawDestination(Station station, double spawnTime) {
+		if (Log.isEnabled(LogLevel.TRACE)) {
+			Log.trace("SPAWNED A PERSON AT STATION: " + station);
 		}
+		// The sampler never picks the Passenger's spawn location as their destination
+		int dest = destinationSampler.sample(station.getId(), stationRNG);
+		outputSink.writeSpawn(spawnTime, station.getId(), dest);
+		return dest;
 	}
 
 	/**
-	 * This method is used to write the header of the times file
+	 * @param station the Station a Passenger is starting from
+	 * @param dest the id of their destination Station
+	 * @return the number of the line they queue for first
 	 */
-	public void writeTimesHeader() {
-		passengerWriter.println("Total Trip Time,Spawn Time,Board Time,Spawn Station,Destination Station");
+	private int getFirstLine(Station station, int dest) {
+		return (routes == null) ? 0 : routes.getLine(station.getId(), dest);
 	}
 
 	/**
-	 * This method is used to write the header of the manifest file.
+	 * Run a Train for the current time step, counting any Passengers that got off.
+	 * @param train the Train
 	 */
-	public void writeManifestHeader() {
-		for (Train t : trains) {
-			t.getTrainWriter().println("Passengers,Departing Station,Destination Station,Global Time");
+	private void runTrain(Train train) {
+		/*
+		 * If any Passengers got off, Train.run(...) will return them in a
+		 * PassengerBuffer.
+		 */
+		PassengerBuffer disembarked = train.run(t, destinations[train.getLine()]);
+		// Count the passengers that got off at their destinations
+		if (disembarked != null) {
+			numPassengers += disembarked.size();
 		}
 	}
 
 	/**
-	 * @return a random station, uniformly chosen from the set of all stations.
+	 * Log whether each Station is occupied, and how many people are waiting there.
+	 * @param level the level to log at
 	 */
-	private Station drawRandomStation() {
-		List<Station> stations = new ArrayList<Station>(stationMap.values());
-		return stations.get(stationRNG.nextInt(stations.size()));
+	public void logStations(LogLevel level) {
+		for (Station station : stations) {
+			Log.log(level, "Station " + station + ": " + (station.isOccupied() ? "occupied" : "unoccupied") + "; has " + station.getNumWaiting() + " people.");
+		}
 	}
 
 	/**
@@ -385,6 +1604,24 @@ public class SubwaySim {
 		return t;
 	}
 
+	/**
+	 * Set the next time something outside the sim needs to look at it, such
+	 * as the end of the run, a stop condition's next check, or a checkpoint.
+	 * Ticking every time step doesn't need this, but steps that skip idle
+	 * time steps use it to avoid skipping past that time.
+	 * @param nextCheckTime the time, in seconds
+	 */
+	public void setNextCheckTime(double nextCheckTime) {
+		this.nextCheckTime = nextCheckTime;
+	}
+
+	/**
+	 * @return the number of time steps completed.
+	 */
+	public int getNumSteps() {
+		return numSteps;
+	}
+
 	/**
 	 * @return the number of Passengers that have completed their travels.
 	 */
@@ -392,6 +1629,160 @@ public class SubwaySim {
 		return numPassengers;
 	}
 
+	/**
+	 * @return where this sim's checkpoints go by default
+	 */
+	public File getCheckpointFile() {
+		return new File(outFileBase + CHECKPOINTSUFFIX);
+	}
+
+	/**
+	 * Write a checkpoint of everything needed to carry on the sim from where
+	 * it is now, as if it hadn't stopped: the clock, every Station's queues
+	 * and spawn RNG, every Train and its Passengers, the destination RNG, and
+	 * the statistics. It's written to a temporary file, flushed to disk, and
+	 * then moved into place, so a crash while writing can't leave a broken
+	 * checkpoint behind.
+	 * Passenger and Train records that have already been written aren't part
+	 * of the checkpoint; a restored sim only writes the ones from after it.
+	 * @param file where to write the checkpoint
+	 * @throws IOException if it can't be written
+	 */
+	public void writeCheckpoint(File file) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+			out.writeInt(CHECKPOINTMAGIC);
+			out.writeInt(CHECKPOINTVERSION);
+			writeState(out);
+			out.flush();
+			fileOut.getChannel().force(true);
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Log.info("Wrote checkpoint at t = " + t + " to " + file);
+	}
+
+	/**
+	 * Save the sim's state in memory, for starting other sims from where
+	 * this one is now; see SubwaySim(String, ConfigFile, String, byte[]).
+	 * @return the saved state
+	 */
+	public byte[] saveState() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			writeState(new DataOutputStream(bytes));
+		}
+		catch (IOException e) {
+			// A ByteArrayOutputStream doesn't throw these
+			throw new RuntimeException("Error: problem saving state: " + e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Save the sim's state, as described in writeCheckpoint(...).
+	 * The network's Station and Train names are saved too, so the state
+	 * can't be put back into a sim of a different network.
+	 * @param out where to write it
+	 * @throws IOException if it can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(stations.size());
+		for (Station station : stations) {
+			out.writeUTF(station.getName());
+		}
+		out.writeInt(network.getNumLines());
+		out.writeInt(trains.size());
+		for (Train train : trains) {
+			out.writeUTF(train.getName());
+		}
+
+		out.writeDouble(t);
+		out.writeInt(numSteps);
+		out.writeInt(numPassengers);
+		out.writeLong(stationRNG.getState());
+		for (Station station : stations) {
+			station.writeState(out);
+		}
+		for (Train train : trains) {
+			train.writeState(out);
+		}
+		stats.writeState(out);
+	}
+
+	/**
+	 * Load a checkpoint written by writeCheckpoint(...).
+	 * @param file the checkpoint
+	 * @throws RuntimeException if it can't be read, or is for a different network
+	 */
+	private void restoreCheckpoint(File file) throws RuntimeException {
+		Log.info("Restoring checkpoint: " + file);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != CHECKPOINTMAGIC || in.readInt() != CHECKPOINTVERSION) {
+				throw new IOException("Error: " + file + " isn't a version " + CHECKPOINTVERSION + " checkpoint");
+			}
+			readState(in, false);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem reading checkpoint: " + e);
+		}
+	}
+
+	/**
+	 * Put back the sim's state saved by writeState(...). This has to happen
+	 * before the engine is set up, since the event, parallel and actor engines
+	 * start from the Stations' and Trains' state.
+	 * @param in where to read it from
+	 * @param reseed whether to keep this sim's own RNGs instead of the saved ones
+	 * @throws IOException if it can't be read
+	 * @throws RuntimeException if it's for a different network
+	 */
+	private void readState(DataInput in, boolean reseed) throws IOException, RuntimeException {
+		boolean sameNetwork = in.readInt() == stations.size();
+		for (int i = 0; sameNetwork && i < stations.size(); i++) {
+			sameNetwork = in.readUTF().equals(stations.get(i).getName());
+		}
+		sameNetwork = sameNetwork && in.readInt() == network.getNumLines() && in.readInt() == trains.size();
+		for (int i = 0; sameNetwork && i < trains.size(); i++) {
+			sameNetwork = in.readUTF().equals(trains.get(i).getName());
+		}
+		if (!sameNetwork) {
+			throw new RuntimeException("Error: the saved state is for a different network");
+		}
+
+		t = in.readDouble();
+		numSteps = in.readInt();
+		numPassengers = in.readInt();
+		long stationRNGState = in.readLong();
+		if (!reseed) {
+			stationRNG.setState(stationRNGState);
+		}
+		for (Station station : stations) {
+			station.readState(in, !reseed);
+			if (reseed) {
+				station.drawNextTime(t);
+			}
+		}
+		for (Train train : trains) {
+			train.readState(in, stations, destinations[train.getLine()]);
+		}
+		stats.readState(in);
+	}
+
+	/**
+	 * @return the statistics on the Passengers and Trains so far.
+	 */
+	public SimStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * @return the compiled layout of the Stations and Trains.
+	 */
+	public NetworkModel getNetwork() {
+		return network;
+	}
+
 	/**
 	 * @return the Map of Stations and Destinations representing the track.
 	 */
@@ -403,6 +1794,88 @@ public class SubwaySim {
 	 * @return a List of the Stations.
 	 */
 	public List<Station> getStations() {
-		return new ArrayList<Station>(stationMap.values());
+		return new ArrayList<Station>(stations);
+	}
+
+	/**
+	 * The Passengers spawned in a chunk of Stations on one time step, in
+	 * Station order; reused every time step.
+	 */
+	private static class SpawnList {
+		int size;
+		int[] stations = new int[16];
+		double[] times = new double[16];
+
+		void add(int station, double time) {
+			if (size == stations.length) {
+				stations = Arrays.copyOf(stations, 2 * size);
+				times = Arrays.copyOf(times, 2 * size);
+			}
+			stations[size] = station;
+			times[size] = time;
+			size++;
+		}
+	}
+
+	/**
+	 * Trains listed under Stations, each under at most one Station at a time,
+	 * as linked lists threaded through arrays indexed by Station and Train.
+	 */
+	private static class TrainLists {
+		static final int NONE = -1;
+
+		int[] firsts; // The first Train under each Station
+		int[] nexts; // The next Train under the same Station as each Train
+		int[] stations; // The Station each Train is under
+
+		TrainLists(int numStations, int numTrains) {
+			firsts = new int[numStations];
+			nexts = new int[numTrains];
+			stations = new int[numTrains];
+			Arrays.fill(firsts, NONE);
+			Arrays.fill(stations, NONE);
+		}
+
+		int getFirst(int station) {
+			return firsts[station];
+		}
+
+		int getNext(int train) {
+			return nexts[train];
+		}
+
+		/**
+		 * List a Train under a Station, taking it off the list it was on.
+		 */
+		void add(int station, int train) {
+			if (stations[train] == station) {
+				return;
+			}
+			remove(train);
+			stations[train] = station;
+			nexts[train] = firsts[station];
+			firsts[station] = train;
+		}
+
+		/**
+		 * Take a Train off the list it's on, if any.
+		 */
+		void remove(int train) {
+			int station = stations[train];
+			if (station == NONE) {
+				return;
+			}
+			if (firsts[station] == train) {
+				firsts[station] = nexts[train];
+			}
+			else {
+				int before = firsts[station];
+				while (nexts[before] != train) {
+					before = nexts[before];
+				}
+				nexts[before] = nexts[train];
+			}
+			stations[train] = NONE;
+		}
 	}
 }
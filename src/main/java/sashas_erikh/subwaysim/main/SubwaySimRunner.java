@@ -1,7 +1,18 @@
 package sashas_erikh.subwaysim.main;
 
+import sashas_erikh.subwaysim.log.Log;
+import sashas_erikh.subwaysim.log.LogLevel;
+import sashas_erikh.subwaysim.stop.AnyOf;
+import sashas_erikh.subwaysim.stop.StopCondition;
+
+import rmacdonald_kingsu.util.ConfigFile;
+
+import java.util.HashMap;
+import java.util.Map;
+
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
 
 /**
@@ -9,69 +20,133 @@ import java.io.PrintWriter;
  * @author Erik H
  */
 public class SubwaySimRunner {
+	public static final String LOGSUFFIX = "_log.txt";
+	public static final String INPUTDIR = "./config/";
+	public static final String OUTPUTDIR = "./data/";
+
 	public static void main(String[] args) {
 		if (args.length < 1) {
 			System.err.println("[FATAL] please specify the filename prefix.");
 			System.exit(1);
 		}
 
-		final String LOGSUFFIX = "_log.txt";
-		final String INPUTDIR = "./config/";
-		final String OUTPUTDIR = "./data/";
+		// Any arguments after the prefix override config parameters, e.g. logLevel=DEBUG
+		Map<String, String> overrides = new HashMap<String, String>();
+		for (int i = 1; i < args.length; i++) {
+			String[] argParts = args[i].split("=", 2);
+			if (argParts.length != 2) {
+				System.err.println("[FATAL] config overrides must look like key=value; got: " + args[i]);
+				System.exit(1);
+			}
+			overrides.put(argParts[0], argParts[1]);
+		}
+
 		String fileBaseName = args[0];
 
 		SubwaySim sim = null;
 		try {
-			sim = new SubwaySim(fileBaseName, INPUTDIR, OUTPUTDIR);
+			ConfigFile config = SubwaySim.loadConfig(INPUTDIR + fileBaseName + SubwaySim.CONFIGSUFFIX, overrides);
+			SubwaySim.applyLogLevel(config);
+			sim = new SubwaySim(fileBaseName, config, OUTPUTDIR);
 		}
 		catch (Exception e) {
 			System.err.println("[FATAL] error creating sim: " + e);
 			System.exit(1);
 		}
 
-		System.err.println("[INFO] using config:");
-		System.err.println(sim.getConfig());
-
-		// Set up the sim stopping conditions
-		final double MAXTIME = 60*60*24.0; // Run for this many hours
-		final int MAXPASSENGERS = 6000; // ... or until we hit this many passengers
+		if (Log.isEnabled(LogLevel.INFO)) {
+			Log.info("using config:");
+			Log.info("" + sim.getConfig());
+		}
 
-		System.err.println("[DEBUG] before sim starts, here is the state of all the Stations:");
-		sim.getStations().forEach(
-			(station) -> {
-				System.err.println("\tStation " + station + ": " + (station.isOccupied() ? "occupied" : "unoccupied"));
-			}
-		);
-
-		//
-		// Run the sim until our stop conditions in number of Passengers or maximum run time are met.
-		//
-		while (sim.getTime() < MAXTIME && sim.getNumPassengers() < MAXPASSENGERS) {
-			System.err.println("\t[DEBUG] time check: " + sim.getTime() + " < " + MAXTIME);
-			System.err.println("\t[DEBUG] passengers check: " + sim.getNumPassengers() + " < " + MAXPASSENGERS);
-			// Run the sim!!!!!!
-			sim.step();
+		if (Log.isEnabled(LogLevel.DEBUG)) {
+			Log.debug("before sim starts, here is the state of all the Stations:");
+			sim.logStations(LogLevel.DEBUG);
 		}
 
+		run(sim);
+
 		sim.closeOutputWriters();
 		System.out.println("[INFO] Completed sim, serving " + sim.getNumPassengers() + " passengers in " + sim.getTime() + " seconds.");
 
 		File logFile = new File(OUTPUTDIR + fileBaseName + LOGSUFFIX);
 		System.out.println("[INFO] Writing sim log to " + logFile);
-		PrintWriter logWriter;
 		try {
-			logWriter = new PrintWriter(logFile);
-			logWriter.println("" + sim.getConfig());
-
-			logWriter.println("Total passengers: " + sim.getNumPassengers());
-			logWriter.println("Total time (seconds): " + sim.getTime());
-			logWriter.println("Passengers/second: " + (sim.getNumPassengers()/sim.getTime()));
-			logWriter.println("Seconds/Passenger: " + (sim.getTime()/sim.getNumPassengers()));
-			logWriter.close();
+			writeLog(sim, logFile);
 		}
 		catch (FileNotFoundException e) {
 			System.err.println("[FATAL] Error writing log file: " + e);
 			System.exit(1);
 		}
 	}
+
+	/**
+	 * Run a sim until the stop conditions in its config are met (see AnyOf.fromConfig(...)),
+	 * writing a checkpoint every checkpointInterval seconds of sim time if it's set.
+	 * @param sim the sim
+	 * @return the stop conditions, which say why the sim stopped
+	 */
+	public static StopCondition run(SubwaySim sim) {
+		return run(sim, AnyOf.fromConfig(sim.getConfig()));
+	}
+
+	/**
+	 * Run a sim until some stop condition is met,
+	 * writing a checkpoint every checkpointInterval seconds of sim time if it's set.
+	 * @param sim the sim
+	 * @param stop the stop condition
+	 * @return the stop condition
+	 */
+	public static StopCondition run(SubwaySim sim, StopCondition stop) {
+		double checkpointInterval = sim.getConfig().getDouble("checkpointInterval");
+		double nextCheckpoint = nextCheckpointTime(sim.getTime(), checkpointInterval);
+		while (!stop.isMet(sim)) {
+			// Run the sim!!!!!!
+			sim.setNextCheckTime(Math.min(stop.getNextCheckTime(), nextCheckpoint));
+			sim.step();
+
+			if (sim.getTime() >= nextCheckpoint) {
+				try {
+					sim.writeCheckpoint(sim.getCheckpointFile());
+				}
+				catch (IOException e) {
+					// Carry on; the next checkpoint may work
+					System.err.println("[ERROR] couldn't write checkpoint: " + e);
+				}
+				nextCheckpoint = nextCheckpointTime(sim.getTime(), checkpointInterval);
+			}
+		}
+		Log.info("stopped at t = " + sim.getTime() + ": " + stop.getReason());
+		return stop;
+	}
+
+	/**
+	 * @param t the current time
+	 * @param checkpointInterval the time between checkpoints, or 0 for no checkpoints
+	 * @return the time of the next checkpoint after t, or infinity if there aren't any
+	 */
+	private static double nextCheckpointTime(double t, double checkpointInterval) {
+		if (checkpointInterval <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return (Math.floor(t / checkpointInterval) + 1) * checkpointInterval;
+	}
+
+	/**
+	 * Write a finished sim's config, results and statistics to a log file.
+	 * @param sim the sim
+	 * @param logFile the log file
+	 * @throws FileNotFoundException if the log file can't be opened
+	 */
+	public static void writeLog(SubwaySim sim, File logFile) throws FileNotFoundException {
+		PrintWriter logWriter = new PrintWriter(logFile);
+		logWriter.println("" + sim.getConfig());
+
+		logWriter.println("Total passengers: " + sim.getNumPassengers());
+		logWriter.println("Total time (seconds): " + sim.getTime());
+		logWriter.println("Passengers/second: " + (sim.getNumPassengers()/sim.getTime()));
+		logWriter.println("Seconds/Passenger: " + (sim.getTime()/sim.getNumPassengers()));
+		sim.getStats().write(logWriter);
+		logWriter.close();
+	}
 }
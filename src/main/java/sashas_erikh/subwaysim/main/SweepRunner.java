@@ -0,0 +1,344 @@
+package sashas_erikh.subwaysim.main;
+
+import sashas_erikh.subwaysim.stop.AnyOf;
+import sashas_erikh.subwaysim.stop.StopCondition;
+import sashas_erikh.subwaysim.stop.TimeLimit;
+
+import rmacdonald_kingsu.util.ConfigFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+/**
+ * A class for running parameter sweeps: many Subway Simulations with
+ * different config parameters, run at the same time on a fixed size thread pool.
+ *
+ * Usage: <code>SweepRunner &lt;basename&gt; [key=values]... [threads=N] [warmup=T]</code>
+ * where values is a comma separated list of values and/or lo:hi:step ranges, e.g.
+ * <code>trainWaitTime=60:300:60 trainCapacity=120,160 passengerSpawnSeed=1,2,3</code>
+ *
+ * Every combination of values is run. Each run writes its usual output and log
+ * files to data/&lt;basename&gt;_sweep/ under its own name, and a summary of all the
+ * runs is written to data/&lt;basename&gt;_sweep/&lt;basename&gt;_summary.csv.
+ *
+ * With warmup=T, one sim is run for the first T seconds with the config file's
+ * own parameters, and every run starts from a copy of where it got to instead
+ * of from an empty subway, so the warm-up is only simulated once. If a run has
+ * a smaller trainCapacity, Passengers over it stay on until they get off.
+ * If any of SubwaySim.RANDOMKEYS are swept, each run swaps in the RNGs its own
+ * config sets up once it has started from the warmed up state.
+ * @author Erik H
+ */
+public class SweepRunner {
+	public static final String SWEEPSUFFIX = "_sweep/";
+	public static final String SUMMARYSUFFIX = "_summary.csv";
+	public static final String WARMUPSUFFIX = "_warmup";
+
+	/**
+	 * The results of one run in the sweep.
+	 */
+	static class Result {
+		String name; // The run's name, which prefixes its output files
+		Map<String, String> overrides; // The swept parameters for this run
+		int numPassengers;
+		double time;
+		double meanTripTime;
+		double meanWaitTime;
+		double wallTime; // How long the run took, in seconds
+		String error; // Why the run failed, or null if it didn't
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("[FATAL] please specify the filename prefix.");
+			System.exit(1);
+		}
+
+		String fileBaseName = args[0];
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		double warmupTime = 0.0;
+
+		// Parse the swept parameters, keeping them in command line order
+		Map<String, List<String>> sweep = new LinkedHashMap<String, List<String>>();
+		for (int i = 1; i < args.length; i++) {
+			String[] argParts = args[i].split("=", 2);
+			if (argParts.length != 2) {
+				System.err.println("[FATAL] sweep parameters must look like key=values; got: " + args[i]);
+				System.exit(1);
+			}
+			try {
+				if (argParts[0].equals("threads")) {
+					numThreads = Integer.parseInt(argParts[1]);
+				}
+				else if (argParts[0].equals("warmup")) {
+					warmupTime = Double.parseDouble(argParts[1]);
+				}
+				else {
+					sweep.put(argParts[0], parseValues(argParts[1]));
+				}
+			}
+			catch (NumberFormatException e) {
+				System.err.println("[FATAL] bad sweep parameter " + args[i] + ": " + e);
+				System.exit(1);
+			}
+		}
+
+		List<Map<String, String>> combinations = combinations(sweep);
+		String outDir = SubwaySimRunner.OUTPUTDIR + fileBaseName + SWEEPSUFFIX;
+		new File(outDir).mkdirs();
+
+		// The log level is shared by all the runs, so set it once up front
+		try {
+			SubwaySim.applyLogLevel(SubwaySim.loadConfig(SubwaySimRunner.INPUTDIR + fileBaseName + SubwaySim.CONFIGSUFFIX, combinations.get(0)));
+		}
+		catch (Exception e) {
+			System.err.println("[FATAL] error loading config: " + e);
+			System.exit(1);
+		}
+
+		byte[] warmState = null;
+		// Swept seeds would all carry on from the warm-up's RNGs, so give each run its own
+		boolean reseed = false;
+		for (String key : SubwaySim.RANDOMKEYS) {
+			reseed |= sweep.containsKey(key);
+		}
+		if (warmupTime > 0) {
+			try {
+				warmState = warmUp(fileBaseName, warmupTime, outDir);
+			}
+			catch (Exception e) {
+				System.err.println("[FATAL] error warming up: " + e);
+				System.exit(1);
+			}
+			if (reseed) {
+				System.out.println("[INFO] Random parameters are swept, so every run gets fresh RNGs from its own config after the warm-up");
+			}
+		}
+
+		System.out.println("[INFO] Running " + combinations.size() + " sims on " + numThreads + " threads, writing output to " + outDir);
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for (Map<String, String> overrides : combinations) {
+			futures.add(pool.submit(runTask(fileBaseName, runName(fileBaseName, overrides), overrides, outDir, warmState, reseed)));
+		}
+		pool.shutdown();
+
+		// Gather the results in sweep order, whatever order they finished in
+		List<Result> results = new ArrayList<Result>();
+		for (Future<Result> future : futures) {
+			try {
+				results.add(future.get());
+			}
+			catch (InterruptedException | ExecutionException e) {
+				System.err.println("[FATAL] error waiting for sim: " + e);
+				System.exit(1);
+			}
+		}
+
+		File summaryFile = new File(outDir + fileBaseName + SUMMARYSUFFIX);
+		System.out.println("[INFO] Writing sweep summary to " + summaryFile);
+		try {
+			writeSummary(results, new ArrayList<String>(sweep.keySet()), summaryFile);
+		}
+		catch (FileNotFoundException e) {
+			System.err.println("[FATAL] Error writing summary file: " + e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Run a sim with the config file's parameters up to the warm-up time, and save where it got to.
+	 * Its output files aren't written; the runs that start from it write their own.
+	 * @param fileBaseName the base name of the config file
+	 * @param warmupTime how long to run for, in seconds
+	 * @param outDir the directory for the output files
+	 * @return the sim's saved state
+	 * @throws FileNotFoundException if the config file can't be opened
+	 * @throws RuntimeException if something goes wrong setting up the sim
+	 */
+	private static byte[] warmUp(String fileBaseName, double warmupTime, String outDir) throws FileNotFoundException, RuntimeException {
+		long startTime = System.nanoTime();
+		Map<String, String> overrides = new HashMap<String, String>();
+		overrides.put("outputFormat", "none");
+		ConfigFile config = SubwaySim.loadConfig(SubwaySimRunner.INPUTDIR + fileBaseName + SubwaySim.CONFIGSUFFIX, overrides);
+		SubwaySim sim = new SubwaySim(fileBaseName + WARMUPSUFFIX, config, outDir);
+		// Stop at the warm-up time, or sooner if the config's own stop conditions say so
+		List<StopCondition> conditions = new ArrayList<StopCondition>();
+		conditions.add(new TimeLimit(warmupTime));
+		conditions.add(AnyOf.fromConfig(config));
+		StopCondition stop = new AnyOf(conditions);
+		while (!stop.isMet(sim)) {
+			sim.setNextCheckTime(stop.getNextCheckTime());
+			sim.step();
+		}
+		sim.closeOutputWriters();
+		byte[] state = sim.saveState();
+		System.out.println("[INFO] Warmed up to " + sim.getTime() + " seconds in " + (System.nanoTime() - startTime) / 1e9
+			+ " seconds, saving " + state.length + " bytes of state.");
+		return state;
+	}
+
+	/**
+	 * Create the task for one run of the sweep.
+	 * @param fileBaseName the base name of the config file
+	 * @param name the run's name, for its output files
+	 * @param overrides the config parameters for this run
+	 * @param outDir the directory for the output files
+	 * @param warmState the warmed up state to start from, or null to start from scratch
+	 * @param reseed whether to start from the warmed up state with this run's own RNGs
+	 * @return the task, which returns the run's results
+	 */
+	static Callable<Result> runTask(String fileBaseName, String name, Map<String, String> overrides, String outDir, byte[] warmState, boolean reseed) {
+		return () -> {
+			Result result = new Result();
+			result.name = name;
+			result.overrides = overrides;
+			long startTime = System.nanoTime();
+			try {
+				// Each run gets its own ConfigFile, since SubwaySim hangs on to it
+				ConfigFile config = SubwaySim.loadConfig(SubwaySimRunner.INPUTDIR + fileBaseName + SubwaySim.CONFIGSUFFIX, overrides);
+				SubwaySim sim = new SubwaySim(name, config, outDir, warmState, reseed);
+				SubwaySimRunner.run(sim);
+				sim.closeOutputWriters();
+				SubwaySimRunner.writeLog(sim, new File(outDir + name + SubwaySimRunner.LOGSUFFIX));
+
+				result.numPassengers = sim.getNumPassengers();
+				result.time = sim.getTime();
+				result.meanTripTime = sim.getStats().getTripTimes().getMean();
+				result.meanWaitTime = sim.getStats().getWaitTimes().getMean();
+				System.out.println("[INFO] Completed " + name + ", serving " + result.numPassengers + " passengers in " + result.time + " seconds.");
+			}
+			catch (Exception e) {
+				result.error = "" + e;
+				System.err.println("[ERROR] sim " + name + " failed: " + e);
+			}
+			result.wallTime = (System.nanoTime() - startTime) / 1e9;
+			return result;
+		};
+	}
+
+	/**
+	 * Parse a sweep parameter's values.
+	 * @param spec comma separated values and/or lo:hi:step ranges (inclusive)
+	 * @return the values, in order
+	 * @throws NumberFormatException if a range isn't made of numbers
+	 */
+	private static List<String> parseValues(String spec) throws NumberFormatException {
+		List<String> values = new ArrayList<String>();
+		for (String part : spec.split(",")) {
+			String[] range = part.split(":");
+			if (range.length != 3) {
+				values.add(part);
+				continue;
+			}
+			try {
+				// Keep whole number ranges whole, so that int parameters still parse
+				long lo = Long.parseLong(range[0]);
+				long hi = Long.parseLong(range[1]);
+				long step = Long.parseLong(range[2]);
+				if (step <= 0) {
+					throw new NumberFormatException("range step must be positive: " + part);
+				}
+				for (long value = lo; value <= hi; value += step) {
+					values.add("" + value);
+				}
+			}
+			catch (NumberFormatException e) {
+				double lo = Double.parseDouble(range[0]);
+				double hi = Double.parseDouble(range[1]);
+				double step = Double.parseDouble(range[2]);
+				if (step <= 0) {
+					throw new NumberFormatException("range step must be positive: " + part);
+				}
+				for (int i = 0; lo + i * step <= hi; i++) {
+					values.add("" + (lo + i * step));
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @param sweep the swept parameters mapped to their values
+	 * @return every combination of values, with the first parameter varying slowest
+	 */
+	private static List<Map<String, String>> combinations(Map<String, List<String>> sweep) {
+		List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+		combinations.add(new HashMap<String, String>());
+		for (Map.Entry<String, List<String>> param : sweep.entrySet()) {
+			List<Map<String, String>> extended = new ArrayList<Map<String, String>>();
+			for (Map<String, String> combination : combinations) {
+				for (String value : param.getValue()) {
+					Map<String, String> next = new HashMap<String, String>(combination);
+					next.put(param.getKey(), value);
+					extended.add(next);
+				}
+			}
+			combinations = extended;
+		}
+		return combinations;
+	}
+
+	/**
+	 * @param fileBaseName the base name of the config file
+	 * @param overrides the config parameters for a run
+	 * @return the name of the run, made from the base name and its parameters
+	 */
+	private static String runName(String fileBaseName, Map<String, String> overrides) {
+		StringBuilder name = new StringBuilder(fileBaseName);
+		for (Map.Entry<String, String> override : new TreeMap<String, String>(overrides).entrySet()) {
+			name.append('_').append(override.getKey()).append(override.getValue().replace(' ', '-'));
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Write the summary table of all the runs as a CSV file, and to stdout.
+	 * @param results the results of the runs
+	 * @param keys the swept parameters
+	 * @param summaryFile the summary file
+	 * @throws FileNotFoundException if the summary file can't be opened
+	 */
+	static void writeSummary(List<Result> results, List<String> keys, File summaryFile) throws FileNotFoundException {
+		PrintWriter summaryWriter = new PrintWriter(summaryFile);
+		StringBuilder line = new StringBuilder("Run");
+		for (String key : keys) {
+			line.append(',').append(key);
+		}
+		line.append(",Total passengers,Total time (seconds),Passengers/second,Seconds/Passenger,Mean trip time (seconds),Mean wait time (seconds),Wall time (seconds),Error");
+		summaryWriter.println(line);
+		System.out.println(line);
+
+		for (Result result : results) {
+			line.setLength(0);
+			line.append(result.name);
+			for (String key : keys) {
+				line.append(',').append(result.overrides.get(key));
+			}
+			line.append(',').append(result.numPassengers)
+				.append(',').append(result.time)
+				.append(',').append(result.numPassengers / result.time)
+				.append(',').append(result.time / result.numPassengers)
+				.append(',').append(result.meanTripTime)
+				.append(',').append(result.meanWaitTime)
+				.append(',').append(result.wallTime)
+				.append(',').append(result.error == null ? "" : result.error.replace(',', ';'));
+			summaryWriter.println(line);
+			System.out.println(line);
+		}
+		summaryWriter.close();
+	}
+}
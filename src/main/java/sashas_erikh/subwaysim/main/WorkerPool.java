@@ -0,0 +1,139 @@
+package sashas_erikh.subwaysim.main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed number of threads for splitting up the work of one time step.
+ * The work is split into contiguous chunks of indices, one chunk per
+ * thread at most, with the calling thread doing the first chunk itself.
+ * The threads are daemons that die off after a second of not being used,
+ * so a sim that's finished (or abandoned) doesn't need to shut its pool down.
+ * @author Erik H
+ */
+class WorkerPool {
+	/**
+	 * The fewest indices worth handing to another thread; splitting up less
+	 * work than this costs more in hand-offs than it saves.
+	 */
+	public static final int MINCHUNKSIZE = 64;
+
+	/**
+	 * The work done on a chunk of indices.
+	 */
+	interface ChunkTask {
+		/**
+		 * @param chunk which chunk this is, from 0 to getMaxChunks() - 1; chunks are in index order
+		 * @param from the first index in the chunk
+		 * @param to one past the last index in the chunk
+		 */
+		void run(int chunk, int from, int to);
+	}
+
+	private int numThreads;
+	private ThreadPoolExecutor executor; // null if there's only one thread
+
+	/**
+	 * @param numThreads how many threads to use, including the calling thread
+	 */
+	public WorkerPool(int numThreads) {
+		this.numThreads = Math.max(numThreads, 1);
+		if (this.numThreads > 1) {
+			executor = new ThreadPoolExecutor(this.numThreads - 1, this.numThreads - 1, 1, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "subwaysim-worker");
+					thread.setDaemon(true);
+					return thread;
+				});
+			executor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	/**
+	 * @return the most chunks that work is ever split into
+	 */
+	public int getMaxChunks() {
+		return numThreads;
+	}
+
+	/**
+	 * Run a task over the indices 0 to count - 1, split into chunks, and wait for all the chunks to finish.
+	 * @param count the number of indices
+	 * @param task the task
+	 * @throws RuntimeException if the task fails on any chunk
+	 */
+	public void forEachChunk(int count, ChunkTask task) throws RuntimeException {
+		int numChunks = Math.min(numThreads, (count + MINCHUNKSIZE - 1) / MINCHUNKSIZE);
+		if (numChunks <= 1) {
+			task.run(0, 0, count);
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>(numChunks - 1);
+		for (int chunk = 1; chunk < numChunks; chunk++) {
+			final int c = chunk;
+			futures.add(executor.submit(() -> task.run(c, start(c, count, numChunks), start(c + 1, count, numChunks))));
+		}
+		// The other chunks are waited for even if this one fails, so none of
+		// them are still changing the sim when the failure is passed on
+		try {
+			task.run(0, 0, start(1, count, numChunks));
+		}
+		catch (RuntimeException | Error e) {
+			try {
+				awaitAll(futures);
+			}
+			catch (RuntimeException ignored) {
+				// This chunk's failure is the one passed on
+			}
+			throw e;
+		}
+		awaitAll(futures);
+	}
+
+	/**
+	 * Wait for every chunk to finish, then pass on the first one that failed.
+	 * @param futures the chunks
+	 * @throws RuntimeException if any of them failed, or the wait was interrupted
+	 */
+	private static void awaitAll(List<Future<?>> futures) throws RuntimeException {
+		RuntimeException failure = null;
+		boolean interrupted = false;
+		for (Future<?> future : futures) {
+			while (true) {
+				try {
+					future.get();
+				}
+				catch (InterruptedException e) {
+					// The chunk is still running, so keep waiting for it
+					interrupted = true;
+					continue;
+				}
+				catch (ExecutionException e) {
+					if (failure == null) {
+						failure = new RuntimeException("Error: a worker thread failed", e.getCause());
+					}
+				}
+				break;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * @return the first index of a chunk, spreading the indices as evenly as possible
+	 */
+	private static int start(int chunk, int count, int numChunks) {
+		return (int)((long)chunk * count / numChunks);
+	}
+}
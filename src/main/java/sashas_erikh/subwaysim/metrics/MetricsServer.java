@@ -0,0 +1,177 @@
+package sashas_erikh.subwaysim.metrics;
+
+import sashas_erikh.subwaysim.log.Log;
+import sashas_erikh.subwaysim.station.Station;
+import sashas_erikh.subwaysim.train.Train;
+import sashas_erikh.subwaysim.train.TrainState;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A small HTTP server on localhost that shows the SimMetrics of every sim
+ * running in the JVM at /metrics, in the Prometheus text format, so a sweep's
+ * runs can all be watched (or scraped) at once.
+ * The server starts when the first sim is added, and stops when the last one
+ * is removed, so it doesn't keep the JVM running after the sims are done.
+ * @author Erik H
+ */
+public class MetricsServer {
+	/**
+	 * The path the metrics are served at.
+	 */
+	public static final String PATH = "/metrics";
+	private static final String CONTENTTYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static HttpServer server; // null unless running
+	private static List<SimMetrics> sims = new CopyOnWriteArrayList<SimMetrics>();
+
+	private MetricsServer() {
+	}
+
+	/**
+	 * Show a sim's metrics, starting the server if it isn't running yet.
+	 * @param metrics the sim's metrics
+	 * @param port the port to start the server on; ignored if it's already running
+	 * @throws IOException if the server can't be started, such as when the port is taken
+	 */
+	public static synchronized void add(SimMetrics metrics, int port) throws IOException {
+		if (server == null) {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+			server.createContext(PATH, MetricsServer::handle);
+			server.start();
+			Log.info("serving metrics at http://localhost:" + server.getAddress().getPort() + PATH);
+		}
+		sims.add(metrics);
+	}
+
+	/**
+	 * Stop showing a sim's metrics, stopping the server if it was the last one.
+	 * @param metrics the sim's metrics
+	 */
+	public static synchronized void remove(SimMetrics metrics) {
+		if (sims.remove(metrics) && sims.isEmpty() && server != null) {
+			server.stop(0);
+			server = null;
+		}
+	}
+
+	private static void handle(HttpExchange exchange) throws IOException {
+		byte[] body = format(sims).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", CONTENTTYPE);
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Write out some sims' metrics in the Prometheus text format.
+	 * @param sims the sims' metrics
+	 * @return the text
+	 */
+	public static String format(List<SimMetrics> sims) {
+		StringBuilder text = new StringBuilder();
+
+		header(text, "subwaysim_steps_total", "counter", "Time steps done.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_steps_total", sim, null, null, sim.getSteps());
+		}
+		header(text, "subwaysim_sim_time_seconds", "gauge", "The current sim time.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_sim_time_seconds", sim, null, null, sim.getSimTime());
+		}
+		header(text, "subwaysim_steps_per_second", "gauge", "Time steps done per real second, lately.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_steps_per_second", sim, null, null, sim.getStepsPerSecond());
+		}
+		header(text, "subwaysim_sim_seconds_per_wall_second", "gauge", "Seconds of sim time per real second, lately.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_sim_seconds_per_wall_second", sim, null, null, sim.getSimSecondsPerWallSecond());
+		}
+		header(text, "subwaysim_passengers_queued_total", "counter", "Passengers who have joined a Station's queue, counting transfers.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_passengers_queued_total", sim, null, null, sim.getPassengersQueued());
+		}
+		header(text, "subwaysim_passengers_completed_total", "counter", "Passengers who have reached their destinations.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_passengers_completed_total", sim, null, null, sim.getPassengersCompleted());
+		}
+		header(text, "subwaysim_train_arrivals_total", "counter", "Train arrivals at Stations.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_train_arrivals_total", sim, null, null, sim.getTrainArrivals());
+		}
+		header(text, "subwaysim_train_departures_total", "counter", "Train departures from Stations.");
+		for (SimMetrics sim : sims) {
+			sample(text, "subwaysim_train_departures_total", sim, null, null, sim.getTrainDepartures());
+		}
+		header(text, "subwaysim_station_queue_length", "gauge", "Passengers waiting at each Station.");
+		for (SimMetrics sim : sims) {
+			for (Station station : sim.getStations()) {
+				sample(text, "subwaysim_station_queue_length", sim, "station", station.getName(), station.getNumWaiting());
+			}
+		}
+		header(text, "subwaysim_train_load", "gauge", "Passengers on each Train.");
+		for (SimMetrics sim : sims) {
+			for (Train train : sim.getTrains()) {
+				sample(text, "subwaysim_train_load", sim, "train", train.getName(), train.getNumPassengers());
+			}
+		}
+		header(text, "subwaysim_train_state", "gauge", "1 for what each Train is doing, 0 for the other states.");
+		for (SimMetrics sim : sims) {
+			for (Train train : sim.getTrains()) {
+				TrainState current = train.getState();
+				for (TrainState state : TrainState.values()) {
+					text.append("subwaysim_train_state{sim=\"").append(escape(sim.getName()))
+						.append("\",train=\"").append(escape(train.getName()))
+						.append("\",state=\"").append(state.name()).append("\"} ")
+						.append(state == current ? 1 : 0).append('\n');
+				}
+			}
+		}
+		header(text, "subwaysim_jvm_allocated_bytes_per_second", "gauge", "Bytes allocated per real second by the whole JVM, lately; -1 if unknown.");
+		text.append("subwaysim_jvm_allocated_bytes_per_second ").append(SimMetrics.getJvmAllocatedBytesPerSecond()).append('\n');
+		return text.toString();
+	}
+
+	private static void header(StringBuilder text, String metric, String type, String help) {
+		text.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * Write one sample, labelled with the sim's name and maybe one more label.
+	 */
+	private static void sample(StringBuilder text, String metric, SimMetrics sim, String label, String labelValue, double value) {
+		text.append(metric).append("{sim=\"").append(escape(sim.getName()));
+		if (label != null) {
+			text.append("\",").append(label).append("=\"").append(escape(labelValue));
+		}
+		text.append("\"} ");
+		if (Double.isInfinite(value)) {
+			text.append(value > 0 ? "+Inf" : "-Inf");
+		}
+		else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			text.append((long)value);
+		}
+		else {
+			text.append(value);
+		}
+		text.append('\n');
+	}
+
+	/**
+	 * @return a label value with backslashes, quotes and newlines escaped
+	 */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,294 @@
+package sashas_erikh.subwaysim.metrics;
+
+import sashas_erikh.subwaysim.station.Station;
+import sashas_erikh.subwaysim.train.Train;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live numbers about a running sim, so a long run can be watched from
+ * outside, through JMX or the MetricsServer.
+ *
+ * The counters are LongAdders, since Trains update them from worker threads
+ * in the parallel and actor engines, and cheap enough to leave on. Queue
+ * lengths and Train loads and states aren't counted at all; they're read off
+ * the Stations and Trains when somebody asks, so they cost nothing while
+ * nobody's looking, but can be a time step out of date.
+ *
+ * Rates are worked out between one reading and the next, at least
+ * MINRATEINTERVAL apart, so they show how fast the run is going lately.
+ * @author Erik H
+ */
+public class SimMetrics implements SimMetricsMXBean {
+	/**
+	 * The JMX domain the sims' MXBeans are registered under.
+	 */
+	public static final String DOMAIN = "sashas_erikh.subwaysim";
+	/**
+	 * The shortest time rates are worked out over, in nanoseconds.
+	 */
+	public static final long MINRATEINTERVAL = 1000000000L;
+
+	private String name;
+	private List<Station> stations;
+	private List<Train> trains;
+	private ObjectName objectName; // null unless registered with JMX
+
+	private LongAdder passengersQueued = new LongAdder();
+	private LongAdder passengersCompleted = new LongAdder();
+	private LongAdder trainArrivals = new LongAdder();
+	private LongAdder trainDepartures = new LongAdder();
+	// Only the sim's own thread steps it, so these don't need adding up; the
+	// time is written before the step count is published, and read after it
+	private AtomicLong steps = new AtomicLong();
+	private double simTime;
+
+	// What the steps and time were at the last rate reading
+	private long lastRateNanos;
+	private long lastSteps;
+	private double lastSimTime;
+	private double stepsPerSecond;
+	private double simSecondsPerWallSecond;
+
+	// The allocation rate is for the whole JVM, so it's shared by every sim
+	private static long lastAllocationNanos;
+	private static long lastAllocatedBytes = -1;
+	private static double allocatedBytesPerSecond = -1;
+
+	/**
+	 * @param name the sim's name, usually its base name
+	 * @param stations the sim's Stations
+	 * @param trains the sim's Trains
+	 * @param steps the number of time steps done already, if the sim was restored
+	 * @param simTime the sim's time now, in seconds
+	 */
+	public SimMetrics(String name, List<Station> stations, List<Train> trains, long steps, double simTime) {
+		this.name = name;
+		this.stations = stations;
+		this.trains = trains;
+		this.simTime = simTime;
+		this.steps.set(steps);
+		lastRateNanos = System.nanoTime();
+		lastSteps = steps;
+		lastSimTime = simTime;
+	}
+
+	/**
+	 * @return the sim's name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Note that the sim has done some time steps.
+	 * @param steps the number of time steps done so far
+	 * @param simTime the sim time now, in seconds
+	 */
+	public void stepped(long steps, double simTime) {
+		this.simTime = simTime;
+		// An ordered store is enough for readers to see the time too, without a full fence every step
+		this.steps.lazySet(steps);
+	}
+
+	/**
+	 * Count a Passenger joining a Station's queue, having spawned or to transfer.
+	 */
+	public void passengerQueued() {
+		passengersQueued.increment();
+	}
+
+	/**
+	 * Count a Train arriving at a Station.
+	 * @param completed how many Passengers got off there at their destination
+	 */
+	public void trainArrived(int completed) {
+		trainArrivals.increment();
+		passengersCompleted.add(completed);
+	}
+
+	/**
+	 * Count a Train leaving a Station.
+	 */
+	public void trainDeparted() {
+		trainDepartures.increment();
+	}
+
+	/**
+	 * Show this sim through JMX, as DOMAIN:type=SubwaySim,name=the sim's name.
+	 * @throws JMException if it can't be registered, such as when another sim has the same name
+	 */
+	public void registerMBean() throws JMException {
+		ObjectName objectName = new ObjectName(DOMAIN + ":type=SubwaySim,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Stop showing this sim, through JMX and the MetricsServer.
+	 */
+	public void unregister() {
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			}
+			catch (JMException e) {
+				// It's gone already
+			}
+			objectName = null;
+		}
+		MetricsServer.remove(this);
+	}
+
+	public long getSteps() {
+		return steps.get();
+	}
+
+	public double getSimTime() {
+		steps.get();
+		return simTime;
+	}
+
+	public double getStepsPerSecond() {
+		updateRates();
+		return stepsPerSecond;
+	}
+
+	public double getSimSecondsPerWallSecond() {
+		updateRates();
+		return simSecondsPerWallSecond;
+	}
+
+	public long getPassengersQueued() {
+		return passengersQueued.sum();
+	}
+
+	public long getPassengersCompleted() {
+		return passengersCompleted.sum();
+	}
+
+	public long getTrainArrivals() {
+		return trainArrivals.sum();
+	}
+
+	public long getTrainDepartures() {
+		return trainDepartures.sum();
+	}
+
+	public int getPassengersWaiting() {
+		int waiting = 0;
+		for (Station station : stations) {
+			waiting += station.getNumWaiting();
+		}
+		return waiting;
+	}
+
+	public double getAllocatedBytesPerSecond() {
+		return getJvmAllocatedBytesPerSecond();
+	}
+
+	public Map<String, Integer> getQueueLengths() {
+		Map<String, Integer> lengths = new LinkedHashMap<String, Integer>();
+		for (Station station : stations) {
+			lengths.put(station.getName(), station.getNumWaiting());
+		}
+		return lengths;
+	}
+
+	public Map<String, Integer> getTrainLoads() {
+		Map<String, Integer> loads = new LinkedHashMap<String, Integer>();
+		for (Train train : trains) {
+			loads.put(train.getName(), train.getNumPassengers());
+		}
+		return loads;
+	}
+
+	public Map<String, String> getTrainStates() {
+		Map<String, String> states = new LinkedHashMap<String, String>();
+		for (Train train : trains) {
+			states.put(train.getName(), train.getState().name());
+		}
+		return states;
+	}
+
+	/**
+	 * @return the sim's Stations
+	 */
+	List<Station> getStations() {
+		return stations;
+	}
+
+	/**
+	 * @return the sim's Trains
+	 */
+	List<Train> getTrains() {
+		return trains;
+	}
+
+	/**
+	 * Work out the step and sim time rates again, if it's been long enough since they last were.
+	 */
+	private synchronized void updateRates() {
+		long now = System.nanoTime();
+		if (now - lastRateNanos < MINRATEINTERVAL) {
+			return;
+		}
+		long steps = this.steps.get();
+		double simTime = this.simTime;
+		double seconds = (now - lastRateNanos) / 1e9;
+		stepsPerSecond = (steps - lastSteps) / seconds;
+		simSecondsPerWallSecond = (simTime - lastSimTime) / seconds;
+		lastRateNanos = now;
+		lastSteps = steps;
+		lastSimTime = simTime;
+	}
+
+	/**
+	 * @return bytes allocated per (real) second by the whole JVM, since this was last worked out,
+	 * or -1 if the JVM can't tell or this is the first time
+	 */
+	static synchronized double getJvmAllocatedBytesPerSecond() {
+		long now = System.nanoTime();
+		if (lastAllocatedBytes >= 0 && now - lastAllocationNanos < MINRATEINTERVAL) {
+			return allocatedBytesPerSecond;
+		}
+		long allocated = getJvmAllocatedBytes();
+		if (allocated >= 0 && lastAllocatedBytes >= 0) {
+			// Threads that have died take their counts with them, so this can go down
+			allocatedBytesPerSecond = Math.max(allocated - lastAllocatedBytes, 0) / ((now - lastAllocationNanos) / 1e9);
+		}
+		lastAllocationNanos = now;
+		lastAllocatedBytes = allocated;
+		return allocatedBytesPerSecond;
+	}
+
+	/**
+	 * @return the bytes allocated so far by all the live threads, or -1 if the JVM can't tell
+	 */
+	private static long getJvmAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean)threads;
+		if (!hotspotThreads.isThreadAllocatedMemorySupported() || !hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long total = 0;
+		for (long bytes : hotspotThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+}
@@ -0,0 +1,74 @@
+package sashas_erikh.subwaysim.metrics;
+
+import java.util.Map;
+
+/**
+ * What a running sim shows through JMX, e.g. in jconsole or VisualVM.
+ * @author Erik H
+ */
+public interface SimMetricsMXBean {
+	/**
+	 * @return the number of time steps done so far
+	 */
+	long getSteps();
+
+	/**
+	 * @return the current sim time, in seconds
+	 */
+	double getSimTime();
+
+	/**
+	 * @return time steps done per (real) second, lately
+	 */
+	double getStepsPerSecond();
+
+	/**
+	 * @return seconds of sim time per (real) second, lately
+	 */
+	double getSimSecondsPerWallSecond();
+
+	/**
+	 * @return how many Passengers have joined a Station's queue, counting transfers
+	 */
+	long getPassengersQueued();
+
+	/**
+	 * @return how many Passengers have reached their destinations
+	 */
+	long getPassengersCompleted();
+
+	/**
+	 * @return how many times a Train has arrived at a Station
+	 */
+	long getTrainArrivals();
+
+	/**
+	 * @return how many times a Train has left a Station
+	 */
+	long getTrainDepartures();
+
+	/**
+	 * @return how many Passengers are waiting at all the Stations
+	 */
+	int getPassengersWaiting();
+
+	/**
+	 * @return bytes allocated per (real) second by the whole JVM, lately, or -1 if the JVM can't tell
+	 */
+	double getAllocatedBytesPerSecond();
+
+	/**
+	 * @return how many Passengers are waiting at each Station, by Station name
+	 */
+	Map<String, Integer> getQueueLengths();
+
+	/**
+	 * @return how many Passengers are on each Train, by Train name
+	 */
+	Map<String, Integer> getTrainLoads();
+
+	/**
+	 * @return what each Train is doing, by Train name
+	 */
+	Map<String, String> getTrainStates();
+}
@@ -0,0 +1,112 @@
+package sashas_erikh.subwaysim.network;
+
+import java.util.Random;
+
+/**
+ * Walker's alias method for drawing from a fixed discrete distribution in
+ * constant time, built with Vose's algorithm.
+ * Each draw uses one random double and allocates nothing.
+ * @author Erik H
+ */
+public class AliasTable {
+	private double[] probs; // The chance of keeping each column instead of taking its alias
+	private int[] aliases;
+
+	/**
+	 * Build a table for drawing index i with probability weights[i] / sum(weights).
+	 * @param weights the (non-negative) weights
+	 * @throws RuntimeException if there are no weights, or they don't add up to something positive
+	 */
+	public AliasTable(double[] weights) throws RuntimeException {
+		int n = weights.length;
+		double total = 0.0;
+		for (double weight : weights) {
+			if (!(weight >= 0.0) || Double.isInfinite(weight)) {
+				throw new RuntimeException("Error: weights must be non-negative numbers; got: " + weight);
+			}
+			total += weight;
+		}
+		if (n == 0 || !(total > 0.0)) {
+			throw new RuntimeException("Error: at least one weight must be positive");
+		}
+
+		probs = new double[n];
+		aliases = new int[n];
+
+		// Scale the weights so they average 1, and split them into the
+		// columns that are too small and too big
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int numSmall = 0;
+		int numLarge = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1.0) {
+				small[numSmall++] = i;
+			}
+			else {
+				large[numLarge++] = i;
+			}
+		}
+
+		// Top up each small column with some of a large one
+		while (numSmall > 0 && numLarge > 0) {
+			int less = small[--numSmall];
+			int more = large[--numLarge];
+			probs[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+			if (scaled[more] < 1.0) {
+				small[numSmall++] = more;
+			}
+			else {
+				large[numLarge++] = more;
+			}
+		}
+
+		// Whatever's left is full, give or take some rounding. A column with no
+		// weight at all is never made full, so it can't be drawn.
+		while (numLarge > 0) {
+			int i = large[--numLarge];
+			probs[i] = 1.0;
+			aliases[i] = i;
+		}
+		while (numSmall > 0) {
+			int i = small[--numSmall];
+			probs[i] = weights[i] > 0.0 ? 1.0 : 0.0;
+			aliases[i] = weights[i] > 0.0 ? i : largestWeight(weights);
+		}
+	}
+
+	/**
+	 * Draw an index.
+	 * @param rng the RNG to draw with
+	 * @return the index
+	 */
+	public int sample(Random rng) {
+		double u = rng.nextDouble() * probs.length;
+		int column = Math.min((int)u, probs.length - 1);
+		return (u - column) < probs[column] ? column : aliases[column];
+	}
+
+	/**
+	 * @return the number of indexes that can be drawn from
+	 */
+	public int size() {
+		return probs.length;
+	}
+
+	/**
+	 * @return the index of the biggest weight
+	 */
+	private static int largestWeight(double[] weights) {
+		int largest = 0;
+		for (int i = 1; i < weights.length; i++) {
+			if (weights[i] > weights[largest]) {
+				largest = i;
+			}
+		}
+		return largest;
+	}
+}
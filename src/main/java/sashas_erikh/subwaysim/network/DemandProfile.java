@@ -0,0 +1,188 @@
+package sashas_erikh.subwaysim.network;
+
+import sashas_erikh.subwaysim.random.PiecewiseRate;
+
+import rmacdonald_kingsu.util.ConfigFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * How busy each Station is over the course of a day (or some other period),
+ * as multipliers on its usual spawn rate, from a config file's keys:
+ * <pre>
+ * demandProfilePeriod &lt;length of the period, in seconds; 86400 by default&gt;
+ * demandProfile &lt;multiplier&gt;...                  for every Station
+ * demandProfile:&lt;station&gt; &lt;multiplier&gt;...        for one Station
+ * demandProfileFile &lt;path to a CSV rate table&gt;
+ * </pre>
+ * The multipliers in a demandProfile key split the period into equal slots,
+ * so 96 of them over a day gives 15 minute slots.
+ *
+ * The CSV rate table's first row is "Time," followed by Station names, or *
+ * for every Station without a column of its own. Each row after that is the
+ * time its slot starts (the first at 0, in seconds) followed by the
+ * Stations' multipliers; each slot lasts until the next row's time, and the
+ * last until the end of the period. An empty cell uses the * column.
+ *
+ * A Station's own demandProfile: key comes first, then its column in the
+ * CSV, then the CSV's * column, then the demandProfile key. Stations with
+ * none of these spawn at their usual rate.
+ * @author Erik H
+ */
+public class DemandProfile {
+	private PiecewiseRate[] multipliers; // For each Station; null if it doesn't have a profile
+
+	/**
+	 * Read the demand profiles from a config.
+	 * @param config the config
+	 * @param network the network, for the Stations' names
+	 * @return the profiles, or null if the config doesn't have any
+	 * @throws RuntimeException if the profiles don't make sense or the CSV file can't be read
+	 */
+	public static DemandProfile fromConfig(ConfigFile config, NetworkModel network) throws RuntimeException {
+		if (!config.containsKey("demandProfile") && config.getKeySubset("demandProfile:").isEmpty() && !config.containsKey("demandProfileFile")) {
+			return null;
+		}
+		double period = config.getDouble("demandProfilePeriod");
+		if (!(period > 0)) {
+			throw new RuntimeException("Error: demandProfilePeriod must be positive; got " + period);
+		}
+
+		DemandProfile profile = new DemandProfile();
+		profile.multipliers = new PiecewiseRate[network.getNumStations()];
+		if (config.containsKey("demandProfile")) {
+			PiecewiseRate everywhere = parseSlots(config, "demandProfile", period);
+			for (int i = 0; i < network.getNumStations(); i++) {
+				profile.multipliers[i] = everywhere;
+			}
+		}
+		if (config.containsKey("demandProfileFile")) {
+			profile.readTable(config.get("demandProfileFile"), network, period);
+		}
+		for (String key : config.getKeySubset("demandProfile:")) {
+			String name = key.substring("demandProfile:".length());
+			int station = network.getStationId(name);
+			if (station == -1) {
+				throw new RuntimeException("Error: no such station for key: " + key);
+			}
+			profile.multipliers[station] = parseSlots(config, key, period);
+		}
+		return profile;
+	}
+
+	/**
+	 * @param station a Station's id
+	 * @param baseRate the Station's usual spawn rate, in Passengers per second
+	 * @return the Station's spawn rate over time, or null if it doesn't have a profile
+	 */
+	public PiecewiseRate getRates(int station, double baseRate) {
+		return (multipliers[station] == null) ? null : multipliers[station].scale(baseRate);
+	}
+
+	/**
+	 * @return the equal slots given by a key's multipliers
+	 */
+	private static PiecewiseRate parseSlots(ConfigFile config, String key, double period) throws RuntimeException {
+		int numSlots = config.getNumParams(key);
+		double[] starts = new double[numSlots];
+		double[] rates = new double[numSlots];
+		for (int slot = 0; slot < numSlots; slot++) {
+			starts[slot] = period * slot / numSlots;
+			try {
+				rates[slot] = Double.parseDouble(config.get(key, slot));
+			}
+			catch (NumberFormatException e) {
+				throw new RuntimeException("Error: bad multiplier for key: " + key + ": " + e);
+			}
+		}
+		return new PiecewiseRate(starts, rates, period);
+	}
+
+	/**
+	 * Fill in profiles from a CSV rate table.
+	 */
+	private void readTable(String filename, NetworkModel network, double period) throws RuntimeException {
+		List<String[]> rows = new ArrayList<String[]>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					rows.add(line.split(",", -1));
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem reading demand profile file: " + e);
+		}
+		if (rows.size() < 2) {
+			throw new RuntimeException("Error: " + filename + " needs a header row and at least one slot");
+		}
+
+		String[] header = rows.get(0);
+		int numSlots = rows.size() - 1;
+		double[] starts = new double[numSlots];
+		double[][] columns = new double[header.length][numSlots];
+		for (int slot = 0; slot < numSlots; slot++) {
+			String[] row = rows.get(slot + 1);
+			if (row.length > header.length) {
+				throw new RuntimeException("Error: " + filename + " row " + (slot + 2) + " has more columns than the header");
+			}
+			for (int column = 0; column < header.length; column++) {
+				String cell = (column < row.length) ? row[column].trim() : "";
+				try {
+					columns[column][slot] = cell.isEmpty() ? Double.NaN : Double.parseDouble(cell);
+				}
+				catch (NumberFormatException e) {
+					throw new RuntimeException("Error: bad number in " + filename + " row " + (slot + 2) + ": " + e);
+				}
+			}
+			starts[slot] = columns[0][slot];
+		}
+
+		// The * column, if there is one, fills in everything else
+		double[] everywhere = null;
+		for (int column = 1; column < header.length; column++) {
+			if (header[column].trim().equals("*")) {
+				everywhere = columns[column];
+			}
+		}
+		if (everywhere != null) {
+			PiecewiseRate rates = tableColumn(starts, everywhere, null, filename, period);
+			for (int i = 0; i < multipliers.length; i++) {
+				multipliers[i] = rates;
+			}
+		}
+		for (int column = 1; column < header.length; column++) {
+			String name = header[column].trim();
+			if (name.equals("*")) {
+				continue;
+			}
+			int station = network.getStationId(name);
+			if (station == -1) {
+				throw new RuntimeException("Error: no such station in " + filename + ": " + name);
+			}
+			multipliers[station] = tableColumn(starts, columns[column], everywhere, filename, period);
+		}
+	}
+
+	/**
+	 * @return a column of the rate table, with empty cells filled in from the * column
+	 */
+	private static PiecewiseRate tableColumn(double[] starts, double[] column, double[] everywhere, String filename, double period) throws RuntimeException {
+		double[] rates = column.clone();
+		for (int slot = 0; slot < rates.length; slot++) {
+			if (Double.isNaN(rates[slot])) {
+				if (everywhere == null || Double.isNaN(everywhere[slot])) {
+					throw new RuntimeException("Error: " + filename + " is missing a multiplier for the slot starting at " + starts[slot]);
+				}
+				rates[slot] = everywhere[slot];
+			}
+		}
+		return new PiecewiseRate(starts, rates, period);
+	}
+}
@@ -0,0 +1,76 @@
+package sashas_erikh.subwaysim.network;
+
+import java.util.Random;
+
+/**
+ * Draws the destination Station for each new Passenger, according to the
+ * network's demand: each origin's row of the demand matrix if it has one,
+ * otherwise the Stations' attractiveness weights.
+ *
+ * The origin itself is never drawn, so there's no need to draw again. When
+ * every Station is equally attractive and there's no demand matrix, a
+ * destination is drawn uniformly from the other Stations without any tables;
+ * otherwise each origin gets its own AliasTable, built once up front.
+ * Either way, drawing is constant time and allocates nothing.
+ * @author Erik H
+ */
+public class DestinationSampler {
+	private int numStations;
+	private boolean uniform;
+
+	/**
+	 * Indexed by origin id; each draws an index into the matching row of destinations.
+	 */
+	private AliasTable[] tables;
+	private int[][] destinations; // The destination ids each origin's table draws from
+
+	/**
+	 * @param network the network whose demand to sample
+	 * @throws RuntimeException if a Station has nowhere its Passengers would want to go
+	 */
+	public DestinationSampler(NetworkModel network) throws RuntimeException {
+		numStations = network.getNumStations();
+		uniform = network.hasUniformDemand();
+		if (uniform) {
+			return;
+		}
+
+		tables = new AliasTable[numStations];
+		destinations = new int[numStations][];
+		for (int origin = 0; origin < numStations; origin++) {
+			// Leave the origin out entirely, rather than giving it no weight
+			double[] weights = new double[numStations - 1];
+			int[] dests = new int[numStations - 1];
+			int n = 0;
+			for (int dest = 0; dest < numStations; dest++) {
+				if (dest != origin) {
+					weights[n] = network.getDemand(origin, dest);
+					dests[n] = dest;
+					n++;
+				}
+			}
+			try {
+				tables[origin] = new AliasTable(weights);
+			}
+			catch (RuntimeException e) {
+				throw new RuntimeException("Error: passengers spawning at station " + network.getStationName(origin) + " have nowhere to go: " + e.getMessage());
+			}
+			destinations[origin] = dests;
+		}
+	}
+
+	/**
+	 * Draw a destination for a Passenger.
+	 * @param origin the id of the Station where the Passenger spawned
+	 * @param rng the RNG to draw with
+	 * @return the id of the destination Station; never the origin
+	 */
+	public int sample(int origin, Random rng) {
+		if (uniform) {
+			// Draw from the other Stations by skipping over the origin
+			int dest = rng.nextInt(numStations - 1);
+			return dest >= origin ? dest + 1 : dest;
+		}
+		return destinations[origin][tables[origin].sample(rng)];
+	}
+}
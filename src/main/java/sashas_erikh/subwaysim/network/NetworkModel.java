@@ -0,0 +1,656 @@
+package sashas_erikh.subwaysim.network;
+
+import rmacdonald_kingsu.util.ConfigFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The layout of a subway network, compiled once from the station:, line:
+ * and train: keys of a config file (or loaded from a binary snapshot), and
+ * checked for mistakes. It never changes after it's created.
+ *
+ * Stations are numbered densely from 0. Each Station's mean time between
+ * Passenger spawns and attractiveness are stored in arrays indexed by that
+ * number. Each line is a loop through some of the Stations, stored as a
+ * successor table: for every Station, the next Station on the line (or -1
+ * if the line doesn't stop there) and how long it takes to get there. Lines
+ * can share Stations, which is where Passengers transfer. Each Train runs
+ * on one line, from a start Station.
+ *
+ * A config without any line: keys describes a single line, called "main",
+ * where each station: key gives the next Station and travel time, like the
+ * sim has always done.
+ *
+ * Where Passengers want to go is given by the Stations' attractiveness
+ * weights (1 unless the config says otherwise), or for origins that have a
+ * demand: key, by that origin's row of the demand matrix.
+ *
+ * Snapshots are written with write(...) and read with read(...), or from the
+ * command line with: <code>NetworkModel &lt;config file&gt; &lt;snapshot file&gt;</code>
+ * @author Erik H
+ */
+public final class NetworkModel {
+	public static final int MAGIC = 0x5355424e; // "SUBN"
+	public static final int VERSION = 3;
+	public static final String SNAPSHOTSUFFIX = "_network.bin";
+	/**
+	 * The name of the line in configs without any line: keys.
+	 */
+	public static final String DEFAULTLINE = "main";
+
+	private final String[] stationNames;
+	private final double[] timeBetweenSpawns; // Mean time between Passenger spawns, in seconds
+	private final double[] attractiveness; // How likely Passengers are to want to go to each Station
+	private final double[][] demand; // Indexed by origin, then destination; null for origins that go by attractiveness
+	private final String[] lineNames;
+	private final int[][] nextStations; // Indexed by line, then Station; -1 where the line doesn't stop
+	private final double[][] travelTimes; // To the next Station on the line, in seconds
+	private final String[] trainNames;
+	private final int[] trainStartStations;
+	private final int[] trainLines;
+	private final Map<String, Integer> stationIds; // Station names mapped to their ids
+
+	/**
+	 * Create and validate a network model. The arrays are not copied.
+	 * @throws RuntimeException if the network doesn't make sense
+	 */
+	private NetworkModel(String[] stationNames, double[] timeBetweenSpawns, double[] attractiveness, double[][] demand,
+			String[] lineNames, int[][] nextStations, double[][] travelTimes,
+			String[] trainNames, int[] trainStartStations, int[] trainLines) throws RuntimeException {
+		this.stationNames = stationNames;
+		this.timeBetweenSpawns = timeBetweenSpawns;
+		this.attractiveness = attractiveness;
+		this.demand = demand;
+		this.lineNames = lineNames;
+		this.nextStations = nextStations;
+		this.travelTimes = travelTimes;
+		this.trainNames = trainNames;
+		this.trainStartStations = trainStartStations;
+		this.trainLines = trainLines;
+
+		stationIds = new HashMap<String, Integer>();
+		for (int i = 0; i < stationNames.length; i++) {
+			if (stationIds.put(stationNames[i], i) != null) {
+				throw new RuntimeException("Error: station " + stationNames[i] + " is defined more than once");
+			}
+		}
+		validate();
+	}
+
+	/**
+	 * Compile the network from a config file's station:, line:, demand: and train: keys.
+	 *
+	 * Stations are numbered in the order the sim has always stepped through
+	 * them (the iteration order of a HashMap of their names), and Trains in the
+	 * order the config file gives their keys back, so that existing configs
+	 * and seeds give the same results as before. Lines are numbered in
+	 * alphabetical order.
+	 * @param config the config
+	 * @return the network
+	 * @throws RuntimeException if a key is malformed, or the network doesn't make sense
+	 */
+	public static NetworkModel fromConfig(ConfigFile config) throws RuntimeException {
+		Set<String> stationKeys = config.getKeySubset("station:"); // Key format is station:name
+		Map<String, String> keysByName = new HashMap<String, String>();
+		for (String key : stationKeys) {
+			keysByName.put(key.split(":", 2)[1], key);
+		}
+
+		int numStations = keysByName.size();
+		String[] stationNames = keysByName.keySet().toArray(new String[numStations]);
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		for (int i = 0; i < numStations; i++) {
+			ids.put(stationNames[i], i);
+		}
+
+		// Without any line: keys, the station: keys say where to go next
+		Map<String, String> lineKeys = new TreeMap<String, String>();
+		for (String key : config.getKeySubset("line:")) {
+			lineKeys.put(key.split(":", 2)[1], key);
+		}
+		boolean singleLine = lineKeys.isEmpty();
+		int firstParam = singleLine ? 2 : 0; // Where the time between spawns is
+
+		String[] lineNames = singleLine ? new String[] {DEFAULTLINE} : lineKeys.keySet().toArray(new String[lineKeys.size()]);
+		int[][] nextStations = new int[lineNames.length][numStations];
+		double[][] travelTimes = new double[lineNames.length][numStations];
+		for (int[] next : nextStations) {
+			Arrays.fill(next, -1);
+		}
+
+		double[] timeBetweenSpawns = new double[numStations];
+		double[] attractiveness = new double[numStations];
+		for (int i = 0; i < numStations; i++) {
+			String key = keysByName.get(stationNames[i]);
+			if (singleLine) {
+				// station:<name> <next station> <travel time> <time between spawns> [attractiveness]
+				if (config.getNumParams(key) < 3) {
+					throw new RuntimeException("Error: expected a destination, travel time and time between spawns for key: " + key);
+				}
+				String destName = config.get(key, 0);
+				Integer dest = ids.get(destName);
+				if (dest == null) {
+					throw new RuntimeException("Error: destination station " + destName + " doesn't exist, for key: " + key);
+				}
+				nextStations[0][i] = dest;
+				travelTimes[0][i] = parseDouble(config, key, 1, "travel time");
+			}
+			// or with lines, station:<name> <time between spawns> [attractiveness]
+			else if (config.getNumParams(key) < 1) {
+				throw new RuntimeException("Error: expected a time between spawns for key: " + key);
+			}
+			timeBetweenSpawns[i] = parseDouble(config, key, firstParam, "time between spawns");
+			attractiveness[i] = config.getNumParams(key) > firstParam + 1 ? parseDouble(config, key, firstParam + 1, "attractiveness") : 1.0;
+		}
+
+		// line:<name> <station> <travel time to the next one> [<station> <travel time to the next one>]...
+		// The last travel time is back to the first station.
+		for (int line = 0; line < lineNames.length && !singleLine; line++) {
+			String key = lineKeys.get(lineNames[line]);
+			int numParams = config.getNumParams(key);
+			if (numParams < 4 || numParams % 2 != 0) {
+				throw new RuntimeException("Error: expected at least two station and travel time pairs for key: " + key);
+			}
+			int first = -1;
+			int previous = -1;
+			for (int param = 0; param < numParams; param += 2) {
+				Integer station = ids.get(config.get(key, param));
+				if (station == null) {
+					throw new RuntimeException("Error: station " + config.get(key, param) + " doesn't exist, for key: " + key);
+				}
+				if (nextStations[line][station] != -1 || station == first) {
+					throw new RuntimeException("Error: line " + lineNames[line] + " stops at " + config.get(key, param) + " more than once");
+				}
+				if (previous == -1) {
+					first = station;
+				}
+				else {
+					nextStations[line][previous] = station;
+				}
+				travelTimes[line][station] = parseDouble(config, key, param + 1, "travel time");
+				previous = station;
+			}
+			nextStations[line][previous] = first;
+		}
+
+		// demand:<origin> <destination> <weight> [<destination> <weight>]...
+		double[][] demand = new double[numStations][];
+		for (String key : config.getKeySubset("demand:")) {
+			Integer origin = ids.get(key.split(":", 2)[1]);
+			if (origin == null) {
+				throw new RuntimeException("Error: origin station doesn't exist, for key: " + key);
+			}
+			int numParams = config.getNumParams(key);
+			if (numParams == 0 || numParams % 2 != 0) {
+				throw new RuntimeException("Error: expected destination and weight pairs for key: " + key);
+			}
+			demand[origin] = new double[numStations];
+			for (int param = 0; param < numParams; param += 2) {
+				Integer dest = ids.get(config.get(key, param));
+				if (dest == null) {
+					throw new RuntimeException("Error: destination station " + config.get(key, param) + " doesn't exist, for key: " + key);
+				}
+				demand[origin][dest] = parseDouble(config, key, param + 1, "demand weight");
+			}
+		}
+
+		// train:<name> <start station> [line, if there's more than one]
+		Set<String> trainKeys = config.getKeySubset("train:");
+		String[] trainNames = new String[trainKeys.size()];
+		int[] trainStartStations = new int[trainKeys.size()];
+		int[] trainLines = new int[trainKeys.size()];
+		int numTrains = 0;
+		for (String key : trainKeys) {
+			trainNames[numTrains] = key.split(":", 2)[1];
+			if (config.getNumParams(key) < 1) {
+				throw new RuntimeException("Error: start station not found for key: " + key);
+			}
+			Integer start = ids.get(config.get(key, 0));
+			if (start == null) {
+				throw new RuntimeException("Error: start station " + config.get(key, 0) + " doesn't exist, for key: " + key);
+			}
+			trainStartStations[numTrains] = start;
+
+			if (config.getNumParams(key) > 1) {
+				trainLines[numTrains] = Arrays.asList(lineNames).indexOf(config.get(key, 1));
+				if (trainLines[numTrains] == -1) {
+					throw new RuntimeException("Error: line " + config.get(key, 1) + " doesn't exist, for key: " + key);
+				}
+			}
+			else if (lineNames.length > 1) {
+				throw new RuntimeException("Error: expected a line for key: " + key);
+			}
+			numTrains++;
+		}
+
+		return new NetworkModel(stationNames, timeBetweenSpawns, attractiveness, demand,
+			lineNames, nextStations, travelTimes, trainNames, trainStartStations, trainLines);
+	}
+
+	/**
+	 * @return one of a config key's parameters, as a double
+	 * @throws RuntimeException if it isn't a number
+	 */
+	private static double parseDouble(ConfigFile config, String key, int param, String what) throws RuntimeException {
+		try {
+			return Double.parseDouble(config.get(key, param));
+		}
+		catch (NumberFormatException e) {
+			throw new RuntimeException("Error: bad " + what + " for key: " + key + ": " + e);
+		}
+	}
+
+	/**
+	 * Check that every Station is somewhere a Train will go, that every line
+	 * has a Train, that no two Trains start at the same Station on the same
+	 * line, that all the times make sense, and that Passengers at every
+	 * Station have somewhere to go.
+	 * @throws RuntimeException if any of that isn't true
+	 */
+	private void validate() throws RuntimeException {
+		int numStations = stationNames.length;
+		if (numStations < 2) {
+			throw new RuntimeException("Error: the network needs at least two stations");
+		}
+		if (trainNames.length == 0) {
+			throw new RuntimeException("Error: the network needs at least one train");
+		}
+		for (int i = 0; i < numStations; i++) {
+			if (!(timeBetweenSpawns[i] > 0.0)) {
+				throw new RuntimeException("Error: station " + stationNames[i] + " needs a positive time between spawns: " + timeBetweenSpawns[i]);
+			}
+			if (!(attractiveness[i] >= 0.0) || Double.isInfinite(attractiveness[i])) {
+				throw new RuntimeException("Error: station " + stationNames[i] + " needs a non-negative attractiveness: " + attractiveness[i]);
+			}
+		}
+		for (int line = 0; line < lineNames.length; line++) {
+			for (int i = 0; i < numStations; i++) {
+				int next = nextStations[line][i];
+				if (next == -1) {
+					continue;
+				}
+				if (next < 0 || next >= numStations) {
+					throw new RuntimeException("Error: station " + stationNames[i] + " has a destination that doesn't exist on line " + lineNames[line]);
+				}
+				if (next == i) {
+					throw new RuntimeException("Error: station " + stationNames[i] + " can't be its own destination on line " + lineNames[line]);
+				}
+				if (!(travelTimes[line][i] >= 0.0)) {
+					throw new RuntimeException("Error: station " + stationNames[i] + " has a negative travel time on line " + lineNames[line] + ": " + travelTimes[line][i]);
+				}
+			}
+		}
+		for (int origin = 0; origin < numStations; origin++) {
+			double total = 0.0;
+			for (int dest = 0; dest < numStations; dest++) {
+				double weight = getDemand(origin, dest);
+				if (!(weight >= 0.0) || Double.isInfinite(weight)) {
+					throw new RuntimeException("Error: demand from " + stationNames[origin] + " to " + stationNames[dest] + " must be non-negative: " + weight);
+				}
+				if (dest != origin) {
+					total += weight;
+				}
+			}
+			if (!(total > 0.0)) {
+				throw new RuntimeException("Error: passengers spawning at station " + stationNames[origin] + " have nowhere to go");
+			}
+		}
+
+		// Follow each Train around its line, marking the Stations it visits
+		boolean[] visited = new boolean[numStations];
+		boolean[] lineHasTrain = new boolean[lineNames.length];
+		Map<Long, String> trainsByStart = new HashMap<Long, String>();
+		for (int i = 0; i < trainNames.length; i++) {
+			int start = trainStartStations[i];
+			int line = trainLines[i];
+			if (line < 0 || line >= lineNames.length) {
+				throw new RuntimeException("Error: train " + trainNames[i] + " is on a line that doesn't exist");
+			}
+			if (start < 0 || start >= numStations || nextStations[line][start] == -1) {
+				throw new RuntimeException("Error: train " + trainNames[i] + " starts at a station that isn't on line " + lineNames[line]);
+			}
+			String other = trainsByStart.put((long)line * numStations + start, trainNames[i]);
+			if (other != null) {
+				throw new RuntimeException("Error: can't have multiple trains start at same station; " + other + " and " + trainNames[i] + " both start at " + stationNames[start]);
+			}
+			lineHasTrain[line] = true;
+			boolean[] visitedOnLine = new boolean[numStations];
+			for (int station = start; !visitedOnLine[station]; station = nextStations[line][station]) {
+				visitedOnLine[station] = true;
+				visited[station] = true;
+			}
+		}
+
+		for (int line = 0; line < lineNames.length; line++) {
+			if (!lineHasTrain[line]) {
+				throw new RuntimeException("Error: line " + lineNames[line] + " has no trains");
+			}
+		}
+		List<String> unreachable = new ArrayList<String>();
+		for (int i = 0; i < numStations; i++) {
+			if (!visited[i]) {
+				unreachable.add(stationNames[i]);
+			}
+		}
+		if (!unreachable.isEmpty()) {
+			throw new RuntimeException("Error: no train ever visits these stations: " + unreachable);
+		}
+	}
+
+	/**
+	 * Write this network to a binary snapshot file.
+	 * @param file the snapshot file
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(stationNames.length);
+			for (int i = 0; i < stationNames.length; i++) {
+				out.writeUTF(stationNames[i]);
+				out.writeDouble(timeBetweenSpawns[i]);
+				out.writeDouble(attractiveness[i]);
+			}
+			for (int i = 0; i < stationNames.length; i++) {
+				out.writeBoolean(demand[i] != null);
+				if (demand[i] != null) {
+					for (double weight : demand[i]) {
+						out.writeDouble(weight);
+					}
+				}
+			}
+			out.writeInt(lineNames.length);
+			for (int line = 0; line < lineNames.length; line++) {
+				out.writeUTF(lineNames[line]);
+				for (int i = 0; i < stationNames.length; i++) {
+					out.writeInt(nextStations[line][i]);
+					out.writeDouble(travelTimes[line][i]);
+				}
+			}
+			out.writeInt(trainNames.length);
+			for (int i = 0; i < trainNames.length; i++) {
+				out.writeUTF(trainNames[i]);
+				out.writeInt(trainStartStations[i]);
+				out.writeInt(trainLines[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read a network from a binary snapshot file written by write(...).
+	 * Snapshots from before there were lines are read as a single line.
+	 * @param file the snapshot file
+	 * @return the network
+	 * @throws IOException if the file can't be read, or isn't a network snapshot
+	 * @throws RuntimeException if the network doesn't make sense
+	 */
+	public static NetworkModel read(File file) throws IOException, RuntimeException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			// Version 1 snapshots don't have any demand, and versions 1 and 2 have one line
+			int version = in.readInt() == MAGIC ? in.readInt() : -1;
+			if (version < 1 || version > VERSION) {
+				throw new IOException("Error: " + file + " isn't a version 1 to " + VERSION + " network snapshot");
+			}
+			int numStations = in.readInt();
+			String[] stationNames = new String[numStations];
+			double[] timeBetweenSpawns = new double[numStations];
+			double[] attractiveness = new double[numStations];
+			String[] lineNames = {DEFAULTLINE};
+			int[][] nextStations = new int[1][numStations];
+			double[][] travelTimes = new double[1][numStations];
+			for (int i = 0; i < numStations; i++) {
+				stationNames[i] = in.readUTF();
+				if (version < 3) {
+					nextStations[0][i] = in.readInt();
+					travelTimes[0][i] = in.readDouble();
+				}
+				timeBetweenSpawns[i] = in.readDouble();
+				attractiveness[i] = version > 1 ? in.readDouble() : 1.0;
+			}
+			double[][] demand = new double[numStations][];
+			for (int i = 0; i < numStations && version > 1; i++) {
+				if (in.readBoolean()) {
+					demand[i] = readDoubles(in, numStations);
+				}
+			}
+			if (version >= 3) {
+				int numLines = in.readInt();
+				lineNames = new String[numLines];
+				nextStations = new int[numLines][numStations];
+				travelTimes = new double[numLines][numStations];
+				for (int line = 0; line < numLines; line++) {
+					lineNames[line] = in.readUTF();
+					for (int i = 0; i < numStations; i++) {
+						nextStations[line][i] = in.readInt();
+						travelTimes[line][i] = in.readDouble();
+					}
+				}
+			}
+			int numTrains = in.readInt();
+			String[] trainNames = new String[numTrains];
+			int[] trainStartStations = new int[numTrains];
+			int[] trainLines = new int[numTrains];
+			for (int i = 0; i < numTrains; i++) {
+				trainNames[i] = in.readUTF();
+				trainStartStations[i] = in.readInt();
+				trainLines[i] = version >= 3 ? in.readInt() : 0;
+			}
+			return new NetworkModel(stationNames, timeBetweenSpawns, attractiveness, demand,
+				lineNames, nextStations, travelTimes, trainNames, trainStartStations, trainLines);
+		}
+	}
+
+	/**
+	 * @return the next n doubles from a snapshot
+	 */
+	private static double[] readDoubles(DataInputStream in, int n) throws IOException {
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = in.readDouble();
+		}
+		return values;
+	}
+
+	/**
+	 * @return the number of Stations
+	 */
+	public int getNumStations() {
+		return stationNames.length;
+	}
+
+	/**
+	 * @param station a Station's id
+	 * @return the Station's name
+	 */
+	public String getStationName(int station) {
+		return stationNames[station];
+	}
+
+	/**
+	 * @param name a Station's name
+	 * @return the Station's id, or -1 if there's no Station with that name
+	 */
+	public int getStationId(String name) {
+		Integer id = stationIds.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @return the number of lines
+	 */
+	public int getNumLines() {
+		return lineNames.length;
+	}
+
+	/**
+	 * @param line a line's number
+	 * @return the line's name
+	 */
+	public String getLineName(int line) {
+		return lineNames[line];
+	}
+
+	/**
+	 * @param line a line's number
+	 * @param station a Station's id
+	 * @return if the line stops at the Station
+	 */
+	public boolean isOnLine(int line, int station) {
+		return nextStations[line][station] != -1;
+	}
+
+	/**
+	 * @param line a line's number
+	 * @param station a Station's id
+	 * @return the id of the next Station on the line, or -1 if the line doesn't stop at this one
+	 */
+	public int getNextStation(int line, int station) {
+		return nextStations[line][station];
+	}
+
+	/**
+	 * @param line a line's number
+	 * @param station a Station's id
+	 * @return the time it takes to get to the next Station on the line, in seconds
+	 */
+	public double getTravelTime(int line, int station) {
+		return travelTimes[line][station];
+	}
+
+	/**
+	 * @param station a Station's id
+	 * @return the Station's mean time between Passenger spawns, in seconds
+	 */
+	public double getTimeBetweenSpawns(int station) {
+		return timeBetweenSpawns[station];
+	}
+
+	/**
+	 * @param station a Station's id
+	 * @return how attractive the Station is as a destination, relative to the others
+	 */
+	public double getAttractiveness(int station) {
+		return attractiveness[station];
+	}
+
+	/**
+	 * @param origin the id of the Station where a Passenger spawns
+	 * @param dest the id of a possible destination Station
+	 * @return the (unnormalized) weight of the Passenger wanting to go to dest;
+	 * the origin's demand matrix row, or else dest's attractiveness
+	 */
+	public double getDemand(int origin, int dest) {
+		return demand[origin] != null ? demand[origin][dest] : attractiveness[dest];
+	}
+
+	/**
+	 * @return if Passengers are equally likely to want to go to any Station (other than where they are)
+	 */
+	public boolean hasUniformDemand() {
+		for (int i = 0; i < stationNames.length; i++) {
+			if (demand[i] != null || attractiveness[i] != attractiveness[0]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of Trains
+	 */
+	public int getNumTrains() {
+		return trainNames.length;
+	}
+
+	/**
+	 * @param train a Train's number
+	 * @return the Train's name
+	 */
+	public String getTrainName(int train) {
+		return trainNames[train];
+	}
+
+	/**
+	 * @param train a Train's number
+	 * @return the id of the Station where the Train starts
+	 */
+	public int getTrainStartStation(int train) {
+		return trainStartStations[train];
+	}
+
+	/**
+	 * @param train a Train's number
+	 * @return the number of the line the Train runs on
+	 */
+	public int getTrainLine(int train) {
+		return trainLines[train];
+	}
+
+	/**
+	 * @return the Station names, in id order
+	 */
+	public List<String> getStationNames() {
+		return Arrays.asList(stationNames.clone());
+	}
+
+	/**
+	 * @return a String representation of the network; for each line, each Station, where it goes, and how long it takes
+	 */
+	public String toString() {
+		Map<String, Map<String, String>> lines = new LinkedHashMap<String, Map<String, String>>();
+		for (int line = 0; line < lineNames.length; line++) {
+			Map<String, String> track = new LinkedHashMap<String, String>();
+			for (int i = 0; i < stationNames.length; i++) {
+				if (isOnLine(line, i)) {
+					track.put(stationNames[i], stationNames[nextStations[line][i]] + " in " + travelTimes[line][i] + "secs");
+				}
+			}
+			lines.put(lineNames[line], track);
+		}
+		return "" + lines;
+	}
+
+	/**
+	 * Compile a config file's network into a binary snapshot.
+	 * @param args the config file, and the snapshot file to write
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("[FATAL] please specify the config file and the snapshot file, e.g. config/large_60wait_config.txt config/large" + SNAPSHOTSUFFIX);
+			System.exit(1);
+		}
+		try {
+			NetworkModel network = fromConfig(new ConfigFile(args[0]));
+			if (network.getNumLines() > 1) {
+				new RouteTable(network); // Make sure everyone can get where they're going
+			}
+			network.write(new File(args[1]));
+
+			long startTime = System.nanoTime();
+			read(new File(args[1]));
+			System.out.println("[INFO] Wrote " + network.getNumStations() + " stations, " + network.getNumLines() + " lines and "
+				+ network.getNumTrains() + " trains to " + args[1] + "; it loads in " + (System.nanoTime() - startTime) / 1e6 + " ms");
+		}
+		catch (Exception e) {
+			System.err.println("[FATAL] error compiling network: " + e);
+			System.exit(1);
+		}
+	}
+}
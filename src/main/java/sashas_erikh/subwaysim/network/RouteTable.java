@@ -0,0 +1,172 @@
+package sashas_erikh.subwaysim.network;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * The quickest way from every Station to every other Station, worked out once
+ * up front so that Passengers can decide which Train to get on, and where
+ * to get off, in constant time.
+ *
+ * For each destination, Dijkstra's algorithm is run backwards over the lines'
+ * travel times, giving a tree of quickest routes into that destination. From
+ * any Station, a Passenger takes the line the tree says to, and rides it to
+ * the first Station where the tree says to change lines (or to their
+ * destination). When two routes are equally quick, the one that stays on the
+ * same line is preferred. Since every Passenger heading to the same place
+ * follows the same tree, a Passenger who transfers is always on a route
+ * that continues from where they are.
+ *
+ * Uses memory proportional to the square of the number of Stations.
+ * @author Erik H
+ */
+public class RouteTable {
+	private int numStations;
+	/**
+	 * Indexed by origin * numStations + destination; the line to take, or -1
+	 * if the destination can't be reached (or is the origin).
+	 */
+	private short[] lines;
+	/**
+	 * Indexed the same way; the Station to get off at, to transfer or because it's the destination.
+	 */
+	private int[] alightStations;
+	/**
+	 * Indexed the same way; the quickest travel time, not counting waiting, in seconds.
+	 */
+	private double[] travelTimes;
+
+	/**
+	 * Work out the routes for a network.
+	 * @param network the network
+	 * @throws RuntimeException if there's no route between an origin and a destination Passengers want to go to
+	 */
+	public RouteTable(NetworkModel network) throws RuntimeException {
+		numStations = network.getNumStations();
+		int numLines = network.getNumLines();
+		if (numLines > Short.MAX_VALUE) {
+			throw new RuntimeException("Error: too many lines: " + numLines);
+		}
+		lines = new short[numStations * numStations];
+		alightStations = new int[numStations * numStations];
+		travelTimes = new double[numStations * numStations];
+		Arrays.fill(lines, (short)-1);
+		Arrays.fill(alightStations, -1);
+		Arrays.fill(travelTimes, Double.POSITIVE_INFINITY);
+
+		// For going backwards: the Stations (and their lines) that lead to each Station
+		int[] numIncoming = new int[numStations];
+		for (int line = 0; line < numLines; line++) {
+			for (int station = 0; station < numStations; station++) {
+				if (network.isOnLine(line, station)) {
+					numIncoming[network.getNextStation(line, station)]++;
+				}
+			}
+		}
+		int[][] incomingStations = new int[numStations][];
+		int[][] incomingLines = new int[numStations][];
+		for (int station = 0; station < numStations; station++) {
+			incomingStations[station] = new int[numIncoming[station]];
+			incomingLines[station] = new int[numIncoming[station]];
+			numIncoming[station] = 0;
+		}
+		for (int line = 0; line < numLines; line++) {
+			for (int station = 0; station < numStations; station++) {
+				if (network.isOnLine(line, station)) {
+					int next = network.getNextStation(line, station);
+					incomingStations[next][numIncoming[next]] = station;
+					incomingLines[next][numIncoming[next]] = line;
+					numIncoming[next]++;
+				}
+			}
+		}
+
+		double[] dist = new double[numStations];
+		int[] nextHop = new int[numStations];
+		int[] firstLine = new int[numStations];
+		boolean[] done = new boolean[numStations];
+		for (int dest = 0; dest < numStations; dest++) {
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			Arrays.fill(firstLine, -1);
+			Arrays.fill(done, false);
+			dist[dest] = 0.0;
+
+			// Queue entries are {distance, station}
+			PriorityQueue<double[]> queue = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0]));
+			queue.add(new double[] {0.0, dest});
+			while (!queue.isEmpty()) {
+				double[] entry = queue.poll();
+				int station = (int)entry[1];
+				if (done[station]) {
+					continue;
+				}
+				done[station] = true;
+
+				if (station != dest) {
+					// Our next hop was finished before us, so its way onwards is known
+					int hop = nextHop[station];
+					int index = station * numStations + dest;
+					lines[index] = (short)firstLine[station];
+					travelTimes[index] = dist[station];
+					alightStations[index] = (hop == dest || firstLine[hop] != firstLine[station]) ? hop : alightStations[hop * numStations + dest];
+				}
+
+				for (int i = 0; i < incomingStations[station].length; i++) {
+					int from = incomingStations[station][i];
+					int line = incomingLines[station][i];
+					if (done[from]) {
+						continue;
+					}
+					double candidate = dist[station] + network.getTravelTime(line, from);
+					// On a tie, stay on the same line rather than transferring
+					boolean better = candidate < dist[from]
+						|| (candidate == dist[from] && line == firstLine[station] && firstLine[from] != firstLine[station]);
+					if (better) {
+						dist[from] = candidate;
+						nextHop[from] = station;
+						firstLine[from] = line;
+						queue.add(new double[] {candidate, from});
+					}
+				}
+			}
+		}
+
+		// Make sure nobody gets stranded
+		for (int origin = 0; origin < numStations; origin++) {
+			for (int dest = 0; dest < numStations; dest++) {
+				if (origin != dest && network.getDemand(origin, dest) > 0.0 && getLine(origin, dest) == -1) {
+					throw new RuntimeException("Error: passengers want to go from " + network.getStationName(origin)
+						+ " to " + network.getStationName(dest) + ", but no line goes there");
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param station the id of the Station where a Passenger is
+	 * @param dest the id of their destination Station
+	 * @return the number of the line they should take, or -1 if there's no way there
+	 */
+	public int getLine(int station, int dest) {
+		return lines[station * numStations + dest];
+	}
+
+	/**
+	 * @param station the id of the Station where a Passenger is getting on a Train
+	 * @param dest the id of their destination Station
+	 * @return the id of the Station where they should get off, to transfer or because it's their destination
+	 */
+	public int getAlightStation(int station, int dest) {
+		return alightStations[station * numStations + dest];
+	}
+
+	/**
+	 * @param origin a Station's id
+	 * @param dest another Station's id
+	 * @return the quickest travel time between them, not counting waiting, in seconds;
+	 * infinity if there's no way there
+	 */
+	public double getTravelTime(int origin, int dest) {
+		return origin == dest ? 0.0 : travelTimes[origin * numStations + dest];
+	}
+}
@@ -0,0 +1,123 @@
+package sashas_erikh.subwaysim.output;
+
+import java.util.List;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A binary file of column blocks, as written by BinaryOutputSink.
+ * The layout is:
+ * <pre>
+ * int MAGIC, int VERSION
+ * blocks: int count, then each column's count values in turn
+ * footer: int numStations, Station names, int numTrains, Train names
+ * long offset of the footer, int MAGIC
+ * </pre>
+ * Names are stored as a short length followed by that many UTF-8 bytes.
+ * @author Erik H
+ */
+class BinaryBlockFile {
+	public static final int MAGIC = 0x53554257; // "SUBW"
+	public static final int VERSION = 1;
+
+	private FileChannel channel;
+
+	/**
+	 * Open a block file for writing, and write its header.
+	 * @param file the file
+	 * @throws FileNotFoundException if the file can't be opened
+	 */
+	public BinaryBlockFile(File file) throws FileNotFoundException {
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		try {
+			channel.truncate(0);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem truncating output file " + file + ": " + e);
+		}
+		ByteBuffer header = ByteBuffer.allocate(8);
+		header.putInt(MAGIC).putInt(VERSION);
+		header.flip();
+		write(header);
+	}
+
+	/**
+	 * Write everything remaining in a buffer to the file.
+	 * @param buffer the buffer, flipped for reading
+	 */
+	public void write(ByteBuffer buffer) {
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem writing output: " + e);
+		}
+	}
+
+	/**
+	 * Write the footer with the Station and Train names, and close the file.
+	 * @param stationNames the Station names, indexed by id
+	 * @param trainNames the Train names, indexed by id
+	 */
+	public void close(List<String> stationNames, List<String> trainNames) {
+		try {
+			long footerOffset = channel.position();
+			ByteBuffer footer = ByteBuffer.allocate(namesSize(stationNames) + namesSize(trainNames) + 12);
+			putNames(footer, stationNames);
+			putNames(footer, trainNames);
+			footer.putLong(footerOffset).putInt(MAGIC);
+			footer.flip();
+			write(footer);
+			channel.close();
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem closing output file: " + e);
+		}
+	}
+
+	/**
+	 * @param names a List of names
+	 * @return the number of bytes the names take up in the footer
+	 */
+	private static int namesSize(List<String> names) {
+		int size = 4;
+		for (String name : names) {
+			size += 2 + name.getBytes(StandardCharsets.UTF_8).length;
+		}
+		return size;
+	}
+
+	/**
+	 * Put a List of names into a buffer, preceded by how many there are.
+	 */
+	private static void putNames(ByteBuffer buffer, List<String> names) {
+		buffer.putInt(names.size());
+		for (String name : names) {
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			buffer.putShort((short)bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	/**
+	 * Get a List of names out of a buffer, as put there by putNames(...).
+	 * @param buffer the buffer
+	 * @param names the List to add the names to
+	 */
+	static void getNames(ByteBuffer buffer, List<String> names) {
+		int numNames = buffer.getInt();
+		for (int i = 0; i < numNames; i++) {
+			byte[] bytes = new byte[buffer.getShort()];
+			buffer.get(bytes);
+			names.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package sashas_erikh.subwaysim.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Converts the files written by BinaryOutputSink into the same
+ * _passenger.csv and _train.csv files that CsvOutputSink writes.
+ * @author Erik H
+ */
+public class BinaryOutputConverter {
+	private BinaryOutputConverter() {
+	}
+
+	/**
+	 * Convert a simulation's binary output files to CSV files.
+	 * @param outFileBase the prefix for the output files, including directory
+	 * @throws IOException if there is an error reading the binary files or writing the CSVs
+	 */
+	public static void convert(String outFileBase) throws IOException {
+		try (
+			FileChannel passengerChannel = new RandomAccessFile(new File(outFileBase + BinaryOutputSink.PASSENGERSUFFIX), "r").getChannel();
+			FileChannel trainChannel = new RandomAccessFile(new File(outFileBase + BinaryOutputSink.TRAINSUFFIX), "r").getChannel();
+		) {
+			List<String> stationNames = new ArrayList<String>();
+			List<String> trainNames = new ArrayList<String>();
+			long passengerEnd = readFooter(passengerChannel, stationNames, trainNames);
+			long trainEnd = readFooter(trainChannel, new ArrayList<String>(), new ArrayList<String>());
+
+			CsvOutputSink sink = new CsvOutputSink(outFileBase, stationNames);
+			for (String name : trainNames) {
+				sink.addTrain(name);
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(4 + BinaryOutputSink.BLOCKSIZE * Math.max(BinaryOutputSink.TRIPBYTES, BinaryOutputSink.DEPARTUREBYTES));
+
+			//
+			// Copy over the passenger trips, a block at a time
+			//
+			double[] totalTripTimes = new double[BinaryOutputSink.BLOCKSIZE];
+			double[] spawnTimes = new double[BinaryOutputSink.BLOCKSIZE];
+			double[] boardTimes = new double[BinaryOutputSink.BLOCKSIZE];
+			int[] spawnStations = new int[BinaryOutputSink.BLOCKSIZE];
+			int[] destStations = new int[BinaryOutputSink.BLOCKSIZE];
+			long position = 8;
+			while (position < passengerEnd) {
+				int count = readBlock(passengerChannel, buffer, position, BinaryOutputSink.TRIPBYTES);
+				position += 4 + (long)count * BinaryOutputSink.TRIPBYTES;
+				getDoubles(buffer, totalTripTimes, count);
+				getDoubles(buffer, spawnTimes, count);
+				getDoubles(buffer, boardTimes, count);
+				getInts(buffer, spawnStations, count);
+				getInts(buffer, destStations, count);
+				for (int i = 0; i < count; i++) {
+					sink.writeTrip(totalTripTimes[i], spawnTimes[i], boardTimes[i], spawnStations[i], destStations[i]);
+				}
+			}
+
+			//
+			// Copy over the train departures, a block at a time
+			//
+			int[] trains = new int[BinaryOutputSink.BLOCKSIZE];
+			int[] numPassengers = new int[BinaryOutputSink.BLOCKSIZE];
+			int[] fromStations = new int[BinaryOutputSink.BLOCKSIZE];
+			int[] toStations = new int[BinaryOutputSink.BLOCKSIZE];
+			double[] times = new double[BinaryOutputSink.BLOCKSIZE];
+			position = 8;
+			while (position < trainEnd) {
+				int count = readBlock(trainChannel, buffer, position, BinaryOutputSink.DEPARTUREBYTES);
+				position += 4 + (long)count * BinaryOutputSink.DEPARTUREBYTES;
+				getInts(buffer, trains, count);
+				getInts(buffer, numPassengers, count);
+				getInts(buffer, fromStations, count);
+				getInts(buffer, toStations, count);
+				getDoubles(buffer, times, count);
+				for (int i = 0; i < count; i++) {
+					sink.writeDeparture(trains[i], numPassengers[i], fromStations[i], toStations[i], times[i]);
+				}
+			}
+
+			sink.close();
+		}
+	}
+
+	/**
+	 * Check a binary file's header and read the names from its footer.
+	 * @param channel the file
+	 * @param stationNames the List to add the Station names to
+	 * @param trainNames the List to add the Train names to
+	 * @return the offset of the footer, which is where the blocks end
+	 * @throws IOException if the file isn't a complete binary output file
+	 */
+	private static long readFooter(FileChannel channel, List<String> stationNames, List<String> trainNames) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(12);
+		header.limit(8);
+		readFully(channel, header, 0);
+		if (header.getInt() != BinaryBlockFile.MAGIC || header.getInt() != BinaryBlockFile.VERSION) {
+			throw new IOException("Error: not a version " + BinaryBlockFile.VERSION + " binary output file");
+		}
+
+		header.clear();
+		readFully(channel, header, channel.size() - 12);
+		long footerOffset = header.getLong();
+		if (header.getInt() != BinaryBlockFile.MAGIC) {
+			throw new IOException("Error: binary output file has no footer; was the simulation closed properly?");
+		}
+
+		ByteBuffer footer = ByteBuffer.allocate((int)(channel.size() - 12 - footerOffset));
+		readFully(channel, footer, footerOffset);
+		BinaryBlockFile.getNames(footer, stationNames);
+		BinaryBlockFile.getNames(footer, trainNames);
+		return footerOffset;
+	}
+
+	/**
+	 * Read a block of records into a buffer.
+	 * @param channel the file
+	 * @param buffer the buffer to read into
+	 * @param position the offset of the block in the file
+	 * @param recordBytes the number of bytes in each record
+	 * @return the number of records in the block; the buffer is left positioned at the first column
+	 */
+	private static int readBlock(FileChannel channel, ByteBuffer buffer, long position, int recordBytes) throws IOException {
+		buffer.clear();
+		buffer.limit(4);
+		readFully(channel, buffer, position);
+		int count = buffer.getInt();
+		buffer.clear();
+		buffer.limit(count * recordBytes);
+		readFully(channel, buffer, position + 4);
+		return count;
+	}
+
+	/**
+	 * Fill a buffer from a file, starting at a given offset. The buffer is flipped for reading afterwards.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Error: unexpected end of binary output file");
+			}
+			position += read;
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Read a column of doubles from a buffer.
+	 */
+	private static void getDoubles(ByteBuffer buffer, double[] column, int count) {
+		buffer.asDoubleBuffer().get(column, 0, count);
+		buffer.position(buffer.position() + 8 * count);
+	}
+
+	/**
+	 * Read a column of ints from a buffer.
+	 */
+	private static void getInts(ByteBuffer buffer, int[] column, int count) {
+		buffer.asIntBuffer().get(column, 0, count);
+		buffer.position(buffer.position() + 4 * count);
+	}
+
+	/**
+	 * Convert a simulation's binary output files to CSV files.
+	 * @param args the prefix for the output files, including directory, e.g. data/small_60wait
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("[FATAL] please specify the output file prefix, e.g. data/small_60wait");
+			System.exit(1);
+		}
+		try {
+			convert(args[0]);
+		}
+		catch (IOException e) {
+			System.err.println("[FATAL] error converting binary output: " + e);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package sashas_erikh.subwaysim.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the simulation's records in a compact binary format: fixed width
+ * primitive columns with Stations and Trains stored as ids, written a block of
+ * records at a time through a FileChannel. All the Trains' departures go into
+ * one file. Use BinaryOutputConverter to turn the files back into the usual CSVs.
+ * @author Erik H
+ */
+public class BinaryOutputSink implements OutputSink {
+	public static final String PASSENGERSUFFIX = "_passenger.bin";
+	public static final String TRAINSUFFIX = "_train.bin";
+	/**
+	 * How many records are buffered before a block is written.
+	 */
+	public static final int BLOCKSIZE = 4096;
+	/**
+	 * The bytes needed for each column of a passenger trip record.
+	 */
+	public static final int TRIPBYTES = 3 * 8 + 2 * 4;
+	/**
+	 * The bytes needed for each column of a train departure record.
+	 */
+	public static final int DEPARTUREBYTES = 4 * 4 + 8;
+
+	private List<String> stationNames; // Station names, indexed by id
+	private List<String> trainNames; // Train names, indexed by id
+
+	private BinaryBlockFile passengerFile;
+	private int numTrips; // The number of trips in the current block
+	private double[] totalTripTimes;
+	private double[] spawnTimes;
+	private double[] boardTimes;
+	private int[] spawnStations;
+	private int[] destStations;
+
+	private BinaryBlockFile trainFile;
+	private int numDepartures; // The number of departures in the current block
+	private int[] departureTrains;
+	private int[] departurePassengers;
+	private int[] fromStations;
+	private int[] toStations;
+	private double[] departureTimes;
+
+	/**
+	 * Reused for writing blocks; big enough for a block of either kind of record.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Open the binary passenger and train files.
+	 * @param outFileBase the prefix for the output files, including directory
+	 * @param stationNames the Station names, indexed by Station id
+	 * @throws FileNotFoundException if a file can't be opened
+	 */
+	public BinaryOutputSink(String outFileBase, List<String> stationNames) throws FileNotFoundException {
+		this.stationNames = stationNames;
+		trainNames = new ArrayList<String>();
+
+		passengerFile = new BinaryBlockFile(new File(outFileBase + PASSENGERSUFFIX));
+		totalTripTimes = new double[BLOCKSIZE];
+		spawnTimes = new double[BLOCKSIZE];
+		boardTimes = new double[BLOCKSIZE];
+		spawnStations = new int[BLOCKSIZE];
+		destStations = new int[BLOCKSIZE];
+
+		trainFile = new BinaryBlockFile(new File(outFileBase + TRAINSUFFIX));
+		departureTrains = new int[BLOCKSIZE];
+		departurePassengers = new int[BLOCKSIZE];
+		fromStations = new int[BLOCKSIZE];
+		toStations = new int[BLOCKSIZE];
+		departureTimes = new double[BLOCKSIZE];
+
+		buffer = ByteBuffer.allocateDirect(4 + BLOCKSIZE * Math.max(TRIPBYTES, DEPARTUREBYTES));
+	}
+
+	public int addTrain(String name) {
+		trainNames.add(name);
+		return trainNames.size() - 1;
+	}
+
+	public void writeTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation) {
+		totalTripTimes[numTrips] = totalTripTime;
+		spawnTimes[numTrips] = spawnTime;
+		boardTimes[numTrips] = boardTime;
+		spawnStations[numTrips] = spawnStation;
+		destStations[numTrips] = destStation;
+		numTrips++;
+		if (numTrips == BLOCKSIZE) {
+			flushTrips();
+		}
+	}
+
+	public void writeDeparture(int train, int numPassengers, int fromStation, int toStation, double t) {
+		departureTrains[numDepartures] = train;
+		departurePassengers[numDepartures] = numPassengers;
+		fromStations[numDepartures] = fromStation;
+		toStations[numDepartures] = toStation;
+		departureTimes[numDepartures] = t;
+		numDepartures++;
+		if (numDepartures == BLOCKSIZE) {
+			flushDepartures();
+		}
+	}
+
+	public void close() {
+		flushTrips();
+		flushDepartures();
+		passengerFile.close(stationNames, trainNames);
+		trainFile.close(stationNames, trainNames);
+	}
+
+	/**
+	 * Write the buffered trips as a block, column by column.
+	 */
+	private void flushTrips() {
+		if (numTrips == 0) {
+			return;
+		}
+		buffer.clear();
+		buffer.putInt(numTrips);
+		buffer.asDoubleBuffer().put(totalTripTimes, 0, numTrips);
+		buffer.position(buffer.position() + 8 * numTrips);
+		buffer.asDoubleBuffer().put(spawnTimes, 0, numTrips);
+		buffer.position(buffer.position() + 8 * numTrips);
+		buffer.asDoubleBuffer().put(boardTimes, 0, numTrips);
+		buffer.position(buffer.position() + 8 * numTrips);
+		buffer.asIntBuffer().put(spawnStations, 0, numTrips);
+		buffer.position(buffer.position() + 4 * numTrips);
+		buffer.asIntBuffer().put(destStations, 0, numTrips);
+		buffer.position(buffer.position() + 4 * numTrips);
+		buffer.flip();
+		passengerFile.write(buffer);
+		numTrips = 0;
+	}
+
+	/**
+	 * Write the buffered departures as a block, column by column.
+	 */
+	private void flushDepartures() {
+		if (numDepartures == 0) {
+			return;
+		}
+		buffer.clear();
+		buffer.putInt(numDepartures);
+		buffer.asIntBuffer().put(departureTrains, 0, numDepartures);
+		buffer.position(buffer.position() + 4 * numDepartures);
+		buffer.asIntBuffer().put(departurePassengers, 0, numDepartures);
+		buffer.position(buffer.position() + 4 * numDepartures);
+		buffer.asIntBuffer().put(fromStations, 0, numDepartures);
+		buffer.position(buffer.position() + 4 * numDepartures);
+		buffer.asIntBuffer().put(toStations, 0, numDepartures);
+		buffer.position(buffer.position() + 4 * numDepartures);
+		buffer.asDoubleBuffer().put(departureTimes, 0, numDepartures);
+		buffer.position(buffer.position() + 8 * numDepartures);
+		buffer.flip();
+		trainFile.write(buffer);
+		numDepartures = 0;
+	}
+}
@@ -0,0 +1,130 @@
+package sashas_erikh.subwaysim.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * Stores the simulation's records as CSV files: one file for all the passenger
+ * trips, and one file per Train for its departures.
+ * Lines are built in a reused StringBuilder and written through large buffers.
+ * @author Erik H
+ */
+public class CsvOutputSink implements OutputSink {
+	public static final String PASSENGERSUFFIX = "_passenger.csv";
+	public static final String TRAINSUFFIX = "_train.csv";
+	public static final String PASSENGERHEADER = "Total Trip Time,Spawn Time,Board Time,Spawn Station,Destination Station";
+	public static final String TRAINHEADER = "Passengers,Departing Station,Destination Station,Global Time";
+	/**
+	 * The size of each file's buffer, in chars.
+	 */
+	public static final int BUFFERSIZE = 1 << 16;
+
+	private String outFileBase; // The prefix for the output files, including directory
+	private List<String> stationNames; // Station names, indexed by id
+	private BufferedWriter passengerWriter;
+	private List<BufferedWriter> trainWriters; // Indexed by Train id
+	private StringBuilder line; // Reused for building each line
+	private char[] lineChars; // Reused for copying each line into the writer
+
+	/**
+	 * Open the passenger CSV file and write its header.
+	 * @param outFileBase the prefix for the output files, including directory
+	 * @param stationNames the Station names, indexed by Station id
+	 * @throws FileNotFoundException if the passenger file can't be opened
+	 */
+	public CsvOutputSink(String outFileBase, List<String> stationNames) throws FileNotFoundException {
+		this.outFileBase = outFileBase;
+		this.stationNames = stationNames;
+		line = new StringBuilder();
+		lineChars = new char[256];
+		trainWriters = new ArrayList<BufferedWriter>();
+
+		passengerWriter = openWriter(new File(outFileBase + PASSENGERSUFFIX));
+		line.append(PASSENGERHEADER);
+		writeLine(passengerWriter);
+	}
+
+	/**
+	 * Open a Train's CSV file and write its header.
+	 * @param name the Train's name
+	 * @return the Train's id
+	 * @throws RuntimeException if the Train's file can't be opened
+	 */
+	public int addTrain(String name) {
+		BufferedWriter trainWriter;
+		try {
+			trainWriter = openWriter(new File(outFileBase + "_" + name + TRAINSUFFIX));
+		}
+		catch (FileNotFoundException e) {
+			throw new RuntimeException("Error: problem creating Train output file: " + e);
+		}
+		trainWriters.add(trainWriter);
+		line.append(TRAINHEADER);
+		writeLine(trainWriter);
+		return trainWriters.size() - 1;
+	}
+
+	public void writeTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation) {
+		line.append(totalTripTime).append(',')
+			.append(spawnTime).append(',')
+			.append(boardTime).append(',')
+			.append(stationNames.get(spawnStation)).append(',')
+			.append(stationNames.get(destStation));
+		writeLine(passengerWriter);
+	}
+
+	public void writeDeparture(int train, int numPassengers, int fromStation, int toStation, double t) {
+		line.append(numPassengers).append(',')
+			.append(stationNames.get(fromStation)).append(',')
+			.append(stationNames.get(toStation)).append(',')
+			.append(t);
+		writeLine(trainWriters.get(train));
+	}
+
+	public void close() {
+		try {
+			passengerWriter.close();
+			for (BufferedWriter trainWriter : trainWriters) {
+				trainWriter.close();
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem closing output files: " + e);
+		}
+	}
+
+	/**
+	 * Write the line we've built to a file, and clear it for the next one.
+	 * @param writer the file's writer
+	 */
+	private void writeLine(BufferedWriter writer) {
+		int length = line.length();
+		if (lineChars.length < length) {
+			lineChars = new char[2 * length];
+		}
+		line.getChars(0, length, lineChars, 0);
+		try {
+			writer.write(lineChars, 0, length);
+			writer.newLine();
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem writing output: " + e);
+		}
+		line.setLength(0);
+	}
+
+	/**
+	 * @param file the file to open
+	 * @return a large-buffered writer for the file
+	 */
+	private static BufferedWriter openWriter(File file) throws FileNotFoundException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)), BUFFERSIZE);
+	}
+}
@@ -0,0 +1,156 @@
+package sashas_erikh.subwaysim.output;
+
+import java.util.Arrays;
+
+/**
+ * An OutputSink that holds on to the records written to it until flush() is
+ * called, and then passes them on to another OutputSink, in the order they
+ * were written.
+ * Used to let Trains run on different threads: each one writes to its own
+ * DeferredOutputSink, and they're flushed one after another in a fixed order,
+ * so the output is the same as if the Trains had run one at a time.
+ * Trains are registered with the other OutputSink right away.
+ * @author Erik H
+ */
+public class DeferredOutputSink implements OutputSink {
+	private static final int INITIALCAPACITY = 16;
+
+	// The kinds of record
+	private static final byte TRIP = 0;
+	private static final byte DEPARTURE = 1;
+	private static final byte SPAWN = 2;
+	private static final byte ARRIVAL = 3;
+	private static final byte BOARDING = 4;
+	private static final byte TRANSFER = 5;
+
+	private OutputSink next; // Where the records go when flushed
+
+	// Each record is a kind, up to four ints and up to three doubles; what they
+	// are depends on the kind, and follows the order of the write method's parameters
+	private int numRecords;
+	private byte[] kinds;
+	private int[] ints;
+	private double[] doubles;
+
+	/**
+	 * @param next where to pass the records on to when flushed
+	 */
+	public DeferredOutputSink(OutputSink next) {
+		this.next = next;
+		kinds = new byte[INITIALCAPACITY];
+		ints = new int[4 * INITIALCAPACITY];
+		doubles = new double[3 * INITIALCAPACITY];
+	}
+
+	public int addTrain(String name) {
+		return next.addTrain(name);
+	}
+
+	public void writeTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation) {
+		int i = add(TRIP);
+		ints[4 * i] = spawnStation;
+		ints[4 * i + 1] = destStation;
+		doubles[3 * i] = totalTripTime;
+		doubles[3 * i + 1] = spawnTime;
+		doubles[3 * i + 2] = boardTime;
+	}
+
+	public void writeDeparture(int train, int numPassengers, int fromStation, int toStation, double t) {
+		int i = add(DEPARTURE);
+		ints[4 * i] = train;
+		ints[4 * i + 1] = numPassengers;
+		ints[4 * i + 2] = fromStation;
+		ints[4 * i + 3] = toStation;
+		doubles[3 * i] = t;
+	}
+
+	public void writeSpawn(double t, int station, int destStation) {
+		int i = add(SPAWN);
+		ints[4 * i] = station;
+		ints[4 * i + 1] = destStation;
+		doubles[3 * i] = t;
+	}
+
+	public void writeArrival(int train, int station, int numAlighting, double t) {
+		int i = add(ARRIVAL);
+		ints[4 * i] = train;
+		ints[4 * i + 1] = station;
+		ints[4 * i + 2] = numAlighting;
+		doubles[3 * i] = t;
+	}
+
+	public void writeBoarding(int train, int station, double spawnTime, int spawnStation, int destStation, double t) {
+		int i = add(BOARDING);
+		ints[4 * i] = train;
+		ints[4 * i + 1] = station;
+		ints[4 * i + 2] = spawnStation;
+		ints[4 * i + 3] = destStation;
+		doubles[3 * i] = spawnTime;
+		doubles[3 * i + 1] = t;
+	}
+
+	public void writeTransfer(int train, int station, double spawnTime, double boardTime, int spawnStation, int destStation, double t) {
+		int i = add(TRANSFER);
+		ints[4 * i] = train;
+		ints[4 * i + 1] = station;
+		ints[4 * i + 2] = spawnStation;
+		ints[4 * i + 3] = destStation;
+		doubles[3 * i] = spawnTime;
+		doubles[3 * i + 1] = boardTime;
+		doubles[3 * i + 2] = t;
+	}
+
+	/**
+	 * Make room for another record.
+	 * @param kind the kind of record
+	 * @return its index
+	 */
+	private int add(byte kind) {
+		if (numRecords == kinds.length) {
+			int capacity = 2 * numRecords;
+			kinds = Arrays.copyOf(kinds, capacity);
+			ints = Arrays.copyOf(ints, 4 * capacity);
+			doubles = Arrays.copyOf(doubles, 3 * capacity);
+		}
+		kinds[numRecords] = kind;
+		return numRecords++;
+	}
+
+	/**
+	 * Pass the held records on, in the order they were written, and forget them.
+	 */
+	public void flush() {
+		for (int i = 0; i < numRecords; i++) {
+			int a = 4 * i;
+			int d = 3 * i;
+			switch (kinds[i]) {
+			case TRIP:
+				next.writeTrip(doubles[d], doubles[d + 1], doubles[d + 2], ints[a], ints[a + 1]);
+				break;
+			case DEPARTURE:
+				next.writeDeparture(ints[a], ints[a + 1], ints[a + 2], ints[a + 3], doubles[d]);
+				break;
+			case SPAWN:
+				next.writeSpawn(doubles[d], ints[a], ints[a + 1]);
+				break;
+			case ARRIVAL:
+				next.writeArrival(ints[a], ints[a + 1], ints[a + 2], doubles[d]);
+				break;
+			case BOARDING:
+				next.writeBoarding(ints[a], ints[a + 1], doubles[d], ints[a + 2], ints[a + 3], doubles[d + 1]);
+				break;
+			default:
+				next.writeTransfer(ints[a], ints[a + 1], doubles[d], doubles[d + 1], ints[a + 2], ints[a + 3], doubles[d + 2]);
+				break;
+			}
+		}
+		numRecords = 0;
+	}
+
+	/**
+	 * Flush the held records; the other OutputSink is closed separately.
+	 */
+	public void close() {
+		flush();
+	}
+}
@@ -0,0 +1,89 @@
+package sashas_erikh.subwaysim.output;
+
+/**
+ * Somewhere to store the simulation's passenger trip and train departure records.
+ * Stations are identified by their id, and Trains by the id returned from addTrain(...).
+ *
+ * The other things that happen (Passengers spawning, boarding and
+ * transferring, and Trains arriving) are passed on too, for sinks that want
+ * them; the rest can ignore them. A Train's arrival always comes just before
+ * the trips of the Passengers who got off there.
+ * @author Erik H
+ */
+public interface OutputSink {
+	/**
+	 * Register a Train, so that its departures can be stored.
+	 * @param name the Train's name
+	 * @return the Train's id, to be passed to writeDeparture(...)
+	 */
+	int addTrain(String name);
+
+	/**
+	 * Store a completed Passenger trip.
+	 * @param totalTripTime the time from spawning to getting off, in seconds
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param boardTime when the Passenger boarded, in seconds
+	 * @param spawnStation the id of the Station where the Passenger spawned
+	 * @param destStation the id of the Station where the Passenger got off
+	 */
+	void writeTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation);
+
+	/**
+	 * Store a Train leaving a Station.
+	 * @param train the Train's id
+	 * @param numPassengers the number of Passengers on board
+	 * @param fromStation the id of the Station being left
+	 * @param toStation the id of the Station being travelled to
+	 * @param t the global time of departure, in seconds
+	 */
+	void writeDeparture(int train, int numPassengers, int fromStation, int toStation, double t);
+
+	/**
+	 * Note a Passenger spawning.
+	 * @param t when they spawned, in seconds
+	 * @param station the id of the Station where they spawned
+	 * @param destStation the id of their destination Station
+	 */
+	default void writeSpawn(double t, int station, int destStation) {
+	}
+
+	/**
+	 * Note a Train arriving at a Station.
+	 * @param train the Train's id
+	 * @param station the id of the Station
+	 * @param numAlighting how many Passengers are getting off, to stay or to transfer
+	 * @param t the global time of arrival, in seconds
+	 */
+	default void writeArrival(int train, int station, int numAlighting, double t) {
+	}
+
+	/**
+	 * Note a Passenger being taken off a Station's queue to board a Train.
+	 * @param train the Train's id
+	 * @param station the id of the Station
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param spawnStation the id of the Station where the Passenger spawned
+	 * @param destStation the id of the Passenger's destination Station
+	 * @param t when they start boarding, in seconds
+	 */
+	default void writeBoarding(int train, int station, double spawnTime, int spawnStation, int destStation, double t) {
+	}
+
+	/**
+	 * Note a Passenger getting off a Train to transfer to another line.
+	 * @param train the Train's id
+	 * @param station the id of the Station they got off at
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param boardTime when the Passenger first boarded, in seconds
+	 * @param spawnStation the id of the Station where the Passenger spawned
+	 * @param destStation the id of the Passenger's destination Station
+	 * @param t the global time, in seconds
+	 */
+	default void writeTransfer(int train, int station, double spawnTime, double boardTime, int spawnStation, int destStation, double t) {
+	}
+
+	/**
+	 * Flush and close the output.
+	 */
+	void close();
+}
@@ -0,0 +1,74 @@
+package sashas_erikh.subwaysim.output;
+
+import sashas_erikh.subwaysim.stats.SimStats;
+
+/**
+ * An OutputSink that updates a sim's statistics with every record, then
+ * passes the record on to another OutputSink (if there is one).
+ * @author Erik H
+ */
+public class StatsOutputSink implements OutputSink {
+	private SimStats stats;
+	private OutputSink next; // Where the records go after the statistics are updated, or null
+
+	/**
+	 * @param stats the statistics to update
+	 * @param next where to pass the records on to, or null to only keep statistics
+	 */
+	public StatsOutputSink(SimStats stats, OutputSink next) {
+		this.stats = stats;
+		this.next = next;
+	}
+
+	public int addTrain(String name) {
+		int id = stats.addTrain(name);
+		if (next != null && next.addTrain(name) != id) {
+			throw new RuntimeException("Error: Train ids don't match between the statistics and the output for " + name);
+		}
+		return id;
+	}
+
+	public void writeTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation) {
+		stats.recordTrip(totalTripTime, spawnTime, boardTime, spawnStation, destStation);
+		if (next != null) {
+			next.writeTrip(totalTripTime, spawnTime, boardTime, spawnStation, destStation);
+		}
+	}
+
+	public void writeDeparture(int train, int numPassengers, int fromStation, int toStation, double t) {
+		stats.recordDeparture(train, numPassengers);
+		if (next != null) {
+			next.writeDeparture(train, numPassengers, fromStation, toStation, t);
+		}
+	}
+
+	public void writeSpawn(double t, int station, int destStation) {
+		if (next != null) {
+			next.writeSpawn(t, station, destStation);
+		}
+	}
+
+	public void writeArrival(int train, int station, int numAlighting, double t) {
+		if (next != null) {
+			next.writeArrival(train, station, numAlighting, t);
+		}
+	}
+
+	public void writeBoarding(int train, int station, double spawnTime, int spawnStation, int destStation, double t) {
+		if (next != null) {
+			next.writeBoarding(train, station, spawnTime, spawnStation, destStation, t);
+		}
+	}
+
+	public void writeTransfer(int train, int station, double spawnTime, double boardTime, int spawnStation, int destStation, double t) {
+		if (next != null) {
+			next.writeTransfer(train, station, spawnTime, boardTime, spawnStation, destStation, t);
+		}
+	}
+
+	public void close() {
+		if (next != null) {
+			next.close();
+		}
+	}
+}
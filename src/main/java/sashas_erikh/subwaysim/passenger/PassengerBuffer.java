@@ -0,0 +1,110 @@
+package sashas_erikh.subwaysim.passenger;
+
+/**
+ * A fixed-size, reusable buffer of Passenger records, stored as parallel
+ * primitive arrays. Trains hand the Passengers who get off at a Station back
+ * in one of these, so that arriving doesn't allocate anything.
+ * Passengers are kept in the order they were added.
+ * @author Erik H
+ */
+public class PassengerBuffer {
+	private double[] spawnTimes;
+	private double[] boardTimes;
+	private int[] origins; // The ids of the Stations where the Passengers spawned
+	private int[] destinations; // The ids of the Passengers' destination Stations
+	private int size;
+
+	/**
+	 * @param capacity the most Passengers this buffer can hold
+	 */
+	public PassengerBuffer(int capacity) {
+		spawnTimes = new double[capacity];
+		boardTimes = new double[capacity];
+		origins = new int[capacity];
+		destinations = new int[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Add a Passenger's record to the end of the buffer.
+	 * @return false if the buffer is full
+	 */
+	public boolean add(double spawnTime, double boardTime, int origin, int destination) {
+		if (size == spawnTimes.length) {
+			return false;
+		}
+		spawnTimes[size] = spawnTime;
+		boardTimes[size] = boardTime;
+		origins[size] = origin;
+		destinations[size] = destination;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Empty the buffer, so that it can be reused.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the number of Passengers in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the most Passengers this buffer can hold
+	 */
+	public int getCapacity() {
+		return spawnTimes.length;
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return the time when the Passenger spawned, in seconds
+	 */
+	public double getSpawnTime(int i) {
+		return spawnTimes[i];
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return the time when the Passenger boarded, in seconds
+	 */
+	public double getBoardTime(int i) {
+		return boardTimes[i];
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return the id of the Station where the Passenger spawned
+	 */
+	public int getOrigin(int i) {
+		return origins[i];
+	}
+
+	/**
+	 * @param i the Passenger's index, from 0 to size()-1
+	 * @return the id of the Passenger's destination Station
+	 */
+	public int getDestination(int i) {
+		return destinations[i];
+	}
+
+	/**
+	 * @return a String representation of the Passengers in this buffer, like Passenger.toString()
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append('~').append(spawnTimes[i]).append(',').append(boardTimes[i]).append(",#").append(destinations[i]).append('~');
+		}
+		return sb.append(']').toString();
+	}
+}
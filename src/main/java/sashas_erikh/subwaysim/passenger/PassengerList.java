@@ -2,43 +2,107 @@ package sashas_erikh.subwaysim.passenger;
 
 import sashas_erikh.subwaysim.station.Station;
 
-import java.util.LinkedList;
-import java.util.Iterator;
+import java.util.Arrays;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
- * A fixed-size linked list that is used to store train passengers.
+ * A fixed-size list that is used to store train passengers.
+ * Nobody can be added once it holds capacity Passengers. Restoring a saved
+ * list with more than that (saved by a Train with a bigger capacity) keeps
+ * them all, though; they get off as usual, and the list only counts as full
+ * again once it's back down to capacity.
+ *
+ * Passengers are stored as parallel primitive arrays of spawn times, board
+ * times, and origin and destination Station ids, indexed by slot. The slots
+ * for each Station where people get off (their destination, or where they
+ * transfer) are chained together into a bucket, in the order they were added,
+ * so getting everyone off at a Station only touches the people getting off. Nothing is allocated once the list is created, except when a
+ * Station with a bigger id than any seen before shows up.
  * @author Sasha S
+ * @author Erik H
  */
-public class PassengerList extends LinkedList<Passenger> {
+public class PassengerList {
+	private static final int NONE = -1;
+
 	private int capacity;
+	private int size;
+
+	// Each Passenger's record, indexed by slot
+	private double[] spawnTimes;
+	private double[] boardTimes;
+	private int[] origins;
+	private int[] destinations;
+	private int[] nextInBucket; // The next slot getting off at the same Station, or NONE
+	private long[] addedAt; // The value of numAdded when each slot's Passenger was added
+
+	// The first and last slot in each Station's bucket, indexed by Station id
+	private int[] bucketHeads;
+	private int[] bucketTails;
+	private int[] bucketSizes;
+
+	private int[] freeSlots; // A stack of the unused slots
+	private int numFree;
+
+	/**
+	 * The slots of the last capacity Passengers added, in a ring, so that
+	 * boarding times can be filled in after the fact.
+	 */
+	private int[] addOrder;
+	private long numAdded;
 
 	public PassengerList(int capacity) {
-		super();
 		this.capacity = capacity;
+		spawnTimes = new double[capacity];
+		boardTimes = new double[capacity];
+		origins = new int[capacity];
+		destinations = new int[capacity];
+		nextInBucket = new int[capacity];
+		addedAt = new long[capacity];
+		addOrder = new int[Math.max(capacity, 1)];
+		bucketHeads = new int[0];
+		bucketTails = new int[0];
+		bucketSizes = new int[0];
+
+		freeSlots = new int[capacity];
+		// Hand out the low slots first
+		for (int i = 0; i < capacity; i++) {
+			freeSlots[i] = capacity - 1 - i;
+		}
+		numFree = capacity;
+		size = 0;
+		numAdded = 0;
 	}
 
 	/**
 	 * Removes from the list all the passengers who want to get off the train at the current station.
 	 * @param station the station that is used to determine which passengers to remove from the list
-	 * @return another PassengerList that contains all the removed Passengers.
+	 * @param removed the buffer to put the removed Passengers in, in the order they were added; it is cleared first
+	 * and must be big enough to hold them
+	 * @return the number of Passengers removed
 	 */
-	public PassengerList removeForStation(Station station) {
-		PassengerList removed = new PassengerList(this.size());
-		Iterator<Passenger> passengers = super.iterator();
-
-		// Remove and keep track of all the passengers who want to get off
-		// at the specified station.
-		while (passengers.hasNext()) {
-
-			Passenger p = passengers.next();
-			if (p.getDestination().getName() == station.getName()) {
+	public int removeForStation(Station station, PassengerBuffer removed) {
+		removed.clear();
+		int id = station.getId();
+		if (id >= bucketHeads.length) {
+			return 0; // Nobody has ever wanted to go here
+		}
 
-				removed.add(p);
-				passengers.remove(); // Remove the passenger from the LinkedList
+		int slot = bucketHeads[id];
+		while (slot != NONE) {
+			if (!removed.add(spawnTimes[slot], boardTimes[slot], origins[slot], destinations[slot])) {
+				throw new RuntimeException("Error: removal buffer is too small for the Passengers getting off at " + station);
 			}
+			freeSlots[numFree++] = slot;
+			slot = nextInBucket[slot];
 		}
-
-		return removed;
+		bucketHeads[id] = NONE;
+		bucketTails[id] = NONE;
+		bucketSizes[id] = 0;
+		size -= removed.size();
+		return removed.size();
 	}
 
 	/**
@@ -48,16 +112,204 @@ public class PassengerList extends LinkedList<Passenger> {
 		return capacity;
 	}
 
+	/**
+	 * @return the number of passengers in the list
+	 */
+	public int size() {
+		return size;
+	}
+
 	/**
 	 * Used to add passengers to the list.
 	 * @param p the passenger object we want to add
 	 * @return returns false if adding this passenger will exceed the capacity of the train
 	 */
 	public boolean add(Passenger p) {
-		if (this.size() < capacity) {
-			super.add(p);
-			return true;
+		return add(p.getSpawnTime(), p.getBoardTime(), p.getSpawnLocation().getId(), p.getDestination().getId());
+	}
+
+	/**
+	 * Used to add passengers to the list, without needing a Passenger object.
+	 * @param spawnTime the time when the passenger spawned
+	 * @param boardTime the time when the passenger boarded, or -1 if they're still boarding
+	 * @param origin the id of the Station where the passenger spawned
+	 * @param destination the id of the passenger's destination Station
+	 * @return returns false if adding this passenger will exceed the capacity of the train
+	 */
+	public boolean add(double spawnTime, double boardTime, int origin, int destination) {
+		return add(spawnTime, boardTime, origin, destination, destination);
+	}
+
+	/**
+	 * Used to add passengers who get off somewhere other than their destination, to transfer.
+	 * @param spawnTime the time when the passenger spawned
+	 * @param boardTime the time when the passenger first boarded, or -1 if they're still boarding
+	 * @param origin the id of the Station where the passenger spawned
+	 * @param destination the id of the passenger's destination Station
+	 * @param alightAt the id of the Station where the passenger gets off this train
+	 * @return returns false if adding this passenger will exceed the capacity of the train
+	 */
+	public boolean add(double spawnTime, double boardTime, int origin, int destination, int alightAt) {
+		if (size >= capacity) {
+			return false;
+		}
+		addToSlot(spawnTime, boardTime, origin, destination, alightAt);
+		return true;
+	}
+
+	/**
+	 * Add a passenger to a free slot, whether or not the list is full.
+	 */
+	private void addToSlot(double spawnTime, double boardTime, int origin, int destination, int alightAt) {
+		if (alightAt >= bucketHeads.length) {
+			growBuckets(alightAt + 1);
+		}
+
+		int slot = freeSlots[--numFree];
+		spawnTimes[slot] = spawnTime;
+		boardTimes[slot] = boardTime;
+		origins[slot] = origin;
+		destinations[slot] = destination;
+		nextInBucket[slot] = NONE;
+		addedAt[slot] = numAdded;
+
+		// Put them at the end of the bucket for where they get off
+		if (bucketTails[alightAt] == NONE) {
+			bucketHeads[alightAt] = slot;
+		}
+		else {
+			nextInBucket[bucketTails[alightAt]] = slot;
+		}
+		bucketTails[alightAt] = slot;
+		bucketSizes[alightAt]++;
+
+		addOrder[(int)(numAdded % addOrder.length)] = slot;
+		numAdded++;
+		size++;
+	}
+
+	/**
+	 * Set the boarding time of one of the most recently added Passengers.
+	 * Passengers who are transferring keep the time they boarded their first train.
+	 * Nobody may have been removed since they were added.
+	 * @param fromEnd how many Passengers ago they were added; 1 is the last one
+	 * @param boardTime the boarding time, in seconds
+	 */
+	public void setRecentBoardTime(int fromEnd, double boardTime) {
+		if (fromEnd < 1 || fromEnd > size || fromEnd > numAdded) {
+			throw new RuntimeException("Error: no Passenger was added " + fromEnd + " Passengers ago");
+		}
+		int slot = addOrder[(int)((numAdded - fromEnd) % addOrder.length)];
+		if (boardTimes[slot] < 0) {
+			boardTimes[slot] = boardTime;
+		}
+	}
+
+	/**
+	 * @param destination a Station's id
+	 * @return how many passengers want to get off at that Station, to stay or to transfer
+	 */
+	public int countForStation(int destination) {
+		if (destination >= bucketSizes.length) {
+			return 0;
+		}
+		return bucketSizes[destination];
+	}
+
+	/**
+	 * Save everyone on board for a checkpoint, in the order they were added,
+	 * so that adding them back in that order gives the same list.
+	 * @param out where to write them
+	 * @throws IOException if they can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		Integer[] slots = new Integer[size];
+		int[] alightAt = new int[spawnTimes.length];
+		int n = 0;
+		for (int station = 0; station < bucketHeads.length; station++) {
+			for (int slot = bucketHeads[station]; slot != NONE; slot = nextInBucket[slot]) {
+				slots[n++] = slot;
+				alightAt[slot] = station;
+			}
+		}
+		Arrays.sort(slots, (a, b) -> Long.compare(addedAt[a], addedAt[b]));
+
+		out.writeInt(size);
+		for (int slot : slots) {
+			out.writeDouble(spawnTimes[slot]);
+			out.writeDouble(boardTimes[slot]);
+			out.writeInt(origins[slot]);
+			out.writeInt(destinations[slot]);
+			out.writeInt(alightAt[slot]);
+		}
+	}
+
+	/**
+	 * Replace everyone on board with the Passengers saved by writeState(...),
+	 * even if there are more of them than the capacity.
+	 * @param in where to read them from
+	 * @throws IOException if they can't be read
+	 */
+	public void readState(DataInput in) throws IOException {
+		int numPassengers = in.readInt();
+		if (numPassengers > spawnTimes.length) {
+			growSlots(numPassengers);
+		}
+		int numSlots = spawnTimes.length;
+		for (int i = 0; i < numSlots; i++) {
+			freeSlots[i] = numSlots - 1 - i;
+		}
+		numFree = numSlots;
+		Arrays.fill(bucketHeads, NONE);
+		Arrays.fill(bucketTails, NONE);
+		Arrays.fill(bucketSizes, 0);
+		size = 0;
+		numAdded = 0;
+
+		for (int i = 0; i < numPassengers; i++) {
+			addToSlot(in.readDouble(), in.readDouble(), in.readInt(), in.readInt(), in.readInt());
+		}
+	}
+
+	/**
+	 * Make room for more Passengers than the capacity.
+	 * @param numSlots how many Passengers to make room for
+	 */
+	private void growSlots(int numSlots) {
+		spawnTimes = Arrays.copyOf(spawnTimes, numSlots);
+		boardTimes = Arrays.copyOf(boardTimes, numSlots);
+		origins = Arrays.copyOf(origins, numSlots);
+		destinations = Arrays.copyOf(destinations, numSlots);
+		nextInBucket = Arrays.copyOf(nextInBucket, numSlots);
+		addedAt = Arrays.copyOf(addedAt, numSlots);
+		freeSlots = Arrays.copyOf(freeSlots, numSlots);
+	}
+
+	/**
+	 * Make room for buckets for Stations with ids up to numStations-1.
+	 */
+	private void growBuckets(int numStations) {
+		int oldLength = bucketHeads.length;
+		bucketHeads = Arrays.copyOf(bucketHeads, numStations);
+		bucketTails = Arrays.copyOf(bucketTails, numStations);
+		bucketSizes = Arrays.copyOf(bucketSizes, numStations);
+		Arrays.fill(bucketHeads, oldLength, numStations, NONE);
+		Arrays.fill(bucketTails, oldLength, numStations, NONE);
+	}
+
+	/**
+	 * @return a String representation of the passengers in this list, grouped by where they get off
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int dest = 0; dest < bucketHeads.length; dest++) {
+			for (int slot = bucketHeads[dest]; slot != NONE; slot = nextInBucket[slot]) {
+				if (sb.length() > 1) {
+					sb.append(", ");
+				}
+				sb.append('~').append(spawnTimes[slot]).append(',').append(boardTimes[slot]).append(",#").append(destinations[slot]).append('~');
+			}
 		}
-		return false;
+		return sb.append(']').toString();
 	}
 }
@@ -0,0 +1,254 @@
+package sashas_erikh.subwaysim.passenger;
+
+import java.util.Arrays;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A first come, first served queue of the Passengers waiting at a Station.
+ *
+ * Passengers are stored in a ring of parallel primitive arrays of spawn times,
+ * board times, and origin and destination Station ids, which grows as needed.
+ * The board time is -1 for Passengers who haven't been on a Train yet, and
+ * the time they first boarded for Passengers who are transferring. The number of
+ * Passengers waiting for each destination is kept up to date as they come
+ * and go, so it can be looked up without walking the queue.
+ * @author Erik H
+ */
+public class PassengerQueue {
+	private static final int INITIALCAPACITY = 16;
+
+	private double[] spawnTimes;
+	private double[] boardTimes;
+	private int[] origins;
+	private int[] destinations;
+	private int head; // The index of the first Passenger in the ring
+	private int size;
+
+	/**
+	 * How many Passengers are waiting for each destination, indexed by Station id.
+	 */
+	private int[] waitingFor;
+
+	public PassengerQueue() {
+		spawnTimes = new double[INITIALCAPACITY];
+		boardTimes = new double[INITIALCAPACITY];
+		origins = new int[INITIALCAPACITY];
+		destinations = new int[INITIALCAPACITY];
+		waitingFor = new int[0];
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Add a Passenger who hasn't boarded a Train yet to the back of the queue.
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param origin the id of the Station where the Passenger spawned
+	 * @param destination the id of the Passenger's destination Station
+	 */
+	public void add(double spawnTime, int origin, int destination) {
+		add(spawnTime, -1, origin, destination);
+	}
+
+	/**
+	 * Add a Passenger to the back of the queue.
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param boardTime when the Passenger first boarded a Train, or -1 if they haven't yet
+	 * @param origin the id of the Station where the Passenger spawned
+	 * @param destination the id of the Passenger's destination Station
+	 */
+	public void add(double spawnTime, double boardTime, int origin, int destination) {
+		if (size == spawnTimes.length) {
+			grow();
+		}
+		if (destination >= waitingFor.length) {
+			waitingFor = Arrays.copyOf(waitingFor, destination + 1);
+		}
+		int tail = (head + size) % spawnTimes.length;
+		spawnTimes[tail] = spawnTime;
+		boardTimes[tail] = boardTime;
+		origins[tail] = origin;
+		destinations[tail] = destination;
+		waitingFor[destination]++;
+		size++;
+	}
+
+	/**
+	 * Take the Passenger at the front of the queue off of it.
+	 */
+	public void remove() {
+		if (size == 0) {
+			throw new RuntimeException("Error: can't remove a Passenger from an empty queue");
+		}
+		waitingFor[destinations[head]]--;
+		head = (head + 1) % spawnTimes.length;
+		size--;
+	}
+
+	/**
+	 * Take a number of Passengers off the front of the queue.
+	 * @param count how many
+	 */
+	public void remove(int count) {
+		for (int i = 0; i < count; i++) {
+			remove();
+		}
+	}
+
+	/**
+	 * Take everyone off the queue.
+	 */
+	public void clear() {
+		remove(size);
+	}
+
+	/**
+	 * Copy the Passengers at the front of the queue to another queue, in
+	 * place of whoever was in it, leaving this one as it is.
+	 * @param copy the queue to copy them to
+	 * @param max the most Passengers to copy
+	 */
+	public void copyFront(PassengerQueue copy, int max) {
+		copy.clear();
+		for (int i = 0; i < Math.min(max, size); i++) {
+			int index = (head + i) % spawnTimes.length;
+			copy.add(spawnTimes[index], boardTimes[index], origins[index], destinations[index]);
+		}
+	}
+
+	/**
+	 * @return when the Passenger at the front of the queue spawned, in seconds
+	 */
+	public double peekSpawnTime() {
+		if (size == 0) {
+			throw new RuntimeException("Error: can't peek at an empty queue");
+		}
+		return spawnTimes[head];
+	}
+
+	/**
+	 * @return when the Passenger at the front of the queue first boarded a Train, or -1 if they haven't yet
+	 */
+	public double peekBoardTime() {
+		if (size == 0) {
+			throw new RuntimeException("Error: can't peek at an empty queue");
+		}
+		return boardTimes[head];
+	}
+
+	/**
+	 * @return the id of the Station where the Passenger at the front of the queue spawned
+	 */
+	public int peekOrigin() {
+		if (size == 0) {
+			throw new RuntimeException("Error: can't peek at an empty queue");
+		}
+		return origins[head];
+	}
+
+	/**
+	 * @return the id of the destination Station of the Passenger at the front of the queue
+	 */
+	public int peekDestination() {
+		if (size == 0) {
+			throw new RuntimeException("Error: can't peek at an empty queue");
+		}
+		return destinations[head];
+	}
+
+	/**
+	 * @return the number of Passengers waiting
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return if nobody is waiting
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param destination a Station's id
+	 * @return how many Passengers in the queue want to go to that Station
+	 */
+	public int countFor(int destination) {
+		if (destination >= waitingFor.length) {
+			return 0;
+		}
+		return waitingFor[destination];
+	}
+
+	/**
+	 * Save everyone waiting, front first, for a checkpoint.
+	 * @param out where to write them
+	 * @throws IOException if they can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			int index = (head + i) % spawnTimes.length;
+			out.writeDouble(spawnTimes[index]);
+			out.writeDouble(boardTimes[index]);
+			out.writeInt(origins[index]);
+			out.writeInt(destinations[index]);
+		}
+	}
+
+	/**
+	 * Replace everyone waiting with the Passengers saved by writeState(...).
+	 * @param in where to read them from
+	 * @throws IOException if they can't be read
+	 */
+	public void readState(DataInput in) throws IOException {
+		head = 0;
+		size = 0;
+		Arrays.fill(waitingFor, 0);
+		int numWaiting = in.readInt();
+		for (int i = 0; i < numWaiting; i++) {
+			add(in.readDouble(), in.readDouble(), in.readInt(), in.readInt());
+		}
+	}
+
+	/**
+	 * Double the size of the ring, unwrapping it so that the head is at 0.
+	 */
+	private void grow() {
+		int capacity = spawnTimes.length;
+		spawnTimes = unwrap(spawnTimes, new double[capacity * 2], capacity);
+		boardTimes = unwrap(boardTimes, new double[capacity * 2], capacity);
+		origins = unwrap(origins, new int[capacity * 2], capacity);
+		destinations = unwrap(destinations, new int[capacity * 2], capacity);
+		head = 0;
+	}
+
+	/**
+	 * Copy the ring in one of the arrays to the start of a bigger one.
+	 * @return the bigger array
+	 */
+	private <T> T unwrap(T ring, T bigger, int capacity) {
+		int firstPart = capacity - head;
+		System.arraycopy(ring, head, bigger, 0, firstPart);
+		System.arraycopy(ring, 0, bigger, firstPart, head);
+		return bigger;
+	}
+
+	/**
+	 * @return a String representation of the queue, front first, like Passenger.toString()
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			int index = (head + i) % spawnTimes.length;
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append('~').append(spawnTimes[index]).append(',').append(boardTimes[index]).append(",#").append(destinations[index]).append('~');
+		}
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,31 @@
+package sashas_erikh.subwaysim.random;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Draws the times at which Passengers spawn at a Station.
+ * @author Erik H
+ */
+public interface ArrivalGenerator {
+	/**
+	 * @param t the time of the last arrival (or the start of the sim), in seconds
+	 * @return the time of the next arrival after t, in seconds; infinity if there are no more
+	 */
+	double nextArrival(double t);
+
+	/**
+	 * Save the generator's state for a checkpoint.
+	 * @param out where to write it
+	 * @throws IOException if it can't be written
+	 */
+	void writeState(DataOutput out) throws IOException;
+
+	/**
+	 * Put the generator back the way writeState(...) saved it.
+	 * @param in where to read it from
+	 * @throws IOException if it can't be read
+	 */
+	void readState(DataInput in) throws IOException;
+}
@@ -0,0 +1,52 @@
+package sashas_erikh.subwaysim.random;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Draws exponentially distributed times between arrivals, the same way (and
+ * with the same numbers) as rmacdonald_kingsu.retailqueuing.RNGArrivalTime,
+ * but with a CapturableRandom underneath so its state can be checkpointed.
+ * This is the default, so that seeds keep giving the same sims they always have.
+ * @author Erik H
+ */
+public class ArrivalTimeRNG implements ArrivalGenerator {
+	private CapturableRandom rand;
+	private double rate; // Arrivals per second
+
+	/**
+	 * @param timeBetween the mean time between arrivals, in seconds
+	 * @param seed the seed; 0 or negative for a seed that's probably different every time
+	 */
+	public ArrivalTimeRNG(double timeBetween, long seed) {
+		rand = (seed > 0) ? new CapturableRandom(seed) : new CapturableRandom();
+		rate = 1.0 / timeBetween;
+	}
+
+	/**
+	 * @return the time until the next arrival, in seconds
+	 */
+	public double nextTime() {
+		return -Math.log(rand.nextDouble()) / rate;
+	}
+
+	public double nextArrival(double t) {
+		return t + nextTime();
+	}
+
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(rand.getState());
+	}
+
+	public void readState(DataInput in) throws IOException {
+		rand.setState(in.readLong());
+	}
+
+	/**
+	 * @return the RNG underneath, e.g. to save or restore its state
+	 */
+	public CapturableRandom getRandom() {
+		return rand;
+	}
+}
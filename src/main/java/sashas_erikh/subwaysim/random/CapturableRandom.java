@@ -0,0 +1,65 @@
+package sashas_erikh.subwaysim.random;
+
+import java.util.Random;
+
+/**
+ * A java.util.Random whose state can be saved and put back, so that a sim
+ * restored from a checkpoint draws exactly the same numbers it would have.
+ * It runs the same 48 bit linear congruential generator as java.util.Random
+ * (whose state is private), so it gives the same numbers for the same seed.
+ * Unlike java.util.Random it isn't safe to share between threads, and the
+ * spare value nextGaussian() keeps isn't part of the saved state.
+ * @author Erik H
+ */
+public class CapturableRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	/**
+	 * The generator's state; set by setSeed(...), which Random's constructors call.
+	 */
+	private long state;
+
+	/**
+	 * Create a generator with a seed that's probably different from any other.
+	 */
+	public CapturableRandom() {
+		super();
+	}
+
+	/**
+	 * @param seed the seed
+	 */
+	public CapturableRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		state = (seed ^ MULTIPLIER) & MASK;
+		super.setSeed(seed);
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int)(state >>> (48 - bits));
+	}
+
+	/**
+	 * @return the generator's state, for setState(...)
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Put the generator back in a saved state.
+	 * @param state a state from getState()
+	 */
+	public void setState(long state) {
+		this.state = state & MASK;
+	}
+}
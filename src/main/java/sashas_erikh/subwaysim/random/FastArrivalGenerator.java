@@ -0,0 +1,61 @@
+package sashas_erikh.subwaysim.random;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Draws exponentially distributed times between arrivals with xoshiro256**
+ * and the ziggurat method, a batch at a time: the times are drawn into a
+ * buffer so that the generator's loop runs without anything else getting
+ * into the cache in between, and each arrival is then just a read.
+ * @author Erik H
+ */
+public class FastArrivalGenerator implements ArrivalGenerator {
+	/**
+	 * How many times are drawn at once.
+	 */
+	public static final int BATCHSIZE = 64;
+
+	private Xoshiro256 rng;
+	private double timeBetween; // Mean time between arrivals, in seconds
+	private double[] batch; // Times between arrivals, drawn ahead
+	private int next; // The next time to use in the batch; BATCHSIZE when it's used up
+
+	/**
+	 * @param timeBetween the mean time between arrivals, in seconds
+	 * @param seed the seed
+	 */
+	public FastArrivalGenerator(double timeBetween, long seed) {
+		rng = new Xoshiro256(seed);
+		this.timeBetween = timeBetween;
+		batch = new double[BATCHSIZE];
+		next = BATCHSIZE;
+	}
+
+	public double nextArrival(double t) {
+		if (next == BATCHSIZE) {
+			for (int i = 0; i < BATCHSIZE; i++) {
+				batch[i] = ZigguratExponential.sample(rng) * timeBetween;
+			}
+			next = 0;
+		}
+		return t + batch[next++];
+	}
+
+	public void writeState(DataOutput out) throws IOException {
+		rng.writeState(out);
+		out.writeInt(next);
+		for (int i = next; i < BATCHSIZE; i++) {
+			out.writeDouble(batch[i]);
+		}
+	}
+
+	public void readState(DataInput in) throws IOException {
+		rng.readState(in);
+		next = in.readInt();
+		for (int i = next; i < BATCHSIZE; i++) {
+			batch[i] = in.readDouble();
+		}
+	}
+}
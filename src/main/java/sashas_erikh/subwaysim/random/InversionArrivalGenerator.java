@@ -0,0 +1,74 @@
+package sashas_erikh.subwaysim.random;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Draws arrivals at a piecewise constant rate (a non-homogeneous Poisson
+ * process) by inverting the cumulative rate: a unit exponential says how many
+ * expected arrivals to move forward by, and the generator walks forward
+ * through the profile's slots until it has used them up. It remembers which
+ * slot it's in, and whole periods are skipped using the period's total, so
+ * each arrival usually costs one exponential and a division, however
+ * finely the profile is sliced.
+ * @author Erik H
+ */
+public class InversionArrivalGenerator implements ArrivalGenerator {
+	private Xoshiro256 rng;
+	private PiecewiseRate rates;
+
+	// Where the last arrival was, so the next one can carry on from there
+	private double periodStart; // The start of the period it was in
+	private int slot; // The slot it was in; -1 if it has to be found
+
+	/**
+	 * @param rates the arrival rate over time
+	 * @param seed the seed
+	 */
+	public InversionArrivalGenerator(PiecewiseRate rates, long seed) {
+		rng = new Xoshiro256(seed);
+		this.rates = rates;
+		slot = -1;
+	}
+
+	public double nextArrival(double t) {
+		double total = rates.getCumulative(rates.getNumSlots());
+		if (total <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double period = rates.getPeriod();
+		if (slot < 0 || t < periodStart + rates.getStart(slot) || t >= periodStart + rates.getEnd(slot)) {
+			periodStart = Math.floor(t / period) * period;
+			slot = rates.getSlot(t - periodStart);
+		}
+
+		double remaining = ZigguratExponential.sample(rng);
+		double rate = rates.getSlotRate(slot);
+		double left = (periodStart + rates.getEnd(slot) - t) * rate; // Expected arrivals in the rest of this slot
+		while (remaining >= left) {
+			remaining -= left;
+			slot++;
+			if (slot == rates.getNumSlots()) {
+				// Skip any whole periods at once
+				double periods = Math.floor(remaining / total);
+				remaining -= periods * total;
+				periodStart += (periods + 1) * period;
+				slot = 0;
+			}
+			t = periodStart + rates.getStart(slot);
+			rate = rates.getSlotRate(slot);
+			left = (rates.getEnd(slot) - rates.getStart(slot)) * rate;
+		}
+		return t + remaining / rate;
+	}
+
+	public void writeState(DataOutput out) throws IOException {
+		rng.writeState(out);
+	}
+
+	public void readState(DataInput in) throws IOException {
+		rng.readState(in);
+		slot = -1;
+	}
+}
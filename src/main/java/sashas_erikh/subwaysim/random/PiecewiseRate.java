@@ -0,0 +1,100 @@
+package sashas_erikh.subwaysim.random;
+
+import java.util.Arrays;
+
+/**
+ * An arrival rate that's constant over each of a number of time slots, and
+ * repeats every period (e.g. every day). The cumulative number of arrivals
+ * expected by the start of each slot is worked out up front, so that
+ * InversionArrivalGenerator can turn unit rate arrivals into arrivals at
+ * this rate without searching.
+ * @author Erik H
+ */
+public class PiecewiseRate implements RateFunction {
+	private double[] starts; // When each slot starts, from 0; the slot ends when the next one starts
+	private double[] rates; // Arrivals per second in each slot
+	private double period; // When it all repeats, in seconds
+	private double[] cumulative; // Arrivals expected in a period before each slot starts, and in the whole period at the end
+	private double maxRate;
+
+	/**
+	 * @param starts the slots' start times within the period, in increasing order from 0, in seconds
+	 * @param rates the arrival rate in each slot, in arrivals per second
+	 * @param period the length of the period, after the last slot starts, in seconds
+	 * @throws RuntimeException if the slots or rates don't make sense
+	 */
+	public PiecewiseRate(double[] starts, double[] rates, double period) throws RuntimeException {
+		if (starts.length == 0 || starts.length != rates.length || starts[0] != 0.0) {
+			throw new RuntimeException("Error: a rate profile needs a rate for each slot, starting at time 0");
+		}
+		this.starts = starts;
+		this.rates = rates;
+		this.period = period;
+
+		cumulative = new double[starts.length + 1];
+		for (int i = 0; i < starts.length; i++) {
+			double end = getEnd(i);
+			if (!(end > starts[i]) || !(rates[i] >= 0.0) || Double.isInfinite(rates[i])) {
+				throw new RuntimeException("Error: bad rate profile slot starting at " + starts[i] + " with rate " + rates[i]
+					+ "; slots must be in order and inside the period of " + period + " seconds");
+			}
+			cumulative[i + 1] = cumulative[i] + (end - starts[i]) * rates[i];
+			maxRate = Math.max(maxRate, rates[i]);
+		}
+	}
+
+	/**
+	 * @return a copy of this profile with every rate multiplied by a factor
+	 */
+	public PiecewiseRate scale(double factor) {
+		double[] scaled = new double[rates.length];
+		for (int i = 0; i < rates.length; i++) {
+			scaled[i] = rates[i] * factor;
+		}
+		return new PiecewiseRate(starts, scaled, period);
+	}
+
+	public double getRate(double t) {
+		return rates[getSlot(t - Math.floor(t / period) * period)];
+	}
+
+	public double getMaxRate() {
+		return maxRate;
+	}
+
+	/**
+	 * @param t a time within the period
+	 * @return the slot it's in
+	 */
+	int getSlot(double t) {
+		int slot = Arrays.binarySearch(starts, t);
+		return (slot >= 0) ? slot : Math.max(-slot - 2, 0);
+	}
+
+	int getNumSlots() {
+		return starts.length;
+	}
+
+	double getStart(int slot) {
+		return starts[slot];
+	}
+
+	double getEnd(int slot) {
+		return (slot + 1 < starts.length) ? starts[slot + 1] : period;
+	}
+
+	double getSlotRate(int slot) {
+		return rates[slot];
+	}
+
+	/**
+	 * @return the arrivals expected in a period before a slot starts; for slot = getNumSlots(), in the whole period
+	 */
+	double getCumulative(int slot) {
+		return cumulative[slot];
+	}
+
+	double getPeriod() {
+		return period;
+	}
+}
@@ -0,0 +1,18 @@
+package sashas_erikh.subwaysim.random;
+
+/**
+ * An arrival rate that changes over time.
+ * @author Erik H
+ */
+public interface RateFunction {
+	/**
+	 * @param t a time, in seconds
+	 * @return the arrival rate at that time, in arrivals per second
+	 */
+	double getRate(double t);
+
+	/**
+	 * @return an upper bound on the rate, at any time
+	 */
+	double getMaxRate();
+}
@@ -0,0 +1,46 @@
+package sashas_erikh.subwaysim.random;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Draws arrivals whose rate changes over time (a non-homogeneous Poisson
+ * process) by thinning: candidate arrivals are drawn at the highest rate
+ * there ever is, and each one is kept with probability rate(t) / maxRate.
+ * This works for any RateFunction, but draws more numbers than it keeps when
+ * the rate is usually well under its maximum.
+ * @author Erik H
+ */
+public class ThinningArrivalGenerator implements ArrivalGenerator {
+	private Xoshiro256 rng;
+	private RateFunction rates;
+
+	/**
+	 * @param rates the arrival rate over time
+	 * @param seed the seed
+	 */
+	public ThinningArrivalGenerator(RateFunction rates, long seed) {
+		rng = new Xoshiro256(seed);
+		this.rates = rates;
+	}
+
+	public double nextArrival(double t) {
+		double maxRate = rates.getMaxRate();
+		if (maxRate <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		do {
+			t += ZigguratExponential.sample(rng) / maxRate;
+		} while (rng.nextDouble() * maxRate >= rates.getRate(t));
+		return t;
+	}
+
+	public void writeState(DataOutput out) throws IOException {
+		rng.writeState(out);
+	}
+
+	public void readState(DataInput in) throws IOException {
+		rng.readState(in);
+	}
+}
@@ -0,0 +1,81 @@
+package sashas_erikh.subwaysim.random;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The xoshiro256** generator (Blackman and Vigna): 256 bits of state,
+ * a period of 2^256 - 1, and a few shifts and xors per number, with no
+ * synchronization or atomics. Like CapturableRandom, its state can be saved
+ * and put back, and it isn't safe to share between threads.
+ * @author Erik H
+ */
+public class Xoshiro256 {
+	private long s0;
+	private long s1;
+	private long s2;
+	private long s3;
+
+	/**
+	 * @param seed the seed; the state is filled in from it with SplitMix64, as the authors recommend
+	 */
+	public Xoshiro256(long seed) {
+		s0 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+		s1 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+		s2 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+		s3 = splitMix64(seed + 0x9E3779B97F4A7C15L);
+	}
+
+	private static long splitMix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return 64 random bits
+	 */
+	public long nextLong() {
+		long result = Long.rotateLeft(s1 * 5, 7) * 9;
+		long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft(s3, 45);
+		return result;
+	}
+
+	/**
+	 * @return a random double in [0, 1)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Save the generator's state.
+	 * @param out where to write it
+	 * @throws IOException if it can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(s0);
+		out.writeLong(s1);
+		out.writeLong(s2);
+		out.writeLong(s3);
+	}
+
+	/**
+	 * Put the generator back the way writeState(...) saved it.
+	 * @param in where to read it from
+	 * @throws IOException if it can't be read
+	 */
+	public void readState(DataInput in) throws IOException {
+		s0 = in.readLong();
+		s1 = in.readLong();
+		s2 = in.readLong();
+		s3 = in.readLong();
+	}
+}
@@ -0,0 +1,67 @@
+package sashas_erikh.subwaysim.random;
+
+/**
+ * Draws exponentially distributed numbers (with mean 1) using Marsaglia and
+ * Tsang's ziggurat method: the density is covered with 256 layers of equal
+ * area, a layer and a point in it are picked with one 64 bit random number,
+ * and about 99% of the time the point is under the curve and no logarithm
+ * (or second random number) is needed.
+ * @author Erik H
+ */
+public class ZigguratExponential {
+	private static final int NUMLAYERS = 256;
+	/**
+	 * Where the tail starts.
+	 */
+	private static final double R = 7.69711747013104972;
+	/**
+	 * The area of each layer.
+	 */
+	private static final double V = 3.949659822581572e-3;
+
+	/**
+	 * The layers' right edges, from the base layer out (where X[0] is the
+	 * width the base layer would have if its tail were squashed into a
+	 * rectangle) to X[NUMLAYERS] = 0 at the top.
+	 */
+	private static final double[] X = new double[NUMLAYERS + 1];
+	/**
+	 * The density at each X.
+	 */
+	private static final double[] F = new double[NUMLAYERS + 1];
+
+	static {
+		X[0] = V / Math.exp(-R);
+		X[1] = R;
+		for (int i = 2; i < NUMLAYERS; i++) {
+			X[i] = -Math.log(V / X[i - 1] + Math.exp(-X[i - 1]));
+		}
+		X[NUMLAYERS] = 0.0;
+		for (int i = 0; i <= NUMLAYERS; i++) {
+			F[i] = Math.exp(-X[i]);
+		}
+	}
+
+	/**
+	 * @param rng the generator to draw with
+	 * @return an exponentially distributed number with mean 1
+	 */
+	public static double sample(Xoshiro256 rng) {
+		while (true) {
+			long bits = rng.nextLong();
+			int i = (int)(bits & (NUMLAYERS - 1));
+			double x = (bits >>> 11) * 0x1.0p-53 * X[i];
+			if (x < X[i + 1]) {
+				// Inside the part of the layer that's under the curve
+				return x;
+			}
+			if (i == 0) {
+				// In the tail, which is just another exponential shifted out to R
+				return R - Math.log(1.0 - rng.nextDouble());
+			}
+			if (F[i] + rng.nextDouble() * (F[i + 1] - F[i]) < Math.exp(-x)) {
+				return x;
+			}
+		}
+	}
+}
@@ -1,14 +1,29 @@
 package sashas_erikh.subwaysim.station;
 
-import sashas_erikh.subwaysim.passenger.Passenger;
+import sashas_erikh.subwaysim.metrics.SimMetrics;
+import sashas_erikh.subwaysim.passenger.PassengerQueue;
+import sashas_erikh.subwaysim.random.ArrivalGenerator;
+import sashas_erikh.subwaysim.random.ArrivalTimeRNG;
 
-import rmacdonald_kingsu.retailqueuing.RNGArrivalTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
-import java.util.Queue;
-import java.util.LinkedList;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 /**
  * A subway station.
+ * Each line that stops at the Station has its own platform, with its own
+ * queue of Passengers waiting for that line, and room for one Train.
+ *
+ * Each platform is the end of a block of track: a Train reserves the next
+ * Station's platform before it leaves, holds it while it travels there and
+ * stops, and releases it when it leaves again. Reserving and releasing are
+ * atomic compare-and-sets, so Trains running on different threads can't both
+ * get the same platform.
  * @author Erik H
  */
 public class Station {
@@ -16,60 +31,131 @@ public class Station {
 	 * The name of the Station.
 	 */
 	private String name;
+	/**
+	 * The Station's id; Stations are numbered from 0 in the order they're created.
+	 */
+	private int id;
 	/**
 	 * Mean time between passenger spawns.
 	 */
 	private double timeBetweenSpawns;
 	/**
-	 * If a train is currently occupying the station.
+	 * The id of the Train that has reserved each line's platform, or NOBODY.
+	 */
+	private AtomicIntegerArray owners;
+	/**
+	 * The owner of a platform that nobody has reserved.
+	 */
+	public static final int NOBODY = -1;
+	/**
+	 * When a Train last left each line's platform, or NaN if none has yet.
 	 */
-	private boolean occupied;
+	private double[] lastDepartures;
 	/**
-	 * Passengers waiting at the station.
+	 * Passengers waiting at the station, for each line; only created once someone waits for that line.
 	 */
-	Queue<Passenger> stationQueue;
+	PassengerQueue[] stationQueues;
 	/**
-	 * The RNG for exponential distribution draws for passenger arrivals.
+	 * Draws when Passengers spawn here.
 	 */
-	RNGArrivalTime rng;
+	ArrivalGenerator arrivals;
 	/**
 	 * The arrival time of the next passenger at this station.
 	 */
 	double tnext;
+	/**
+	 * Where to count Passengers joining the queues, or null if nobody's counting.
+	 */
+	private SimMetrics metrics;
 
 	/**
 	 * Create a subway station.
 	 * @param name the station's human readable name
+	 * @param id the station's id
 	 * @param timeBetweenSpawns the station's mean time between spawns, in seconds
 	 * @param seed the seed for the arrival RNG
 	 */
-	public Station(String name, double timeBetweenSpawns, int seed) {
+	public Station(String name, int id, double timeBetweenSpawns, long seed) {
+		this(name, id, timeBetweenSpawns, seed, 1);
+	}
+
+	/**
+	 * Create a subway station in a network with more than one line.
+	 * @param name the station's human readable name
+	 * @param id the station's id
+	 * @param timeBetweenSpawns the station's mean time between spawns, in seconds
+	 * @param seed the seed for the arrival RNG
+	 * @param numLines the number of lines in the network
+	 */
+	public Station(String name, int id, double timeBetweenSpawns, long seed, int numLines) {
+		this(name, id, timeBetweenSpawns, new ArrivalTimeRNG(timeBetweenSpawns, seed), numLines);
+	}
+
+	/**
+	 * Create a subway station whose Passengers spawn however an ArrivalGenerator says.
+	 * @param name the station's human readable name
+	 * @param id the station's id
+	 * @param timeBetweenSpawns the station's mean time between spawns, in seconds
+	 * @param arrivals draws the spawn times
+	 * @param numLines the number of lines in the network
+	 */
+	public Station(String name, int id, double timeBetweenSpawns, ArrivalGenerator arrivals, int numLines) {
 		this.name = name;
+		this.id = id;
 		this.timeBetweenSpawns = timeBetweenSpawns;
+		this.arrivals = arrivals;
 
-		rng = new RNGArrivalTime(timeBetweenSpawns, seed);
-		stationQueue = new LinkedList<Passenger>();
+		owners = new AtomicIntegerArray(numLines);
+		for (int line = 0; line < numLines; line++) {
+			owners.set(line, NOBODY);
+		}
+		stationQueues = new PassengerQueue[numLines];
+		lastDepartures = new double[numLines];
+		Arrays.fill(lastDepartures, Double.NaN);
 	}
 
 	/**
 	 * Draw for when the next passenger spawns.
-	 * Our RNG gives us the time until the next arrival, so the sum of the
-	 * current time and this time gives us the actual time when the next Passenger
-	 * should spawn.
-	 * @param currentTime the current global time
+	 * @param currentTime the current global time, or the time the last Passenger spawned
+	 * @return the time when the next Passenger should spawn
 	 */
 	public double drawNextTime(double currentTime) {
-		tnext = currentTime + rng.nextTime();
+		tnext = arrivals.nextArrival(currentTime);
 		return tnext;
 	}
 
 	/**
-	 * Add a Passenger to this Station's queue.
+	 * Add a Passenger who just spawned to this Station's queue for the first line.
 	 * @param spawnTime when the Passenger spawned, in seconds
 	 * @param dest the Passenger's destination Station
 	 */
 	public void enqueuePassenger(double spawnTime, Station dest) {
-		stationQueue.add(new Passenger(spawnTime, this, dest));
+		getStationQueue(0).add(spawnTime, id, dest.getId());
+		if (metrics != null) {
+			metrics.passengerQueued();
+		}
+	}
+
+	/**
+	 * Add a Passenger to this Station's queue for a line.
+	 * @param line the number of the line they're waiting for
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param boardTime when the Passenger first boarded a Train, or -1 if they haven't yet
+	 * @param origin the id of the Station where the Passenger spawned
+	 * @param dest the id of the Passenger's destination Station
+	 */
+	public void enqueuePassenger(int line, double spawnTime, double boardTime, int origin, int dest) {
+		getStationQueue(line).add(spawnTime, boardTime, origin, dest);
+		if (metrics != null) {
+			metrics.passengerQueued();
+		}
+	}
+
+	/**
+	 * @param metrics where to count Passengers joining the queues, or null to stop counting
+	 */
+	public void setMetrics(SimMetrics metrics) {
+		this.metrics = metrics;
 	}
 
 	/**
@@ -80,19 +166,72 @@ public class Station {
 	}
 
 	/**
-	 * Check if this station is occupied by a train.
+	 * Check if this station is occupied (or reserved) by a train, on any line.
 	 * @return whether this station is occupied
 	 */
 	public boolean isOccupied() {
-		return occupied;
+		for (int line = 0; line < owners.length(); line++) {
+			if (isOccupied(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if a line's platform at this station is occupied (or reserved) by a train.
+	 * @param line the line's number
+	 * @return whether the platform is occupied
+	 */
+	public boolean isOccupied(int line) {
+		return owners.get(line) != NOBODY;
+	}
+
+	/**
+	 * @param line the line's number
+	 * @return the id of the Train that has reserved the line's platform, or NOBODY
+	 */
+	public int getOwner(int line) {
+		return owners.get(line);
+	}
+
+	/**
+	 * Reserve a line's platform for a Train, if nobody else has it.
+	 * @param line the line's number
+	 * @param train the Train's id
+	 * @return whether the Train has the platform now; true if it already had it
+	 */
+	public boolean tryReserve(int line, int train) {
+		return owners.compareAndSet(line, NOBODY, train) || owners.get(line) == train;
+	}
+
+	/**
+	 * Give up a Train's reservation of a line's platform.
+	 * @param line the line's number
+	 * @param train the Train's id
+	 * @throws RuntimeException if the Train didn't have the platform
+	 */
+	public void release(int line, int train) throws RuntimeException {
+		if (!owners.compareAndSet(line, train, NOBODY)) {
+			throw new RuntimeException("Error: train " + train + " is leaving " + name + ", but train " + owners.get(line) + " has the platform");
+		}
 	}
 
 	/**
-	 * Set the occupied status of the station.
-	 * @param occupied the true/false value for occupation
+	 * @param line the line's number
+	 * @return when a Train last left the line's platform, or NaN if none has yet
 	 */
-	public void setOccupied(boolean occupied) {
-		this.occupied = occupied;
+	public double getLastDeparture(int line) {
+		return lastDepartures[line];
+	}
+
+	/**
+	 * Record a Train leaving a line's platform.
+	 * @param line the line's number
+	 * @param t when it left
+	 */
+	public void setLastDeparture(int line, double t) {
+		lastDepartures[line] = t;
 	}
 
 	/**
@@ -104,10 +243,116 @@ public class Station {
 	}
 
 	/**
-	 * @return this station's passenger queue
+	 * @return this station's passenger queue for the first line
+	 */
+	public PassengerQueue getStationQueue() {
+		return getStationQueue(0);
+	}
+
+	/**
+	 * @param line the line's number
+	 * @return this station's queue of passengers waiting for that line
+	 */
+	public PassengerQueue getStationQueue(int line) {
+		if (stationQueues[line] == null) {
+			stationQueues[line] = new PassengerQueue();
+		}
+		return stationQueues[line];
+	}
+
+	/**
+	 * @param line the line's number
+	 * @return if anybody is waiting here for that line
+	 */
+	public boolean hasWaiting(int line) {
+		return stationQueues[line] != null && !stationQueues[line].isEmpty();
+	}
+
+	/**
+	 * @return how many Passengers are waiting here, for any line
 	 */
-	public Queue<Passenger> getStationQueue() {
-		return stationQueue;
+	public int getNumWaiting() {
+		int waiting = 0;
+		for (PassengerQueue queue : stationQueues) {
+			if (queue != null) {
+				waiting += queue.size();
+			}
+		}
+		return waiting;
+	}
+
+	/**
+	 * @param line the line's number
+	 * @return how many Passengers are waiting here for that line
+	 */
+	public int getNumWaiting(int line) {
+		return (stationQueues[line] == null) ? 0 : stationQueues[line].size();
+	}
+
+	/**
+	 * @param destination a Station's id
+	 * @return how many Passengers are waiting here to go to that Station, on any line
+	 */
+	public int getNumWaitingFor(int destination) {
+		int waiting = 0;
+		for (PassengerQueue queue : stationQueues) {
+			if (queue != null) {
+				waiting += queue.countFor(destination);
+			}
+		}
+		return waiting;
+	}
+
+	/**
+	 * Save this Station's spawn RNG, platforms and queues for a checkpoint.
+	 * @param out where to write them
+	 * @throws IOException if they can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(tnext);
+		out.writeUTF(arrivals.getClass().getSimpleName());
+		// Length first, so a Station with a different kind of generator can skip it
+		ByteArrayOutputStream arrivalState = new ByteArrayOutputStream();
+		arrivals.writeState(new DataOutputStream(arrivalState));
+		out.writeInt(arrivalState.size());
+		out.write(arrivalState.toByteArray());
+		for (int line = 0; line < owners.length(); line++) {
+			out.writeInt(owners.get(line));
+			out.writeDouble(lastDepartures[line]);
+			out.writeBoolean(stationQueues[line] != null);
+			if (stationQueues[line] != null) {
+				stationQueues[line].writeState(out);
+			}
+		}
+	}
+
+	/**
+	 * Put this Station back the way writeState(...) saved it.
+	 * @param in where to read it from
+	 * @param keepArrivals whether to put the spawn generator back too, or keep this Station's own
+	 * @throws IOException if it can't be read, or was saved with a different kind of ArrivalGenerator
+	 */
+	public void readState(DataInput in, boolean keepArrivals) throws IOException {
+		tnext = in.readDouble();
+		String kind = in.readUTF();
+		int arrivalStateSize = in.readInt();
+		if (!keepArrivals) {
+			in.readFully(new byte[arrivalStateSize]);
+		}
+		else if (!kind.equals(arrivals.getClass().getSimpleName())) {
+			throw new IOException("Error: " + name + " was saved with " + kind + ", but it uses " + arrivals.getClass().getSimpleName());
+		}
+		else {
+			arrivals.readState(in);
+		}
+		for (int line = 0; line < owners.length(); line++) {
+			owners.set(line, in.readInt());
+			lastDepartures[line] = in.readDouble();
+			stationQueues[line] = null;
+			if (in.readBoolean()) {
+				getStationQueue(line).readState(in);
+			}
+		}
 	}
 
 	/**
@@ -117,6 +362,13 @@ public class Station {
 		return name;
 	}
 
+	/**
+	 * @return this Station's id
+	 */
+	public int getId() {
+		return id;
+	}
+
 	/**
 	 * Get a string representation of a station.
 	 * @return a String containing the station's name
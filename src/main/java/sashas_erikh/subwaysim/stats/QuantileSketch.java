@@ -0,0 +1,185 @@
+package sashas_erikh.subwaysim.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An approximate histogram of a stream of non-negative values, for estimating
+ * quantiles (medians, 90th percentiles, etc.) without storing the values.
+ *
+ * Values are counted in buckets whose bounds grow geometrically, so every
+ * quantile is within RELATIVEACCURACY of a true value, whatever the scale. Only
+ * the range of buckets actually hit is stored, which for times in seconds is a
+ * few hundred ints. Sketches can be merged by adding up their buckets.
+ * @author Erik H
+ */
+public class QuantileSketch {
+	/**
+	 * The relative error of the estimated quantiles.
+	 */
+	public static final double RELATIVEACCURACY = 0.01;
+	/**
+	 * Values this small or smaller are counted as 0.
+	 */
+	public static final double MINVALUE = 1e-6;
+
+	private static final double GAMMA = (1 + RELATIVEACCURACY) / (1 - RELATIVEACCURACY);
+	private static final double LOGGAMMA = Math.log(GAMMA);
+
+	private int[] counts; // The bucket counts, from bucket minIndex up
+	private int minIndex;
+	private long zeroCount; // The number of values that were about 0
+	private long count;
+	private double min;
+	private double max;
+
+	public QuantileSketch() {
+		counts = new int[0];
+		minIndex = 0;
+		zeroCount = 0;
+		count = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Add a value.
+	 * @param x the value; negative values are counted as 0
+	 */
+	public void add(double x) {
+		count++;
+		if (x < min) {
+			min = x;
+		}
+		if (x > max) {
+			max = x;
+		}
+		if (x <= MINVALUE) {
+			zeroCount++;
+			return;
+		}
+		int index = (int)Math.ceil(Math.log(x) / LOGGAMMA);
+		ensureRange(index, index);
+		counts[index - minIndex]++;
+	}
+
+	/**
+	 * Add all the values seen by another sketch to this one.
+	 * @param other the other sketch
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.count == 0) {
+			return;
+		}
+		if (other.counts.length > 0) {
+			ensureRange(other.minIndex, other.minIndex + other.counts.length - 1);
+			for (int i = 0; i < other.counts.length; i++) {
+				counts[other.minIndex + i - minIndex] += other.counts[i];
+			}
+		}
+		zeroCount += other.zeroCount;
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Save this sketch for a checkpoint.
+	 * @param out where to write it
+	 * @throws IOException if it can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(minIndex);
+		out.writeInt(counts.length);
+		for (int bucketCount : counts) {
+			out.writeInt(bucketCount);
+		}
+		out.writeLong(zeroCount);
+		out.writeLong(count);
+		out.writeDouble(min);
+		out.writeDouble(max);
+	}
+
+	/**
+	 * Replace this sketch with one saved by writeState(...).
+	 * @param in where to read it from
+	 * @throws IOException if it can't be read
+	 */
+	public void readState(DataInput in) throws IOException {
+		minIndex = in.readInt();
+		counts = new int[in.readInt()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = in.readInt();
+		}
+		zeroCount = in.readLong();
+		count = in.readLong();
+		min = in.readDouble();
+		max = in.readDouble();
+	}
+
+	/**
+	 * Estimate a quantile of the values seen.
+	 * @param q the quantile, from 0 to 1; e.g. 0.5 for the median
+	 * @return the estimate, or NaN if no values have been seen
+	 */
+	public double getQuantile(double q) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (q <= 0.0) {
+			return min;
+		}
+		if (q >= 1.0) {
+			return max;
+		}
+
+		long rank = (long)(q * (count - 1));
+		long seen = zeroCount;
+		if (rank < seen) {
+			return Math.max(min, 0.0);
+		}
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (rank < seen) {
+				// The middle of the bucket, in relative terms
+				double estimate = 2 * Math.pow(GAMMA, minIndex + i) / (GAMMA + 1);
+				return Math.max(min, Math.min(max, estimate));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the number of values seen
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Make sure there are buckets for the indexes from lo to hi.
+	 */
+	private void ensureRange(int lo, int hi) {
+		if (counts.length == 0) {
+			counts = new int[hi - lo + 1];
+			minIndex = lo;
+			return;
+		}
+		int maxIndex = minIndex + counts.length - 1;
+		if (lo >= minIndex && hi <= maxIndex) {
+			return;
+		}
+		// Grow by at least double, so that a slowly widening range doesn't copy every time
+		int newMin = Math.min(lo, minIndex);
+		int newMax = Math.max(hi, maxIndex);
+		int grownLength = Math.max(newMax - newMin + 1, counts.length * 2);
+		if (lo < minIndex) {
+			newMin = newMax - grownLength + 1;
+		}
+		int[] newCounts = new int[grownLength];
+		System.arraycopy(counts, 0, newCounts, minIndex - newMin, counts.length);
+		counts = newCounts;
+		minIndex = newMin;
+	}
+}
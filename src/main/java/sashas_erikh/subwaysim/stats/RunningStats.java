@@ -0,0 +1,149 @@
+package sashas_erikh.subwaysim.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The count, mean, variance, min and max of a stream of values, updated one
+ * value at a time with Welford's method so nothing has to be stored.
+ * Two RunningStats can be merged, e.g. to combine the results of separate runs.
+ * @author Erik H
+ */
+public class RunningStats {
+	private long count;
+	private double mean;
+	private double m2; // The sum of squared differences from the mean
+	private double min;
+	private double max;
+
+	public RunningStats() {
+		count = 0;
+		mean = 0.0;
+		m2 = 0.0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Add a value.
+	 * @param x the value
+	 */
+	public void add(double x) {
+		count++;
+		double delta = x - mean;
+		mean += delta / count;
+		m2 += delta * (x - mean);
+		if (x < min) {
+			min = x;
+		}
+		if (x > max) {
+			max = x;
+		}
+	}
+
+	/**
+	 * Add all the values seen by another RunningStats to this one.
+	 * @param other the other RunningStats
+	 */
+	public void merge(RunningStats other) {
+		if (other.count == 0) {
+			return;
+		}
+		long total = count + other.count;
+		double delta = other.mean - mean;
+		mean += delta * other.count / total;
+		m2 += other.m2 + delta * delta * ((double)count * other.count / total);
+		count = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Save these statistics for a checkpoint.
+	 * @param out where to write them
+	 * @throws IOException if they can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(count);
+		out.writeDouble(mean);
+		out.writeDouble(m2);
+		out.writeDouble(min);
+		out.writeDouble(max);
+	}
+
+	/**
+	 * Replace these statistics with ones saved by writeState(...).
+	 * @param in where to read them from
+	 * @throws IOException if they can't be read
+	 */
+	public void readState(DataInput in) throws IOException {
+		count = in.readLong();
+		mean = in.readDouble();
+		m2 = in.readDouble();
+		min = in.readDouble();
+		max = in.readDouble();
+	}
+
+	/**
+	 * @return the number of values seen
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the mean of the values, or NaN if there aren't any
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * @return the sample variance of the values, or NaN if there are less than two
+	 */
+	public double getVariance() {
+		return count > 1 ? m2 / (count - 1) : Double.NaN;
+	}
+
+	/**
+	 * @return the sample standard deviation of the values, or NaN if there are less than two
+	 */
+	public double getStdDev() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * The half width of a Student's t confidence interval for the mean,
+	 * treating the values as independent samples.
+	 * @param confidence the confidence level, e.g. 0.95
+	 * @return the half width, or NaN if there are less than two values
+	 */
+	public double getHalfWidth(double confidence) {
+		if (count < 2) {
+			return Double.NaN;
+		}
+		return StudentT.quantile((1 + confidence) / 2, count - 1) * getStdDev() / Math.sqrt(count);
+	}
+
+	/**
+	 * @return the smallest value, or NaN if there aren't any
+	 */
+	public double getMin() {
+		return count > 0 ? min : Double.NaN;
+	}
+
+	/**
+	 * @return the biggest value, or NaN if there aren't any
+	 */
+	public double getMax() {
+		return count > 0 ? max : Double.NaN;
+	}
+
+	/**
+	 * @return the count, mean, standard deviation, min and max
+	 */
+	public String toString() {
+		return "count " + count + ", mean " + getMean() + ", std dev " + getStdDev() + ", min " + getMin() + ", max " + getMax();
+	}
+}
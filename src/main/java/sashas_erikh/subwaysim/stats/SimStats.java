@@ -0,0 +1,294 @@
+package sashas_erikh.subwaysim.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Summary statistics for a sim, updated as Passengers finish their trips and
+ * Trains leave Stations, in memory that doesn't grow with the number of
+ * Passengers:
+ * <ul>
+ * <li>trip, wait and ride times over all Passengers
+ * <li>trip and wait times for each origin/destination pair of Stations
+ * <li>each Train's load factor (Passengers on board / capacity) when leaving a Station
+ * </ul>
+ * Stations are identified by id, and Trains by the id returned from addTrain(...).
+ * @author Erik H
+ */
+public class SimStats {
+	/**
+	 * The quantiles that are written to the log.
+	 */
+	public static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+	/**
+	 * The statistics for one origin/destination pair.
+	 */
+	private static class PairStats {
+		RunningStats tripTimes = new RunningStats();
+		RunningStats waitTimes = new RunningStats();
+		QuantileSketch tripSketch = new QuantileSketch();
+		QuantileSketch waitSketch = new QuantileSketch();
+
+		void merge(PairStats other) {
+			tripTimes.merge(other.tripTimes);
+			waitTimes.merge(other.waitTimes);
+			tripSketch.merge(other.tripSketch);
+			waitSketch.merge(other.waitSketch);
+		}
+
+		void writeState(DataOutput out) throws IOException {
+			tripTimes.writeState(out);
+			waitTimes.writeState(out);
+			tripSketch.writeState(out);
+			waitSketch.writeState(out);
+		}
+
+		void readState(DataInput in) throws IOException {
+			tripTimes.readState(in);
+			waitTimes.readState(in);
+			tripSketch.readState(in);
+			waitSketch.readState(in);
+		}
+	}
+
+	private List<String> stationNames; // Indexed by Station id
+	private int trainCapacity;
+
+	private RunningStats tripTimes;
+	private RunningStats waitTimes; // From spawning to boarding
+	private RunningStats rideTimes; // From boarding to getting off
+
+	/**
+	 * Keyed by origin id * number of Stations + destination id; only
+	 * created for pairs that someone has actually travelled between, since
+	 * big networks have far more pairs than trips.
+	 */
+	private Map<Long, PairStats> pairs;
+
+	private List<String> trainNames; // Indexed by Train id
+	private List<RunningStats> trainLoads; // Indexed by Train id
+
+	/**
+	 * @param stationNames the Station names, indexed by Station id
+	 * @param trainCapacity the capacity of every Train
+	 */
+	public SimStats(List<String> stationNames, int trainCapacity) {
+		this.stationNames = stationNames;
+		this.trainCapacity = trainCapacity;
+		tripTimes = new RunningStats();
+		waitTimes = new RunningStats();
+		rideTimes = new RunningStats();
+		pairs = new TreeMap<Long, PairStats>();
+		trainNames = new ArrayList<String>();
+		trainLoads = new ArrayList<RunningStats>();
+	}
+
+	/**
+	 * Start keeping track of a Train.
+	 * @param name the Train's name
+	 * @return the Train's id
+	 */
+	public int addTrain(String name) {
+		trainNames.add(name);
+		trainLoads.add(new RunningStats());
+		return trainNames.size() - 1;
+	}
+
+	/**
+	 * Record a completed Passenger trip.
+	 * @param totalTripTime the time from spawning to getting off, in seconds
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param boardTime when the Passenger boarded, in seconds
+	 * @param spawnStation the id of the Station where the Passenger spawned
+	 * @param destStation the id of the Station where the Passenger got off
+	 */
+	public void recordTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation) {
+		double waitTime = boardTime - spawnTime;
+		tripTimes.add(totalTripTime);
+		waitTimes.add(waitTime);
+		rideTimes.add(totalTripTime - waitTime);
+
+		long pairKey = (long)spawnStation * stationNames.size() + destStation;
+		PairStats pair = pairs.get(pairKey);
+		if (pair == null) {
+			pair = new PairStats();
+			pairs.put(pairKey, pair);
+		}
+		pair.tripTimes.add(totalTripTime);
+		pair.waitTimes.add(waitTime);
+		pair.tripSketch.add(totalTripTime);
+		pair.waitSketch.add(waitTime);
+	}
+
+	/**
+	 * Record a Train leaving a Station.
+	 * @param train the Train's id
+	 * @param numPassengers the number of Passengers on board
+	 */
+	public void recordDeparture(int train, int numPassengers) {
+		trainLoads.get(train).add((double)numPassengers / trainCapacity);
+	}
+
+	/**
+	 * Add another sim's statistics to these ones. The sims must have the same
+	 * Stations and Trains, e.g. runs of the same config with different seeds.
+	 * @param other the other sim's statistics
+	 * @throws RuntimeException if the sims' Stations or Trains don't match
+	 */
+	public void merge(SimStats other) throws RuntimeException {
+		if (!stationNames.equals(other.stationNames) || !trainNames.equals(other.trainNames)) {
+			throw new RuntimeException("Error: can't merge statistics from sims with different Stations or Trains");
+		}
+		tripTimes.merge(other.tripTimes);
+		waitTimes.merge(other.waitTimes);
+		rideTimes.merge(other.rideTimes);
+		for (Map.Entry<Long, PairStats> otherPair : other.pairs.entrySet()) {
+			PairStats pair = pairs.get(otherPair.getKey());
+			if (pair == null) {
+				pair = new PairStats();
+				pairs.put(otherPair.getKey(), pair);
+			}
+			pair.merge(otherPair.getValue());
+		}
+		for (int i = 0; i < trainLoads.size(); i++) {
+			trainLoads.get(i).merge(other.trainLoads.get(i));
+		}
+	}
+
+	/**
+	 * Save the statistics so far for a checkpoint.
+	 * @param out where to write them
+	 * @throws IOException if they can't be written
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		tripTimes.writeState(out);
+		waitTimes.writeState(out);
+		rideTimes.writeState(out);
+		out.writeInt(pairs.size());
+		for (Map.Entry<Long, PairStats> pair : pairs.entrySet()) {
+			out.writeLong(pair.getKey());
+			pair.getValue().writeState(out);
+		}
+		out.writeInt(trainLoads.size());
+		for (RunningStats trainLoad : trainLoads) {
+			trainLoad.writeState(out);
+		}
+	}
+
+	/**
+	 * Replace the statistics with ones saved by writeState(...), from a sim with the same Stations and Trains.
+	 * @param in where to read them from
+	 * @throws IOException if they can't be read
+	 * @throws RuntimeException if they're for a different number of Trains
+	 */
+	public void readState(DataInput in) throws IOException, RuntimeException {
+		tripTimes.readState(in);
+		waitTimes.readState(in);
+		rideTimes.readState(in);
+		pairs.clear();
+		int numPairs = in.readInt();
+		for (int i = 0; i < numPairs; i++) {
+			PairStats pair = new PairStats();
+			pairs.put(in.readLong(), pair);
+			pair.readState(in);
+		}
+		int numTrains = in.readInt();
+		if (numTrains != trainLoads.size()) {
+			throw new RuntimeException("Error: saved statistics are for " + numTrains + " trains, not " + trainLoads.size());
+		}
+		for (RunningStats trainLoad : trainLoads) {
+			trainLoad.readState(in);
+		}
+	}
+
+	/**
+	 * @return the trip times over all Passengers, in seconds
+	 */
+	public RunningStats getTripTimes() {
+		return tripTimes;
+	}
+
+	/**
+	 * @return the times Passengers spent waiting to board, in seconds
+	 */
+	public RunningStats getWaitTimes() {
+		return waitTimes;
+	}
+
+	/**
+	 * @return the times Passengers spent on Trains, in seconds
+	 */
+	public RunningStats getRideTimes() {
+		return rideTimes;
+	}
+
+	/**
+	 * @return the trip times over all Passengers, in a sketch merged from every origin/destination pair
+	 */
+	public QuantileSketch getTripSketch() {
+		QuantileSketch sketch = new QuantileSketch();
+		for (PairStats pair : pairs.values()) {
+			sketch.merge(pair.tripSketch);
+		}
+		return sketch;
+	}
+
+	/**
+	 * @return the wait times over all Passengers, in a sketch merged from every origin/destination pair
+	 */
+	public QuantileSketch getWaitSketch() {
+		QuantileSketch sketch = new QuantileSketch();
+		for (PairStats pair : pairs.values()) {
+			sketch.merge(pair.waitSketch);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Write the statistics, in the same "name: value" style as the rest of the log file.
+	 * @param writer where to write them
+	 */
+	public void write(PrintWriter writer) {
+		writer.println("Trip time (seconds): " + tripTimes + quantiles(getTripSketch()));
+		writer.println("Wait time (seconds): " + waitTimes + quantiles(getWaitSketch()));
+		writer.println("Ride time (seconds): " + rideTimes);
+
+		RunningStats allLoads = new RunningStats();
+		for (int i = 0; i < trainNames.size(); i++) {
+			allLoads.merge(trainLoads.get(i));
+		}
+		writer.println("Train load factor: " + allLoads);
+		for (int i = 0; i < trainNames.size(); i++) {
+			writer.println("Train " + trainNames.get(i) + " load factor: " + trainLoads.get(i));
+		}
+
+		int numStations = stationNames.size();
+		for (Map.Entry<Long, PairStats> entry : pairs.entrySet()) {
+			PairStats pair = entry.getValue();
+			long key = entry.getKey();
+			String route = stationNames.get((int)(key / numStations)) + " -> " + stationNames.get((int)(key % numStations));
+			writer.println("Trip time " + route + " (seconds): " + pair.tripTimes + quantiles(pair.tripSketch));
+			writer.println("Wait time " + route + " (seconds): " + pair.waitTimes + quantiles(pair.waitSketch));
+		}
+	}
+
+	/**
+	 * @param sketch a sketch
+	 * @return the sketch's QUANTILES, like ", p50 1.0, p90 2.0, p99 3.0"
+	 */
+	private static String quantiles(QuantileSketch sketch) {
+		StringBuilder sb = new StringBuilder();
+		for (double q : QUANTILES) {
+			sb.append(", p").append(Math.round(q * 100)).append(' ').append(sketch.getQuantile(q));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,75 @@
+package sashas_erikh.subwaysim.stop;
+
+import sashas_erikh.subwaysim.main.SubwaySim;
+
+import rmacdonald_kingsu.util.ConfigFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stop as soon as any one of several conditions is met.
+ * @author Erik H
+ */
+public class AnyOf implements StopCondition {
+	private List<StopCondition> conditions;
+	private StopCondition met; // The condition that stopped the sim, or null
+
+	/**
+	 * @param conditions the conditions, checked in order
+	 */
+	public AnyOf(List<StopCondition> conditions) {
+		this.conditions = conditions;
+	}
+
+	/**
+	 * Make the stop conditions a config asks for: maxTime and maxPassengers,
+	 * plus steadyStateEpsilon and maxWallTime if they're more than 0.
+	 * @param config the config, as returned by SubwaySim.loadConfig(...)
+	 * @return the conditions; stop when any of them is met
+	 * @throws RuntimeException if a condition's parameters don't make sense
+	 */
+	public static AnyOf fromConfig(ConfigFile config) throws RuntimeException {
+		List<StopCondition> conditions = new ArrayList<StopCondition>();
+		conditions.add(new TimeLimit(config.getDouble("maxTime")));
+		conditions.add(new PassengerLimit(config.getInt("maxPassengers")));
+		if (config.getDouble("steadyStateEpsilon") > 0) {
+			conditions.add(new SteadyState(config.getDouble("steadyStateEpsilon"), config.getDouble("steadyStateWindow")));
+		}
+		if (config.getDouble("maxWallTime") > 0) {
+			conditions.add(new WallClockLimit(config.getDouble("maxWallTime")));
+		}
+		return new AnyOf(conditions);
+	}
+
+	public boolean isMet(SubwaySim sim) {
+		// Check every condition, so the ones that watch the sim over time see every step
+		met = null;
+		for (StopCondition condition : conditions) {
+			if (condition.isMet(sim) && met == null) {
+				met = condition;
+			}
+		}
+		return met != null;
+	}
+
+	public String getReason() {
+		return met == null ? "not stopped" : met.getReason();
+	}
+
+	public double getEndTime() {
+		double endTime = Double.POSITIVE_INFINITY;
+		for (StopCondition condition : conditions) {
+			endTime = Math.min(endTime, condition.getEndTime());
+		}
+		return endTime;
+	}
+
+	public double getNextCheckTime() {
+		double nextCheckTime = Double.POSITIVE_INFINITY;
+		for (StopCondition condition : conditions) {
+			nextCheckTime = Math.min(nextCheckTime, condition.getNextCheckTime());
+		}
+		return nextCheckTime;
+	}
+}
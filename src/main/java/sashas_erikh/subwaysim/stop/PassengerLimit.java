@@ -0,0 +1,26 @@
+package sashas_erikh.subwaysim.stop;
+
+import sashas_erikh.subwaysim.main.SubwaySim;
+
+/**
+ * Stop once a given number of Passengers have reached their destinations.
+ * @author Erik H
+ */
+public class PassengerLimit implements StopCondition {
+	private int maxPassengers;
+
+	/**
+	 * @param maxPassengers how many Passengers to serve
+	 */
+	public PassengerLimit(int maxPassengers) {
+		this.maxPassengers = maxPassengers;
+	}
+
+	public boolean isMet(SubwaySim sim) {
+		return sim.getNumPassengers() >= maxPassengers;
+	}
+
+	public String getReason() {
+		return "served maxPassengers of " + maxPassengers + " passengers";
+	}
+}
@@ -0,0 +1,67 @@
+package sashas_erikh.subwaysim.stop;
+
+import sashas_erikh.subwaysim.main.SubwaySim;
+import sashas_erikh.subwaysim.stats.RunningStats;
+
+/**
+ * Stop once the mean trip time has settled down: at the end of each window
+ * of sim time, the mean trip time so far is compared with what it was at
+ * the start of the window, and if it changed by less than epsilon (as a
+ * fraction of the mean), running any longer won't tell us much more.
+ * Windows where nobody finished a trip don't count, since the mean can't
+ * have changed.
+ * @author Erik H
+ */
+public class SteadyState implements StopCondition {
+	private double epsilon;
+	private double window;
+
+	private double nextCheck = Double.NaN; // The end of the current window; set on the first check
+	private long lastCount; // The number of trips at the start of the window
+	private double lastMean; // The mean trip time at the start of the window
+	private double change; // The relative change over the last window, for the reason
+
+	/**
+	 * @param epsilon the largest relative change in the mean trip time over a window that counts as settled
+	 * @param window the length of the window, in seconds
+	 * @throws RuntimeException if the window isn't positive
+	 */
+	public SteadyState(double epsilon, double window) throws RuntimeException {
+		if (window <= 0) {
+			throw new RuntimeException("Error: steadyStateWindow must be positive; got " + window);
+		}
+		this.epsilon = epsilon;
+		this.window = window;
+	}
+
+	public double getNextCheckTime() {
+		return Double.isNaN(nextCheck) ? Double.POSITIVE_INFINITY : nextCheck;
+	}
+
+	public boolean isMet(SubwaySim sim) {
+		RunningStats tripTimes = sim.getStats().getTripTimes();
+		if (Double.isNaN(nextCheck)) {
+			nextCheck = sim.getTime() + window;
+			lastCount = tripTimes.getCount();
+			lastMean = tripTimes.getMean();
+			return false;
+		}
+		if (sim.getTime() < nextCheck) {
+			return false;
+		}
+
+		boolean settled = false;
+		if (lastCount > 0 && tripTimes.getCount() > lastCount) {
+			change = Math.abs(tripTimes.getMean() - lastMean) / lastMean;
+			settled = change < epsilon;
+		}
+		nextCheck += window;
+		lastCount = tripTimes.getCount();
+		lastMean = tripTimes.getMean();
+		return settled;
+	}
+
+	public String getReason() {
+		return "mean trip time changed by " + change + " (less than steadyStateEpsilon of " + epsilon + ") over the last " + window + " seconds";
+	}
+}
@@ -0,0 +1,38 @@
+package sashas_erikh.subwaysim.stop;
+
+import sashas_erikh.subwaysim.main.SubwaySim;
+
+/**
+ * Something that decides when a sim is finished, checked before every step.
+ * Conditions can hang on to what they've seen of the sim so far, so each
+ * run needs its own.
+ * @author Erik H
+ */
+public interface StopCondition {
+	/**
+	 * @param sim the sim
+	 * @return whether the sim should stop now
+	 */
+	boolean isMet(SubwaySim sim);
+
+	/**
+	 * @return why the sim stopped, once isMet(...) has returned true
+	 */
+	String getReason();
+
+	/**
+	 * @return the latest time the sim could run until, in seconds; steps that
+	 * skip idle time steps use this to avoid skipping past the end of the run
+	 */
+	default double getEndTime() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @return the next time isMet(...) needs to see the sim, in seconds; the
+	 * steps that skip idle time steps won't skip past it
+	 */
+	default double getNextCheckTime() {
+		return getEndTime();
+	}
+}
@@ -0,0 +1,30 @@
+package sashas_erikh.subwaysim.stop;
+
+import sashas_erikh.subwaysim.main.SubwaySim;
+
+/**
+ * Stop once the sim's clock reaches a given time.
+ * @author Erik H
+ */
+public class TimeLimit implements StopCondition {
+	private double maxTime;
+
+	/**
+	 * @param maxTime when to stop, in seconds
+	 */
+	public TimeLimit(double maxTime) {
+		this.maxTime = maxTime;
+	}
+
+	public boolean isMet(SubwaySim sim) {
+		return sim.getTime() >= maxTime;
+	}
+
+	public String getReason() {
+		return "reached maxTime of " + maxTime + " seconds";
+	}
+
+	public double getEndTime() {
+		return maxTime;
+	}
+}
@@ -0,0 +1,33 @@
+package sashas_erikh.subwaysim.stop;
+
+import sashas_erikh.subwaysim.main.SubwaySim;
+
+/**
+ * Stop once the sim has been running for a given amount of real time,
+ * counted from the first check.
+ * @author Erik H
+ */
+public class WallClockLimit implements StopCondition {
+	private long maxNanos;
+	private long startNanos;
+	private boolean started;
+
+	/**
+	 * @param maxWallTime how long to run for, in (real) seconds
+	 */
+	public WallClockLimit(double maxWallTime) {
+		maxNanos = (long)(maxWallTime * 1e9);
+	}
+
+	public boolean isMet(SubwaySim sim) {
+		if (!started) {
+			startNanos = System.nanoTime();
+			started = true;
+		}
+		return System.nanoTime() - startNanos >= maxNanos;
+	}
+
+	public String getReason() {
+		return "ran for maxWallTime of " + maxNanos / 1e9 + " seconds";
+	}
+}
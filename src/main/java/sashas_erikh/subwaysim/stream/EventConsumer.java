@@ -0,0 +1,26 @@
+package sashas_erikh.subwaysim.stream;
+
+/**
+ * Something that handles a sim's SimEvents, on a thread of its own.
+ * addTrain(...) is called on the sim's thread while it's being set up, before
+ * any events; onEvent(...) and onClose() are called on the consumer's thread.
+ * @author Erik H
+ */
+public interface EventConsumer {
+	/**
+	 * Register a Train. Trains are numbered from 0 in the order they're added.
+	 * @param name the Train's name
+	 */
+	void addTrain(String name);
+
+	/**
+	 * Handle the next event. The SimEvent is reused once this returns.
+	 * @param event the event
+	 */
+	void onEvent(SimEvent event);
+
+	/**
+	 * Finish up, after the last event; e.g. flush and close files.
+	 */
+	void onClose();
+}
@@ -0,0 +1,248 @@
+package sashas_erikh.subwaysim.stream;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of SimEvents, passed from the sim's thread to any number of
+ * EventConsumers, each on a thread of its own, in the style of the LMAX
+ * Disruptor.
+ *
+ * There's one producer, so claiming a slot is just counting. The producer
+ * fills in the slot and publishes it by moving the cursor on with an ordered
+ * store; each consumer works through everything published since it last
+ * looked, in one batch, then moves its own sequence on the same way. Nothing
+ * is locked and nothing is allocated per event. The producer only has to wait
+ * if the slowest consumer is a whole ring behind, so it never waits on a
+ * consumer's I/O unless the I/O can't keep up.
+ *
+ * Waiting threads spin for a bit, then yield, then park for a moment at a
+ * time, so idle consumers don't eat a processor the sim could use.
+ * @author Erik H
+ */
+public class EventRing {
+	/**
+	 * How many times a waiting thread checks again before it starts yielding.
+	 */
+	public static final int SPINS = 100;
+	/**
+	 * How many times it yields before it starts parking.
+	 */
+	public static final int YIELDS = 100;
+	/**
+	 * How long it parks for each time, in nanoseconds.
+	 */
+	public static final long PARKNANOS = 1000000L;
+
+	private SimEvent[] slots;
+	private int mask; // For turning a sequence number into a slot index
+	private AtomicLong cursor; // The sequence number of the last published event
+	private Worker[] workers;
+
+	// Only used by the producer
+	private long nextSequence; // The sequence number of the next event to claim
+	private long gate; // The slowest consumer's sequence, when last looked at
+	private boolean started;
+	private boolean finished;
+	private boolean failureReported;
+
+	private volatile boolean closed;
+
+	/**
+	 * Make a ring, without starting the consumers' threads yet.
+	 * @param size how many events the ring holds; a power of two
+	 * @param consumers the consumers
+	 * @throws RuntimeException if the size isn't a power of two
+	 */
+	public EventRing(int size, List<EventConsumer> consumers) throws RuntimeException {
+		if (size <= 0 || Integer.bitCount(size) != 1) {
+			throw new RuntimeException("Error: the event buffer size has to be a power of two: " + size);
+		}
+		slots = new SimEvent[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new SimEvent();
+		}
+		mask = size - 1;
+		cursor = new AtomicLong(-1);
+		gate = -1;
+		workers = new Worker[consumers.size()];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(consumers.get(i), "subwaysim-events-" + i);
+		}
+	}
+
+	/**
+	 * Get the next slot to fill in, waiting for the slowest consumer to be
+	 * done with it if need be. It has to be published before the next one is claimed.
+	 * The consumers' threads are started the first time, so everything set up
+	 * before then (such as the Trains they were given) is seen by them.
+	 * @return the slot
+	 * @throws RuntimeException if a consumer has failed
+	 */
+	public SimEvent claim() throws RuntimeException {
+		if (!started) {
+			start();
+		}
+		long wrapPoint = nextSequence - slots.length;
+		if (gate < wrapPoint) {
+			waitForRoom(wrapPoint);
+		}
+		return slots[(int)nextSequence & mask];
+	}
+
+	/**
+	 * Hand the claimed slot to the consumers.
+	 */
+	public void publish() {
+		cursor.lazySet(nextSequence++);
+	}
+
+	/**
+	 * Let the consumers finish off the events, and wait for them to close.
+	 * @throws RuntimeException if a consumer failed, or the wait was interrupted
+	 */
+	public void close() throws RuntimeException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		if (!started) {
+			start();
+		}
+		closed = true;
+		for (Worker worker : workers) {
+			LockSupport.unpark(worker.thread);
+		}
+		for (Worker worker : workers) {
+			try {
+				worker.thread.join();
+			}
+			catch (InterruptedException e) {
+				throw new RuntimeException("Error: interrupted while waiting for the event consumers to finish");
+			}
+		}
+		checkFailures();
+	}
+
+	private void start() {
+		started = true;
+		for (Worker worker : workers) {
+			worker.thread.start();
+		}
+	}
+
+	/**
+	 * Wait until every consumer is past a sequence number.
+	 * @param wrapPoint the sequence number
+	 */
+	private void waitForRoom(long wrapPoint) {
+		int idleCount = 0;
+		while ((gate = getSlowestSequence()) < wrapPoint) {
+			idleCount = idle(idleCount);
+		}
+		checkFailures();
+	}
+
+	/**
+	 * @return the lowest sequence number any consumer has finished
+	 */
+	private long getSlowestSequence() {
+		long slowest = cursor.get();
+		for (Worker worker : workers) {
+			slowest = Math.min(slowest, worker.sequence.get());
+		}
+		return slowest;
+	}
+
+	/**
+	 * Pass on the first consumer failure, if there is one and it hasn't been already.
+	 */
+	private void checkFailures() throws RuntimeException {
+		if (failureReported) {
+			return;
+		}
+		for (Worker worker : workers) {
+			if (worker.failure != null) {
+				failureReported = true;
+				throw new RuntimeException("Error: event consumer " + worker.thread.getName() + " failed: " + worker.failure, worker.failure);
+			}
+		}
+	}
+
+	/**
+	 * Wait a little, for longer the longer we've been waiting.
+	 * @param idleCount how many times we've waited already
+	 * @return the new count
+	 */
+	private static int idle(int idleCount) {
+		if (idleCount >= SPINS + YIELDS) {
+			LockSupport.parkNanos(PARKNANOS);
+		}
+		else if (idleCount >= SPINS) {
+			Thread.yield();
+		}
+		return idleCount + 1;
+	}
+
+	/**
+	 * A consumer and the thread it runs on.
+	 */
+	private class Worker implements Runnable {
+		private EventConsumer consumer;
+		private Thread thread;
+		// The sequence number of the last event this consumer is done with;
+		// Long.MAX_VALUE once it has failed, so it doesn't hold up the producer
+		private AtomicLong sequence;
+		private volatile Throwable failure;
+
+		Worker(EventConsumer consumer, String name) {
+			this.consumer = consumer;
+			sequence = new AtomicLong(-1);
+			thread = new Thread(this, name);
+			// close() waits for it, but an abandoned sim shouldn't keep the JVM running
+			thread.setDaemon(true);
+		}
+
+		public void run() {
+			boolean closing = false;
+			try {
+				long next = 0;
+				int idleCount = 0;
+				while (true) {
+					long available = cursor.get();
+					if (available >= next) {
+						for (; next <= available; next++) {
+							consumer.onEvent(slots[(int)next & mask]);
+						}
+						sequence.lazySet(available);
+						idleCount = 0;
+					}
+					// Everything published before closing is seen once closed is
+					else if (closed) {
+						if (cursor.get() < next) {
+							break;
+						}
+					}
+					else {
+						idleCount = idle(idleCount);
+					}
+				}
+				closing = true;
+				consumer.onClose();
+			}
+			catch (Throwable e) {
+				failure = e;
+				sequence.set(Long.MAX_VALUE);
+				if (!closing) {
+					try {
+						consumer.onClose();
+					}
+					catch (Throwable ignored) {
+						// The first failure is the one worth reporting
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package sashas_erikh.subwaysim.stream;
+
+import sashas_erikh.subwaysim.output.OutputSink;
+
+import java.util.List;
+
+/**
+ * An OutputSink that turns the sim's records into SimEvents, and publishes
+ * them through an EventRing to EventConsumers on their own threads, so the
+ * sim never has to wait for them to write anything.
+ * @author Erik H
+ */
+public class EventStreamSink implements OutputSink {
+	private EventRing ring;
+	private List<EventConsumer> consumers;
+	private int numTrains;
+
+	// Trips don't say which Train they were on, or when it got in, so they're
+	// taken from the arrival that always comes just before them
+	private int arrivalTrain;
+	private int arrivalStation;
+	private double arrivalTime;
+
+	/**
+	 * @param bufferSize how many events can wait for the slowest consumer; a power of two
+	 * @param consumers the consumers
+	 * @throws RuntimeException if the buffer size isn't a power of two
+	 */
+	public EventStreamSink(int bufferSize, List<EventConsumer> consumers) throws RuntimeException {
+		this.consumers = consumers;
+		ring = new EventRing(bufferSize, consumers);
+	}
+
+	public int addTrain(String name) {
+		for (EventConsumer consumer : consumers) {
+			consumer.addTrain(name);
+		}
+		return numTrains++;
+	}
+
+	public void writeTrip(double totalTripTime, double spawnTime, double boardTime, int spawnStation, int destStation) {
+		SimEvent event = ring.claim();
+		event.kind = SimEvent.Kind.PASSENGER_ALIGHTED;
+		event.time = arrivalTime;
+		event.train = arrivalTrain;
+		event.station = arrivalStation;
+		event.spawnTime = spawnTime;
+		event.boardTime = boardTime;
+		event.origin = spawnStation;
+		event.destination = destStation;
+		event.tripTime = totalTripTime;
+		event.arrived = true;
+		ring.publish();
+	}
+
+	public void writeDeparture(int train, int numPassengers, int fromStation, int toStation, double t) {
+		SimEvent event = ring.claim();
+		event.kind = SimEvent.Kind.TRAIN_DEPARTED;
+		event.time = t;
+		event.train = train;
+		event.station = fromStation;
+		event.toStation = toStation;
+		event.count = numPassengers;
+		ring.publish();
+	}
+
+	public void writeSpawn(double t, int station, int destStation) {
+		SimEvent event = ring.claim();
+		event.kind = SimEvent.Kind.PASSENGER_SPAWNED;
+		event.time = t;
+		event.station = station;
+		event.origin = station;
+		event.destination = destStation;
+		ring.publish();
+	}
+
+	public void writeArrival(int train, int station, int numAlighting, double t) {
+		arrivalTrain = train;
+		arrivalStation = station;
+		arrivalTime = t;
+		SimEvent event = ring.claim();
+		event.kind = SimEvent.Kind.TRAIN_ARRIVED;
+		event.time = t;
+		event.train = train;
+		event.station = station;
+		event.count = numAlighting;
+		ring.publish();
+	}
+
+	public void writeBoarding(int train, int station, double spawnTime, int spawnStation, int destStation, double t) {
+		SimEvent event = ring.claim();
+		event.kind = SimEvent.Kind.PASSENGER_BOARDED;
+		event.time = t;
+		event.train = train;
+		event.station = station;
+		event.spawnTime = spawnTime;
+		event.origin = spawnStation;
+		event.destination = destStation;
+		ring.publish();
+	}
+
+	public void writeTransfer(int train, int station, double spawnTime, double boardTime, int spawnStation, int destStation, double t) {
+		SimEvent event = ring.claim();
+		event.kind = SimEvent.Kind.PASSENGER_ALIGHTED;
+		event.time = t;
+		event.train = train;
+		event.station = station;
+		event.spawnTime = spawnTime;
+		event.boardTime = boardTime;
+		event.origin = spawnStation;
+		event.destination = destStation;
+		event.arrived = false;
+		ring.publish();
+	}
+
+	/**
+	 * Wait for the consumers to finish the events off and close.
+	 */
+	public void close() {
+		ring.close();
+	}
+}
@@ -0,0 +1,121 @@
+package sashas_erikh.subwaysim.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * An EventConsumer that keeps how many Passengers were on each Train as it
+ * left each Station, and writes them out for gnuplot when the run is over:
+ * all the Trains in one data file, one block each, and a script that draws
+ * each Train's block as a line graph, the way data/plot_trains.gp did from
+ * the Train CSV files.
+ * @author Erik H
+ */
+public class GnuplotExporter implements EventConsumer {
+	public static final String DATASUFFIX = "_trains.dat";
+	public static final String SCRIPTSUFFIX = "_trains.gp";
+	private static final int INITIALCAPACITY = 64;
+
+	private String outFileBase; // The prefix for the output files, including directory
+	private int capacity; // The Trains' capacity, for the top of the graphs
+	private List<String> trainNames;
+	// For each Train, when it left each Station and how many Passengers it had on board
+	private List<double[]> times;
+	private List<int[]> loads;
+	private int[] numDepartures;
+
+	/**
+	 * @param outFileBase the prefix for the output files, including directory
+	 * @param capacity how many Passengers a Train can hold
+	 */
+	public GnuplotExporter(String outFileBase, int capacity) {
+		this.outFileBase = outFileBase;
+		this.capacity = capacity;
+		trainNames = new ArrayList<String>();
+		times = new ArrayList<double[]>();
+		loads = new ArrayList<int[]>();
+		numDepartures = new int[0];
+	}
+
+	public void addTrain(String name) {
+		trainNames.add(name);
+		times.add(new double[INITIALCAPACITY]);
+		loads.add(new int[INITIALCAPACITY]);
+		numDepartures = Arrays.copyOf(numDepartures, trainNames.size());
+	}
+
+	public void onEvent(SimEvent event) {
+		if (event.getKind() != SimEvent.Kind.TRAIN_DEPARTED) {
+			return;
+		}
+		int train = event.getTrain();
+		int n = numDepartures[train]++;
+		if (n == times.get(train).length) {
+			times.set(train, Arrays.copyOf(times.get(train), 2 * n));
+			loads.set(train, Arrays.copyOf(loads.get(train), 2 * n));
+		}
+		times.get(train)[n] = event.getTime();
+		loads.get(train)[n] = event.getCount();
+	}
+
+	/**
+	 * Write the data file and the script.
+	 * @throws RuntimeException if they can't be written
+	 */
+	public void onClose() throws RuntimeException {
+		String dataName = new File(outFileBase + DATASUFFIX).getName();
+		try (BufferedWriter data = new BufferedWriter(new FileWriter(outFileBase + DATASUFFIX));
+			BufferedWriter script = new BufferedWriter(new FileWriter(outFileBase + SCRIPTSUFFIX))) {
+			script.write("#!/usr/bin/env gnuplot\n");
+			script.write("# This script will create line graphs of the passengers on each train,\n");
+			script.write("# from " + dataName + "; run it from the directory that's in\n\n");
+			script.write("set ylabel 'Number of Passengers'\n");
+			script.write("set yrange [0:" + (capacity + 10) + "]\n");
+			script.write("set xlabel 'Stations Visited'\n");
+			script.write("set grid\n");
+			script.write("set key off\n");
+			script.write("set term png\n\n");
+			script.write("output_dir = './gnuplotted'\n");
+			script.write("system 'mkdir -p ' . output_dir\n\n");
+
+			// gnuplot can't plot an empty block, so Trains that never left don't get one
+			int block = 0;
+			for (int train = 0; train < trainNames.size(); train++) {
+				if (numDepartures[train] == 0) {
+					continue;
+				}
+				String name = trainNames.get(train);
+				data.write("# " + name + "\n");
+				data.write("# Stations Visited, Global Time, Passengers\n");
+				double[] trainTimes = times.get(train);
+				int[] trainLoads = loads.get(train);
+				for (int i = 0; i < numDepartures[train]; i++) {
+					data.write((i + 1) + " " + trainTimes[i] + " " + trainLoads[i] + "\n");
+				}
+				data.write("\n\n");
+
+				script.write("set output output_dir . '/" + quote(name) + ".png'\n");
+				script.write("set title '" + quote(name) + "' noenhanced\n");
+				script.write("plot '" + quote(dataName) + "' index " + block + " using 1:3 with lines\n");
+				block++;
+			}
+			script.write("\nprint 'Graphs successfully created in: ' . output_dir\n");
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error: problem writing gnuplot files: " + e);
+		}
+	}
+
+	/**
+	 * @return a String with its single quotes doubled, to go in a single-quoted gnuplot string
+	 */
+	private static String quote(String s) {
+		return s.replace("'", "''");
+	}
+}
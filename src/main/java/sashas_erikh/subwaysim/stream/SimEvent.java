@@ -0,0 +1,136 @@
+package sashas_erikh.subwaysim.stream;
+
+/**
+ * Something that happened in the sim, as passed to an EventConsumer.
+ * SimEvents are slots in an EventRing, and are reused once every consumer is
+ * done with them, so a consumer that wants to keep anything has to copy it out
+ * in onEvent(...).
+ * Which fields mean anything depends on the Kind; the rest are left over from
+ * whatever was in the slot before.
+ * @author Erik H
+ */
+public class SimEvent {
+	/**
+	 * The kinds of SimEvent, and the fields each one fills in (besides the time).
+	 */
+	public enum Kind {
+		/**
+		 * A Passenger spawned: station, origin and destination.
+		 */
+		PASSENGER_SPAWNED,
+		/**
+		 * A Passenger started boarding a Train: train, station, spawnTime, origin and destination.
+		 */
+		PASSENGER_BOARDED,
+		/**
+		 * A Passenger got off a Train: train, station, spawnTime, boardTime, origin, destination and
+		 * arrived; and tripTime, if they arrived.
+		 */
+		PASSENGER_ALIGHTED,
+		/**
+		 * A Train arrived at a Station: train, station, and count, the number of Passengers getting off.
+		 */
+		TRAIN_ARRIVED,
+		/**
+		 * A Train left a Station: train, station, toStation, and count, the number of Passengers on board.
+		 */
+		TRAIN_DEPARTED
+	}
+
+	Kind kind;
+	double time;
+	int train;
+	int station;
+	int toStation;
+	int origin;
+	int destination;
+	double spawnTime;
+	double boardTime;
+	double tripTime;
+	int count;
+	boolean arrived;
+
+	/**
+	 * @return what happened
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the global time it happened at, in seconds
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the Train's id
+	 */
+	public int getTrain() {
+		return train;
+	}
+
+	/**
+	 * @return the id of the Station it happened at; for a departure, the Station being left
+	 */
+	public int getStation() {
+		return station;
+	}
+
+	/**
+	 * @return the id of the Station a departing Train is travelling to
+	 */
+	public int getToStation() {
+		return toStation;
+	}
+
+	/**
+	 * @return the id of the Station where the Passenger spawned
+	 */
+	public int getOrigin() {
+		return origin;
+	}
+
+	/**
+	 * @return the id of the Passenger's destination Station
+	 */
+	public int getDestination() {
+		return destination;
+	}
+
+	/**
+	 * @return when the Passenger spawned, in seconds
+	 */
+	public double getSpawnTime() {
+		return spawnTime;
+	}
+
+	/**
+	 * @return when the Passenger first boarded, in seconds
+	 */
+	public double getBoardTime() {
+		return boardTime;
+	}
+
+	/**
+	 * @return the time from the Passenger spawning to getting off at their destination, in seconds
+	 */
+	public double getTripTime() {
+		return tripTime;
+	}
+
+	/**
+	 * @return how many Passengers are getting off an arriving Train, or are on a departing one
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return whether an alighting Passenger is at their destination, rather than transferring
+	 */
+	public boolean isArrived() {
+		return arrived;
+	}
+}
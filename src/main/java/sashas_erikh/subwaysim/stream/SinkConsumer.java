@@ -0,0 +1,58 @@
+package sashas_erikh.subwaysim.stream;
+
+import sashas_erikh.subwaysim.output.OutputSink;
+
+/**
+ * An EventConsumer that passes the events on to an OutputSink as records, so
+ * the CSV or binary files are written on the consumer's thread instead of
+ * the sim's.
+ * @author Erik H
+ */
+public class SinkConsumer implements EventConsumer {
+	private OutputSink sink;
+	private int numTrains;
+
+	/**
+	 * @param sink where to write the records
+	 */
+	public SinkConsumer(OutputSink sink) {
+		this.sink = sink;
+	}
+
+	public void addTrain(String name) {
+		if (sink.addTrain(name) != numTrains++) {
+			throw new RuntimeException("Error: Train ids don't match between the event stream and the output for " + name);
+		}
+	}
+
+	public void onEvent(SimEvent event) {
+		switch (event.getKind()) {
+		case PASSENGER_SPAWNED:
+			sink.writeSpawn(event.getTime(), event.getStation(), event.getDestination());
+			break;
+		case PASSENGER_BOARDED:
+			sink.writeBoarding(event.getTrain(), event.getStation(), event.getSpawnTime(), event.getOrigin(), event.getDestination(),
+				event.getTime());
+			break;
+		case PASSENGER_ALIGHTED:
+			if (event.isArrived()) {
+				sink.writeTrip(event.getTripTime(), event.getSpawnTime(), event.getBoardTime(), event.getOrigin(), event.getDestination());
+			}
+			else {
+				sink.writeTransfer(event.getTrain(), event.getStation(), event.getSpawnTime(), event.getBoardTime(), event.getOrigin(),
+					event.getDestination(), event.getTime());
+			}
+			break;
+		case TRAIN_ARRIVED:
+			sink.writeArrival(event.getTrain(), event.getStation(), event.getCount(), event.getTime());
+			break;
+		case TRAIN_DEPARTED:
+			sink.writeDeparture(event.getTrain(), event.getCount(), event.getStation(), event.getToStation(), event.getTime());
+			break;
+		}
+	}
+
+	public void onClose() {
+		sink.close();
+	}
+}
@@ -0,0 +1,31 @@
+package sashas_erikh.subwaysim.train;
+
+/**
+ * Decides how long a Train stays at a Station before it leaves. The Train
+ * asks once, when it starts boarding, and then boards until its dwell time
+ * is up (or the policy says it's done early), finishes boarding whoever is
+ * getting on, and leaves as soon as the next Station's platform is free.
+ *
+ * Policies should only look at the Train, and at its current Station through
+ * the Train (e.g. getNumWaiting() or getLastDeparture()), which works however
+ * the Trains are being run; the actor engine doesn't let Trains touch the
+ * Stations directly.
+ * @author Erik H
+ */
+public interface DispatchPolicy {
+	/**
+	 * @param train a Train that has just finished letting Passengers off and is starting to board
+	 * @param t the global time
+	 * @return how long the Train should dwell at its Station from now, in seconds
+	 */
+	double getDwellTime(Train train, double t);
+
+	/**
+	 * @param train a Train that is boarding, and hasn't used up its dwell time
+	 * @param t the global time
+	 * @return whether it should stop boarding and leave now anyway
+	 */
+	default boolean isDoneEarly(Train train, double t) {
+		return false;
+	}
+}
@@ -0,0 +1,20 @@
+package sashas_erikh.subwaysim.train;
+
+/**
+ * Dwell for trainWaitTime at every Station, as Trains always have.
+ * @author Erik H
+ */
+public class FixedDwell implements DispatchPolicy {
+	private double dwellTime;
+
+	/**
+	 * @param dwellTime how long to dwell, in seconds
+	 */
+	public FixedDwell(double dwellTime) {
+		this.dwellTime = dwellTime;
+	}
+
+	public double getDwellTime(Train train, double t) {
+		return dwellTime;
+	}
+}
@@ -0,0 +1,40 @@
+package sashas_erikh.subwaysim.train;
+
+/**
+ * Try to keep the Trains on each line evenly spaced, so they don't bunch up.
+ * A Train that's less than the target headway behind the last Train to
+ * leave its Station is held until it's a headway behind (for at most
+ * trainWaitTime plus a headway). A Train that's further behind only stays
+ * long enough to board the Passengers waiting (for at most trainWaitTime),
+ * so it can catch up.
+ * @author Erik H
+ */
+public class HeadwayHolding implements DispatchPolicy {
+	private double maxDwellTime;
+	private double boardTime;
+	private double[] targetHeadways; // Indexed by line, in seconds
+
+	/**
+	 * @param maxDwellTime the longest a Train that isn't being held dwells, in seconds
+	 * @param boardTime how long it takes one Passenger to board, in seconds
+	 * @param targetHeadways the time there should be between Trains on each line, in seconds
+	 */
+	public HeadwayHolding(double maxDwellTime, double boardTime, double[] targetHeadways) {
+		this.maxDwellTime = maxDwellTime;
+		this.boardTime = boardTime;
+		this.targetHeadways = targetHeadways;
+	}
+
+	public double getDwellTime(Train train, double t) {
+		int line = train.getLine();
+		double lastDeparture = train.getLastDeparture();
+		if (Double.isNaN(lastDeparture)) {
+			// Nobody has left here yet, so there's no headway to keep
+			return maxDwellTime;
+		}
+		double waiting = train.getNumWaiting();
+		double boarding = Math.min((waiting + 1) * boardTime, maxDwellTime);
+		double hold = Math.min(lastDeparture + targetHeadways[line] - t, maxDwellTime + targetHeadways[line]);
+		return Math.max(boarding, hold);
+	}
+}
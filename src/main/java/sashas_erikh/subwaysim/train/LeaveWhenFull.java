@@ -0,0 +1,25 @@
+package sashas_erikh.subwaysim.train;
+
+/**
+ * Dwell for trainWaitTime, but leave as soon as the Train is full, since
+ * nobody else can get on anyway.
+ * @author Erik H
+ */
+public class LeaveWhenFull implements DispatchPolicy {
+	private double dwellTime;
+
+	/**
+	 * @param dwellTime the longest to dwell, in seconds
+	 */
+	public LeaveWhenFull(double dwellTime) {
+		this.dwellTime = dwellTime;
+	}
+
+	public double getDwellTime(Train train, double t) {
+		return dwellTime;
+	}
+
+	public boolean isDoneEarly(Train train, double t) {
+		return train.isFull();
+	}
+}
@@ -0,0 +1,23 @@
+package sashas_erikh.subwaysim.train;
+
+/**
+ * Dwell for trainWaitTime, except at Stations where nobody got off and
+ * nobody can get on (because nobody is waiting, or the Train is full),
+ * which the Train leaves straight away.
+ * @author Erik H
+ */
+public class SkipStop implements DispatchPolicy {
+	private double dwellTime;
+
+	/**
+	 * @param dwellTime how long to dwell at Stations that aren't skipped, in seconds
+	 */
+	public SkipStop(double dwellTime) {
+		this.dwellTime = dwellTime;
+	}
+
+	public double getDwellTime(Train train, double t) {
+		boolean nobodyBoarding = train.isFull() || !train.hasWaiting();
+		return (train.getNumAlighting() == 0 && nobodyBoarding) ? 0.0 : dwellTime;
+	}
+}
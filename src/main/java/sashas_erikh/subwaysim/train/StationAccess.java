@@ -0,0 +1,105 @@
+package sashas_erikh.subwaysim.train;
+
+import sashas_erikh.subwaysim.passenger.PassengerQueue;
+import sashas_erikh.subwaysim.station.Station;
+
+/**
+ * How a Train gets at the Stations it stops at and heads for: their queues,
+ * their platforms, and when the last Train left them.
+ * Usually that's straight through the Station's own methods (DIRECT), but
+ * the actor engine has the Station's actor do it instead, so that only the
+ * actor ever touches the Station.
+ * @author Erik H
+ */
+public interface StationAccess {
+	/**
+	 * Go straight to the Stations.
+	 */
+	StationAccess DIRECT = new StationAccess() {
+		public PassengerQueue getStationQueue(Station station, int line) {
+			return station.getStationQueue(line);
+		}
+
+		public int getNumWaiting(Station station, int line) {
+			return station.getNumWaiting(line);
+		}
+
+		public double getLastDeparture(Station station, int line) {
+			return station.getLastDeparture(line);
+		}
+
+		public boolean isOccupied(Station station, int line) {
+			return station.isOccupied(line);
+		}
+
+		public boolean tryReserve(Station station, int line, int train) {
+			return station.tryReserve(line, train);
+		}
+
+		public void depart(Station station, int line, int train, double t) {
+			station.setLastDeparture(line, t);
+			station.release(line, train);
+		}
+
+		public void enqueuePassenger(Station station, int line, double spawnTime, double boardTime, int origin, int dest) {
+			station.enqueuePassenger(line, spawnTime, boardTime, origin, dest);
+		}
+	};
+
+	/**
+	 * @param station the Station
+	 * @param line the line's number
+	 * @return the queue of Passengers waiting there for that line, to board from
+	 */
+	PassengerQueue getStationQueue(Station station, int line);
+
+	/**
+	 * @param station the Station
+	 * @param line the line's number
+	 * @return how many Passengers are waiting there for that line
+	 */
+	int getNumWaiting(Station station, int line);
+
+	/**
+	 * @param station the Station
+	 * @param line the line's number
+	 * @return when a Train last left the line's platform there, or NaN if none has yet
+	 */
+	double getLastDeparture(Station station, int line);
+
+	/**
+	 * @param station the Station
+	 * @param line the line's number
+	 * @return whether the line's platform there is occupied (or reserved) by a Train
+	 */
+	boolean isOccupied(Station station, int line);
+
+	/**
+	 * Reserve a line's platform for a Train, if nobody else has it.
+	 * @param station the Station
+	 * @param line the line's number
+	 * @param train the Train's id
+	 * @return whether the Train has the platform now
+	 */
+	boolean tryReserve(Station station, int line, int train);
+
+	/**
+	 * Record a Train leaving a line's platform, and give up its reservation of it.
+	 * @param station the Station
+	 * @param line the line's number
+	 * @param train the Train's id
+	 * @param t when it left
+	 */
+	void depart(Station station, int line, int train, double t);
+
+	/**
+	 * Add a Passenger to the Station's queue for a line.
+	 * @param station the Station
+	 * @param line the number of the line they're waiting for
+	 * @param spawnTime when the Passenger spawned, in seconds
+	 * @param boardTime when the Passenger first boarded a Train, or -1 if they haven't yet
+	 * @param origin the id of the Station where the Passenger spawned
+	 * @param dest the id of the Passenger's destination Station
+	 */
+	void enqueuePassenger(Station station, int line, double spawnTime, double boardTime, int origin, int dest);
+}
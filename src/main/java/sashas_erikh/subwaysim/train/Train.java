@@ -1,16 +1,22 @@
 package sashas_erikh.subwaysim.train;
 
-import sashas_erikh.subwaysim.main.SubwaySim;
-import sashas_erikh.subwaysim.passenger.Passenger;
+import sashas_erikh.subwaysim.passenger.PassengerBuffer;
 import sashas_erikh.subwaysim.passenger.PassengerList;
+import sashas_erikh.subwaysim.passenger.PassengerQueue;
+import sashas_erikh.subwaysim.network.RouteTable;
 import sashas_erikh.subwaysim.station.Station;
 import sashas_erikh.subwaysim.station.Destination;
+import sashas_erikh.subwaysim.log.Log;
+import sashas_erikh.subwaysim.log.LogLevel;
+import sashas_erikh.subwaysim.metrics.SimMetrics;
+import sashas_erikh.subwaysim.output.OutputSink;
+
+import java.util.List;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import java.util.Map;
-import java.util.Queue;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
 
 /**
  * This class represents a train in a subway system.
@@ -22,7 +28,7 @@ public class Train {
 	TrainState state;
 	/**
 	 *	This tells us the last station the train stopped at.
-	 *	It allows to determine the next  station based on the track Map
+	 *	It allows to determine the next  station based on the track
 	 *	in the SubwaySim class.
 	 */
 	private Station lastVisited;
@@ -38,9 +44,29 @@ public class Train {
 	private double boardTime;
 
 	/**
-	 * The waiting time that a train is waiting at a station before leaving.
+	 * How many doors Passengers board and alight through at once, or 0 to board one Passenger per time step.
+	 */
+	private int doors;
+
+	/**
+	 * The time needed for one Passenger to get off through one door, when there are doors.
+	 */
+	private double alightTime;
+
+	/**
+	 * When there are doors, the time when everyone who's started boarding will have finished.
+	 */
+	private double boardingEndTime;
+
+	/**
+	 * Decides how long the train waits at each station before leaving.
 	 */
-	private double maxWaitTime;
+	private DispatchPolicy dispatchPolicy;
+
+	/**
+	 * How long the train is waiting at the current station before leaving, from waitingStartTime.
+	 */
+	private double dwellTime;
 
 	/**
 	 * Departure time stamp.
@@ -68,41 +94,94 @@ public class Train {
 	private int currentlyBoarding;
 
 	/**
-	 * PrintWriter for passenger travel time output.
+	 * Where passenger travel times and the train manifest at time of Station departure are stored.
 	 */
-	private PrintWriter passengerWriter;
+	private OutputSink outputSink;
 
 	/**
-	 * PrintWriter for train manifest at time of Station departure output.
+	 * This Train's id in the OutputSink.
 	 */
-	private PrintWriter trainWriter;
+	private int id;
 	private String name;
 
 	/**
-	 * A linked list that contains all the passengers travelling on this train.
+	 * The number of the line this Train runs on.
+	 */
+	private int line;
+
+	/**
+	 * Where Passengers should get off to transfer, or null if everyone rides straight to their destination.
+	 */
+	private RouteTable routes;
+
+	/**
+	 * A list that contains all the passengers travelling on this train.
 	 */
 	PassengerList passengers;
 
+	/**
+	 * Where the passengers who get off at a station are put; reused at every station.
+	 */
+	private PassengerBuffer alightingPassengers;
+
+	/**
+	 * The passengers who got off at their destination; reused at every station.
+	 */
+	private PassengerBuffer arrivedPassengers;
+
+	/**
+	 * How many passengers got off at the last station, to stay or to transfer.
+	 * Kept apart from alightingPassengers, which isn't checkpointed, since the
+	 * dispatch policy goes by it when disembarking finishes.
+	 */
+	private int numAlighting;
+
+	/**
+	 * How many passengers got off at the last station to transfer to another line.
+	 */
+	private int numTransferred;
+
+	/**
+	 * Where to count arrivals and departures, or null if nobody's counting.
+	 */
+	private SimMetrics metrics;
+
+	/**
+	 * How the train gets at the Stations' queues and platforms.
+	 */
+	private StationAccess access = StationAccess.DIRECT;
+
+	/**
+	 * train constructor, for a network with only one line.
+	 * The Train registers itself with the OutputSink, which may open an output file for it.
+	 */
+	public Train(String name, int capacity, Station startStation, Destination destination, double boardTime, double maxWaitTime, OutputSink outputSink) {
+		this(name, capacity, startStation, destination, boardTime, maxWaitTime, outputSink, 0, null);
+	}
+
 	/**
 	 * train constructor.
+	 * The Train registers itself with the OutputSink, which may open an output file for it.
+	 * @param line the number of the line the Train runs on
+	 * @param routes where Passengers get off to transfer, or null if everyone rides straight to their destination
 	 */
-	public Train(String name, int capacity, Station startStation, Destination destination, double boardTime, double maxWaitTime, PrintWriter passengerWriter, String manifestBaseName) throws FileNotFoundException {
+	public Train(String name, int capacity, Station startStation, Destination destination, double boardTime, double maxWaitTime, OutputSink outputSink,
+			int line, RouteTable routes) {
 
 		this.name = name;
+		this.line = line;
+		this.routes = routes;
 		this.boardTime = boardTime;
-		this.maxWaitTime = maxWaitTime;
-		this.passengerWriter = passengerWriter;
-
-		try {
-			this.trainWriter = new PrintWriter(new File(manifestBaseName + "_" + name + SubwaySim.TRAINSUFFIX));
-		}
-		catch (FileNotFoundException e) {
-			throw e;
-		}
+		dispatchPolicy = new FixedDwell(maxWaitTime);
+		dwellTime = maxWaitTime;
+		this.outputSink = outputSink;
+		id = outputSink.addTrain(name);
 
 		lastVisited = startStation;
 		currentDestination = destination;
 		passengers = new PassengerList(capacity);
+		alightingPassengers = new PassengerBuffer(capacity);
+		arrivedPassengers = (routes == null) ? alightingPassengers : new PassengerBuffer(capacity);
 
 		state = TrainState.BOARDING;
 		waitingStartTime = 0.0;
@@ -112,57 +191,96 @@ public class Train {
 	/**
 	 * Runs the train, used for travelling/disembarking/boarding actions.
 	 * @param t the global time
-	 * @param track the track this Train is on
-	 * @return the PassengerList of Passengers that got off if the train arrived at a Station, otherwise null
+	 * @param track the track this Train is on, indexed by Station id: where to go after each Station
+	 * @return the Passengers that got off at their destination if the train arrived at a Station, otherwise null;
+	 * the buffer is reused, so it is only valid until the Train next arrives somewhere
 	 */
-	public PassengerList run(double t, Map<Station, Destination> track) {
+	public PassengerBuffer run(double t, Destination[] track) {
 
 		if (state == TrainState.TRAVELLING) {
 
 			// arrived at the destination
 			if (t - tripStartTime >= currentDestination.getTravelTime()) {
-				System.err.println("[DEBUG] " + getName() + " has arrived at " + currentDestination.getDestStation() + " at t = " + t);
-				currentDestination.getDestStation().setOccupied(true);
+				if (Log.isEnabled(LogLevel.DEBUG)) {
+					Log.debug(getName() + " has arrived at " + currentDestination.getDestStation() + " at t = " + t);
+				}
 
 				// changes the state to disembarking, and updates the current/destination Stations.
 				state = TrainState.DISEMBARKING;
 				// Set our last visited station to the one we just arrived at
 				lastVisited = currentDestination.getDestStation();
 				// Set our new destination based to the next Station on the track
-				currentDestination = track.get(lastVisited);
+				currentDestination = track[lastVisited.getId()];
 				int originalPassengerSize = passengers.size();
-				System.err.println("\tPrior to passenger remove: " + passengers);
-				PassengerList arrivedPassengers = passengers.removeForStation(lastVisited);
+				if (Log.isEnabled(LogLevel.TRACE)) {
+					Log.trace("Prior to passenger remove: " + passengers);
+				}
+				passengers.removeForStation(lastVisited, alightingPassengers);
+				numAlighting = alightingPassengers.size();
+				outputSink.writeArrival(id, lastVisited.getId(), alightingPassengers.size(), t);
+				transferPassengers(t);
 
 				/*
 				 * It will take this many seconds for the Passengers who want to
 				 * get off at this station to disembark.
 				 */
-				totalDisembarkTime = arrivedPassengers.size() * boardTime;
+				totalDisembarkTime = (doors > 0)
+					? Math.ceil((double)alightingPassengers.size() / doors) * alightTime
+					: alightingPassengers.size() * boardTime;
 				disembarkStartTime = t;
-				System.err.println("\t" + name + " STARTING disembarking at t = " + t);
-				System.err.println("\tIt will take " + totalDisembarkTime + " to disembark " + arrivedPassengers.size() + "/" + originalPassengerSize + " passengers.");
-				System.err.println("\tHere are the people that are left: " + passengers);
+				if (Log.isEnabled(LogLevel.DEBUG)) {
+					Log.debug(name + " STARTING disembarking at t = " + t);
+					Log.debug("It will take " + totalDisembarkTime + " to disembark " + alightingPassengers.size() + "/" + originalPassengerSize
+						+ " passengers, " + numTransferred + " of them to transfer.");
+				}
+				if (Log.isEnabled(LogLevel.TRACE)) {
+					Log.trace("Here are the people that are left: " + passengers);
+				}
 
 				storeTimes(t, arrivedPassengers); // Store the passenger arrival info in a file
+				if (metrics != null) {
+					metrics.trainArrived(arrivedPassengers.size());
+				}
 				return arrivedPassengers; // Return the passengers that got off so we can count them
 			}
 		}
 
 		else if (state == TrainState.DISEMBARKING) {
 			// We have "finished" booting off passengers, and are ready to board
-			if (t - disembarkStartTime >= totalDisembarkTime) {
-				System.err.println("\t" + name + " FINISHED disembarking at t = " + t);
+			if (isDoneDisembarking(t)) {
 				state = TrainState.BOARDING;
 				waitingStartTime = t;
-				System.err.println("\t" + name + " STARTING boarding at t = " + t);
+				boardingEndTime = t;
+				dwellTime = dispatchPolicy.getDwellTime(this, t);
+				if (Log.isEnabled(LogLevel.DEBUG)) {
+					Log.debug(name + " FINISHED disembarking at t = " + t);
+					Log.debug(name + " STARTING boarding at t = " + t + " for " + dwellTime + " seconds");
+				}
+				if (doors > 0 && dwellTime > 0) {
+					// Time steps can be longer than boarding takes, so start right away
+					boardThroughDoors(t);
+				}
+			}
+		}
+
+		else if (state == TrainState.BOARDING && doors > 0) {
+			boolean doneWaiting = t - waitingStartTime >= dwellTime || dispatchPolicy.isDoneEarly(this, t);
+			if (doneWaiting) {
+				if (t >= boardingEndTime) {
+					leaveIfPossible(t);
+				}
+			}
+			else {
+				boardThroughDoors(t);
 			}
 		}
 
 		else if (state == TrainState.BOARDING) {
-			if (t - waitingStartTime >= maxWaitTime && currentlyBoarding == 0) {
-				System.err.println("\t" + name + " FINISHED boarding (maybe; or we're waiting for a station to open up) at t = " + t);
-				System.err.println("\tcurrentlyBoarding = " + currentlyBoarding);
+			boolean doneWaiting = t - waitingStartTime >= dwellTime || dispatchPolicy.isDoneEarly(this, t);
+			if (doneWaiting && currentlyBoarding == 0) {
+				if (Log.isEnabled(LogLevel.TRACE)) {
+					Log.trace(name + " FINISHED boarding (maybe; or we're waiting for a station to open up) at t = " + t);
+				}
 				/*
 				 * We've waited for as long as we can AND we're finished
 				 * boarding (there can be an overlap of one passenger over our
@@ -173,34 +291,46 @@ public class Train {
 			}
 			// We have time to board people. Let's board as many as we can.
 			else {
-				Queue<Passenger> stationQueue = lastVisited.getStationQueue();
+				PassengerQueue stationQueue = access.getStationQueue(lastVisited, line);
 
 				// Board someone, keeping track of their boarding time.
 				if (currentlyBoarding > 0) {
-					System.err.println("[DEBUG] passengers.size() " + passengers.size() + ", currentlyBoarding " + currentlyBoarding);
-					passengers.get(passengers.size()-currentlyBoarding).setBoardTime(t);
-					System.err.println("\t[DEBUG] Set boarding time for passenger; they now look like: " + passengers.get(passengers.size()-currentlyBoarding));
+					passengers.setRecentBoardTime(currentlyBoarding, t);
+					if (Log.isEnabled(LogLevel.TRACE)) {
+						Log.trace("passengers.size() " + passengers.size() + ", currentlyBoarding " + currentlyBoarding);
+						Log.trace("Set boarding time for passenger; the train now looks like: " + passengers);
+					}
 					// We can only board one person per time step.
 					currentlyBoarding--;
 				}
 
 				double timeWaited = t - waitingStartTime;
-				double boardTimeLeft = maxWaitTime - timeWaited;
+				double boardTimeLeft = doneWaiting ? 0.0 : dwellTime - timeWaited;
 				/*
 				 * How many people we can board given the time we have left
 				 */
 				double boardablePassengers = (boardTimeLeft / boardTime) - currentlyBoarding;
-				System.err.println("\tcan board " + boardablePassengers + " passengers MAX");
+				if (Log.isEnabled(LogLevel.TRACE)) {
+					Log.trace(name + " can board " + boardablePassengers + " passengers MAX");
+				}
 
 				// We _can_ actually board at least one person
 				if (boardablePassengers >= 1.0) {
+					int here = lastVisited.getId();
 					for (int i = 0; i < (int)boardablePassengers && stationQueue.size() > 0; i++) {
+						double spawnTime = stationQueue.peekSpawnTime();
+						double firstBoardTime = stationQueue.peekBoardTime();
+						int origin = stationQueue.peekOrigin();
+						int destination = stationQueue.peekDestination();
+						int alightAt = (routes == null) ? destination : routes.getAlightStation(here, destination);
+						stationQueue.remove();
 						// Add a passenger, breaking out of the loop if the PassengerList is full
-						if (!passengers.add(stationQueue.remove())) {
+						if (!passengers.add(spawnTime, firstBoardTime, origin, destination, alightAt)) {
 							// The PassengerList is full, so we can't board anyone else
 							break;
 						}
 						else {
+							outputSink.writeBoarding(id, here, spawnTime, origin, destination, t);
 							// We successfully boarded someone, so increment our counter.
 							// This person's boarding time has not yet been taken into account;
 							// on the next clock tick the time will be taken into account.
@@ -213,65 +343,335 @@ public class Train {
 		return null; //No passengers got off
 	}
 
+	/**
+	 * Start everyone waiting boarding, as long as there's room for them and
+	 * they'll be on before the dwell time is up. Passengers go through the
+	 * doors in parallel streams, so each one takes boardTime / doors after the
+	 * last; when each of them finishes is worked out now, instead of ticking
+	 * them on one time step at a time.
+	 * @param t the global time
+	 */
+	private void boardThroughDoors(double t) {
+		double perPassenger = boardTime / doors;
+		double start = Math.max(t, boardingEndTime);
+		PassengerQueue stationQueue = access.getStationQueue(lastVisited, line);
+		int boardable = (int)Math.min((waitingStartTime + dwellTime - start) / perPassenger,
+			Math.min(stationQueue.size(), passengers.getCapacity() - passengers.size()));
+		int here = lastVisited.getId();
+		for (int i = 1; i <= boardable; i++) {
+			double firstBoardTime = stationQueue.peekBoardTime();
+			int destination = stationQueue.peekDestination();
+			int alightAt = (routes == null) ? destination : routes.getAlightStation(here, destination);
+			passengers.add(stationQueue.peekSpawnTime(), (firstBoardTime < 0) ? start + i * perPassenger : firstBoardTime,
+				stationQueue.peekOrigin(), destination, alightAt);
+			outputSink.writeBoarding(id, here, stationQueue.peekSpawnTime(), stationQueue.peekOrigin(), destination,
+				start + (i - 1) * perPassenger);
+			stationQueue.remove();
+		}
+		if (boardable > 0) {
+			boardingEndTime = start + boardable * perPassenger;
+			if (Log.isEnabled(LogLevel.TRACE)) {
+				Log.trace(name + " started boarding " + boardable + " passengers, done at t = " + boardingEndTime);
+			}
+		}
+	}
+
+	/**
+	 * Split the Passengers getting off here into those who have arrived, and
+	 * those who are transferring, who join the queue for their next line.
+	 * @param t the global time
+	 */
+	private void transferPassengers(double t) {
+		numTransferred = 0;
+		if (routes == null) {
+			return; // Everyone getting off has arrived; arrivedPassengers is alightingPassengers
+		}
+		arrivedPassengers.clear();
+		int here = lastVisited.getId();
+		for (int i = 0; i < alightingPassengers.size(); i++) {
+			int destination = alightingPassengers.getDestination(i);
+			if (destination == here) {
+				arrivedPassengers.add(alightingPassengers.getSpawnTime(i), alightingPassengers.getBoardTime(i),
+					alightingPassengers.getOrigin(i), destination);
+			}
+			else {
+				access.enqueuePassenger(lastVisited, routes.getLine(here, destination), alightingPassengers.getSpawnTime(i),
+					alightingPassengers.getBoardTime(i), alightingPassengers.getOrigin(i), destination);
+				outputSink.writeTransfer(id, here, alightingPassengers.getSpawnTime(i), alightingPassengers.getBoardTime(i),
+					alightingPassengers.getOrigin(i), destination, t);
+				numTransferred++;
+			}
+		}
+	}
+
+	/**
+	 * Get the earliest time at which run(...) could next change this Train's
+	 * state, assuming no Passengers spawn at its Station and no Station is
+	 * vacated in the meantime.
+	 * @param t the global time
+	 * @return the time of this Train's next state change; t if it has work to do on the next time step,
+	 * or Double.POSITIVE_INFINITY if it is waiting for its destination Station to be vacated
+	 */
+	public double getNextEventTime(double t) {
+		if (state == TrainState.TRAVELLING) {
+			return tripStartTime + currentDestination.getTravelTime();
+		}
+		else if (state == TrainState.DISEMBARKING) {
+			return disembarkStartTime + totalDisembarkTime;
+		}
+		// We're boarding
+		if (doors > 0) {
+			boolean doneWaiting = t - waitingStartTime >= dwellTime || dispatchPolicy.isDoneEarly(this, t);
+			if (doneWaiting) {
+				if (t < boardingEndTime) {
+					return boardingEndTime;
+				}
+				return access.isOccupied(currentDestination.getDestStation(), line) ? Double.POSITIVE_INFINITY : t;
+			}
+			if (hasWaiting() && !isFull()
+					&& Math.max(t, boardingEndTime) + boardTime / doors <= waitingStartTime + dwellTime) {
+				return t;
+			}
+			return Math.max(waitingStartTime + dwellTime, boardingEndTime);
+		}
+		if (currentlyBoarding > 0) {
+			return t;
+		}
+		if (t - waitingStartTime >= dwellTime || dispatchPolicy.isDoneEarly(this, t)) {
+			// We're ready to leave, but can't until the next Station is vacated
+			if (access.isOccupied(currentDestination.getDestStation(), line)) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return t;
+		}
+		if (hasWaiting()) {
+			// Even a full Train takes someone off the queue each time step
+			return t;
+		}
+		return waitingStartTime + dwellTime;
+	}
+
+	/**
+	 * Board and alight Passengers through doors in parallel, instead of one Passenger per time step.
+	 * @param doors how many doors the Train has
+	 * @param alightTime how long it takes one Passenger to get off through one door, in seconds
+	 */
+	public void setDoors(int doors, double alightTime) {
+		this.doors = doors;
+		this.alightTime = alightTime;
+	}
+
+	/**
+	 * Change how the Train decides when to leave Stations, starting with the one it's at.
+	 * @param dispatchPolicy the new policy
+	 */
+	public void setDispatchPolicy(DispatchPolicy dispatchPolicy) {
+		this.dispatchPolicy = dispatchPolicy;
+		if (state == TrainState.BOARDING) {
+			dwellTime = dispatchPolicy.getDwellTime(this, waitingStartTime);
+		}
+	}
+
+	/**
+	 * @return how many Passengers got off at the last Station, to stay or to transfer
+	 */
+	public int getNumAlighting() {
+		return numAlighting;
+	}
+
+	/**
+	 * @param access how the Train gets at the Stations' queues and platforms from now on
+	 */
+	public void setStationAccess(StationAccess access) {
+		this.access = access;
+	}
+
+	/**
+	 * @param metrics where to count arrivals and departures, or null to stop counting
+	 */
+	public void setMetrics(SimMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return how many Passengers are on this Train
+	 */
+	public int getNumPassengers() {
+		return passengers.size();
+	}
+
+	/**
+	 * Check if this Train finishes disembarking at a time, and starts
+	 * boarding; that's when it reads and takes from its Station's queue again.
+	 * @param t the global time
+	 * @return whether run(t, ...) would start it boarding
+	 */
+	public boolean isDoneDisembarking(double t) {
+		return state == TrainState.DISEMBARKING && t - disembarkStartTime >= totalDisembarkTime;
+	}
+
+	/**
+	 * Check if run(t, ...) would try to leave the Station, which is when it
+	 * reserves the next Station's platform.
+	 * @param t the global time
+	 * @return whether the Train is done boarding and waiting
+	 */
+	public boolean isReadyToLeave(double t) {
+		if (state != TrainState.BOARDING) {
+			return false;
+		}
+		boolean doneWaiting = t - waitingStartTime >= dwellTime || dispatchPolicy.isDoneEarly(this, t);
+		return doneWaiting && ((doors > 0) ? t >= boardingEndTime : currentlyBoarding == 0);
+	}
+
 	/**
 	 * @return if this train is completely filled with Passengers
 	 */
 	public boolean isFull() {
-		return passengers.size() == passengers.getCapacity();
+		return passengers.size() >= passengers.getCapacity();
 	}
 
 	/**
-	 * Leave the Station if the destination Station is unoccupied.
+	 * @return how many Passengers fit on this Train
+	 */
+	public int getCapacity() {
+		return passengers.getCapacity();
+	}
+
+	/**
+	 * @return how many Passengers are waiting for this Train's line at the last Station it visited
+	 */
+	public int getNumWaiting() {
+		return access.getNumWaiting(lastVisited, line);
+	}
+
+	/**
+	 * @return if anybody is waiting for this Train's line at the last Station it visited
+	 */
+	public boolean hasWaiting() {
+		return getNumWaiting() > 0;
+	}
+
+	/**
+	 * @return when a Train on this Train's line last left the last Station it visited, or NaN if none has yet
+	 */
+	public double getLastDeparture() {
+		return access.getLastDeparture(lastVisited, line);
+	}
+
+	/**
+	 * @param destination a Station's id
+	 * @return how many Passengers on this Train want to get off at that Station, to stay or to transfer
+	 */
+	public int getNumPassengersFor(int destination) {
+		return passengers.countForStation(destination);
+	}
+
+	/**
+	 * Leave the Station if the destination Station is unoccupied, reserving it
+	 * until we leave there in turn.
 	 */
 	private void leaveIfPossible(double t) {
 
 		currentlyBoarding = 0;
-		System.err.println("[DEBUG] " + getName() + " trying to leave from " + lastVisited.getName() + "...");
-		System.err.println("\tI have " + passengers.size() + " passengers");
-		System.err.println("\tThey look like: " + passengers);
+		if (Log.isEnabled(LogLevel.TRACE)) {
+			Log.trace(getName() + " trying to leave from " + lastVisited.getName() + " with " + passengers.size() + " passengers...");
+			Log.trace("They look like: " + passengers);
+		}
 
 		// The next station is available, so we can start our next trip
-		if (!currentDestination.getDestStation().isOccupied()) {
-			System.err.println("\tsuccessfully left at t = " + t);
+		if (access.tryReserve(currentDestination.getDestStation(), line, id)) {
+			if (Log.isEnabled(LogLevel.DEBUG)) {
+				Log.debug(getName() + " successfully left " + lastVisited.getName() + " with " + passengers.size() + " passengers at t = " + t);
+			}
 			state = TrainState.TRAVELLING;
-			lastVisited.setOccupied(false);
+			access.depart(lastVisited, line, id, t);
 			tripStartTime = t;
 
 			// Write the train manifest data based on the people we just picked up
 			storeManifest(t);
+			if (metrics != null) {
+				metrics.trainDeparted();
+			}
 		}
 		else {
-			System.err.println("[DEBUG] COULDN'T LEAVE! NEXT STATION IS OCCUPIED!");
+			if (Log.isEnabled(LogLevel.TRACE)) {
+				Log.trace(getName() + " COULDN'T LEAVE! NEXT STATION IS OCCUPIED!");
+			}
 		}
 	}
 
 
 	/**
-	 * Store in a file the total trip times for the passengers who disembark
-	 * the train.
+	 * Save where this Train is, what it's doing, and who's on board, for a checkpoint.
+	 * @param out where to write it
+	 * @throws IOException if it can't be written
 	 */
-	public void storeTimes(double t, PassengerList pl) {
+	public void writeState(DataOutput out) throws IOException {
+		out.writeUTF(state.name());
+		out.writeInt(lastVisited.getId());
+		out.writeDouble(tripStartTime);
+		out.writeDouble(disembarkStartTime);
+		out.writeDouble(waitingStartTime);
+		out.writeDouble(dwellTime);
+		out.writeDouble(boardingEndTime);
+		out.writeDouble(totalDisembarkTime);
+		out.writeInt(currentlyBoarding);
+		out.writeInt(numAlighting);
+		out.writeInt(numTransferred);
+		passengers.writeState(out);
+	}
+
+	/**
+	 * Put this Train back the way writeState(...) saved it.
+	 * @param in where to read it from
+	 * @param stations the Stations, indexed by id
+	 * @param track the track this Train is on, indexed by Station id
+	 * @throws IOException if it can't be read
+	 */
+	public void readState(DataInput in, List<Station> stations, Destination[] track) throws IOException {
+		state = TrainState.valueOf(in.readUTF());
+		lastVisited = stations.get(in.readInt());
+		// Trains always head for the next Station on the track after the last one they visited
+		currentDestination = track[lastVisited.getId()];
+		tripStartTime = in.readDouble();
+		disembarkStartTime = in.readDouble();
+		waitingStartTime = in.readDouble();
+		dwellTime = in.readDouble();
+		boardingEndTime = in.readDouble();
+		totalDisembarkTime = in.readDouble();
+		currentlyBoarding = in.readInt();
+		numAlighting = in.readInt();
+		numTransferred = in.readInt();
+		passengers.readState(in);
+		// Saved with a bigger capacity, so everyone on board has to fit when they get off
+		if (passengers.size() > alightingPassengers.getCapacity()) {
+			alightingPassengers = new PassengerBuffer(passengers.size());
+			arrivedPassengers = (routes == null) ? alightingPassengers : new PassengerBuffer(passengers.size());
+		}
+	}
+
+	/**
+	 * Store the total trip times for the passengers who disembark the train.
+	 */
+	public void storeTimes(double t, PassengerBuffer pl) {
 		// Store the total trip time, arrival at station time, board time,
 		// and destination station for each passenger.
-		for (Passenger p : pl) {
-			double totalTripTime = t - p.getSpawnTime();
-			passengerWriter.println(
-				totalTripTime + "," + p.getSpawnTime() + "," +
-				p.getBoardTime() + "," + p.getSpawnLocation().getName() + "," +
-				p.getDestination().getName());
+		for (int i = 0; i < pl.size(); i++) {
+			double totalTripTime = t - pl.getSpawnTime(i);
+			outputSink.writeTrip(totalTripTime, pl.getSpawnTime(i), pl.getBoardTime(i),
+				pl.getOrigin(i), pl.getDestination(i));
 		}
 	}
 
 	/**
-	 * Writes the passenger count on the train to a file.
+	 * Store the passenger count on the train.
 	 */
 	public void storeManifest(double t) {
 		// Store the number of Passengers, current Station, next Station, and
 		// the global time (the time when we're leaving).
-		trainWriter.println(
-			passengers.size() + "," + lastVisited.getName() + "," +
-			currentDestination.getDestStation().getName() + "," + t
-		);
+		outputSink.writeDeparture(id, passengers.size(), lastVisited.getId(),
+			currentDestination.getDestStation().getId(), t);
 	}
 
 	/**
@@ -304,6 +704,34 @@ public class Train {
 		return lastVisited;
 	}
 
+	/**
+	 * @return this Train's id, which it reserves Station platforms under
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the number of the line this Train runs on
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return how many Passengers got off at the last Station this Train arrived at, to transfer to another line
+	 */
+	public int getNumTransferred() {
+		return numTransferred;
+	}
+
+	/**
+	 * @return this Train's current state
+	 */
+	public TrainState getState() {
+		return state;
+	}
+
 	/**
 	 * @return this Train's name
 	 */
@@ -311,10 +739,6 @@ public class Train {
 		return name;
 	}
 
-	public PrintWriter getTrainWriter() {
-		return trainWriter;
-	}
-
 	/**
 	 * @return a String representation of this Train; includes name, last station, and current destination
 	 */